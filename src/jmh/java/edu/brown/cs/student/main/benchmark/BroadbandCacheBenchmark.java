@@ -0,0 +1,77 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Gets and puts on the broadband cache, cycling through more counties than the cache holds so
+ * that puts evict and a share of the gets miss.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadbandCacheBenchmark {
+  private static final String DATA =
+      "[[\"NAME\",\"S2802_C03_022E\",\"state\",\"county\"],"
+          + "[\"Kent County, Rhode Island\",\"85.3\",\"44\",\"003\"]]";
+
+  @Param({"10", "1000"})
+  public int maxSize;
+
+  private BroadbandCache cache;
+  private String[] counties;
+  private int next;
+
+  @Setup
+  public void setup() {
+    cache = new BroadbandCache(10, TimeUnit.MINUTES, maxSize);
+    // twice as many counties as fit with every other one cached, so about half of the gets miss
+    counties = new String[maxSize * 2];
+    for (int i = 0; i < counties.length; i++) {
+      counties[i] = String.format("%03d", i);
+      if (i % 2 == 0) {
+        cache.putData("44", counties[i], DATA);
+      }
+    }
+  }
+
+  private String nextCounty() {
+    next = next + 1 == counties.length ? 0 : next + 1;
+    return counties[next];
+  }
+
+  @Benchmark
+  public String get() {
+    return cache.getData("44", nextCounty());
+  }
+
+  @Benchmark
+  public void put() {
+    cache.putData("44", nextCounty(), DATA);
+  }
+
+  @Benchmark
+  public String getOrPut() {
+    String county = nextCounty();
+    String data = cache.getData("44", county);
+    if (data == null) {
+      cache.putData("44", county, DATA);
+      return DATA;
+    }
+    return data;
+  }
+}
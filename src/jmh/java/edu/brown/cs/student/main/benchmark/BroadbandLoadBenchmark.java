@@ -0,0 +1,76 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHelper;
+import edu.brown.cs.student.main.testing.StubCensusServer;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Load test of the broadband fetches against a local StubCensusServer with a fixed latency, at a
+ * fixed number of threads. The blocking fetch holds its thread for the whole round trip, so its
+ * throughput is at most THREADS requests per latency. The asynchronous fetch keeps IN_FLIGHT
+ * requests outstanding per thread, so the same threads get through many times as many. The
+ * cache is not involved: every operation is one request to the stub.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(BroadbandLoadBenchmark.THREADS)
+@State(Scope.Benchmark)
+public class BroadbandLoadBenchmark {
+  static final int THREADS = 4;
+  private static final int IN_FLIGHT = 32;
+
+  @Param({"20"})
+  public long latencyMillis;
+
+  private StubCensusServer stub;
+  private HttpClient client;
+  private BroadbandHelper helper;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    stub = StubCensusServer.start(latencyMillis);
+    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    stub.close();
+  }
+
+  @Benchmark
+  public String blocking() throws Exception {
+    return helper.fetchDataFromApi("44", "003", client);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(IN_FLIGHT)
+  public Object async() {
+    CompletableFuture<?>[] fetches = new CompletableFuture<?>[IN_FLIGHT];
+    for (int i = 0; i < IN_FLIGHT; i++) {
+      fetches[i] = helper.fetchDataFromApiAsync("44", "003", client);
+    }
+    return CompletableFuture.allOf(fetches).join();
+  }
+}
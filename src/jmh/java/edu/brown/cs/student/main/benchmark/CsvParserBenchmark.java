@@ -0,0 +1,70 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.parser.CsvParser;
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.CsvTokenizer;
+import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses generated CSV text of several shapes, into rows with CsvParser and into the columnar
+ * table the server loads files into. CsvThroughputComparison compares the parse paths in MB/s
+ * without JMH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvParserBenchmark {
+  @Param({"10000"})
+  public int rowCount;
+
+  @Param({"8", "64"})
+  public int columns;
+
+  @Param({"8"})
+  public int cellLength;
+
+  @Param({"0.0", "0.5"})
+  public double quoteDensity;
+
+  private String csv;
+
+  @Setup
+  public void setup() {
+    csv = new SyntheticCsv(rowCount, columns, cellLength, quoteDensity, 320).text();
+  }
+
+  @Benchmark
+  public List<List<String>> parse() throws Exception {
+    return new CsvParser<>(new StringReader(csv), new StandardObjectCreator(), true).parse();
+  }
+
+  @Benchmark
+  public CsvTable parseIntoTable() throws Exception {
+    // the same path as CsvTable.fromFile, from text instead of a file
+    CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(csv));
+    CsvTable.Builder builder = new CsvTable.Builder();
+    List<String> row = tokenizer.nextRow();
+    while (row != null) {
+      builder.addRow(row);
+      row = tokenizer.nextRow();
+    }
+    return builder.build(false);
+  }
+}
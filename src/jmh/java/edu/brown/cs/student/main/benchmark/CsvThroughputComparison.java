@@ -0,0 +1,119 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.parser.CsvParser;
+import edu.brown.cs.student.main.parser.ParallelCsvParser;
+import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Throughput comparison between the single-pass CsvTokenizer behind CsvParser and the lookahead
+ * regex split the parser used before, plus the memory-mapped and parallel parse paths, which read
+ * the same text from a temporary file. Every path parses the same generated file of wide rows and
+ * the best of several runs is reported in MB/s of input text. Unlike the JMH benchmarks, such as
+ * CsvParserBenchmark, it is a plain main() that needs no benchmark runner.
+ *
+ * <p>Run with: java -cp target/classes:...
+ * edu.brown.cs.student.main.benchmark.CsvThroughputComparison [columns] [rows]
+ */
+public class CsvThroughputComparison {
+  private static final String LOOKAHEAD_SPLIT = ",(?=([^\"]*\"[^\"]*\")*[^\"]*$)";
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 5;
+
+  /** A parse path being measured; returns the number of rows it produced. */
+  private interface ParsePath {
+    int parse(String csv) throws Exception;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int columns = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int rows = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    String csv = generate(columns, rows, new Random(320));
+    double megabytes = csv.length() / (1024.0 * 1024.0);
+    System.out.printf("%d rows x %d columns, %.1f MB%n", rows, columns, megabytes);
+
+    report("tokenizer", megabytes, csv, CsvThroughputComparison::parseWithTokenizer);
+    report("regex split", megabytes, csv, CsvThroughputComparison::parseWithRegex);
+
+    Path file = Files.createTempFile("csv-parse-benchmark", ".csv");
+    try {
+      Files.writeString(file, csv, StandardCharsets.UTF_8);
+      report("mapped", megabytes, csv, text -> parseMapped(file));
+      report("parallel", megabytes, csv, text -> parseParallel(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static int parseMapped(Path file) throws Exception {
+    return new CsvParser<>(file, row -> List.copyOf(row), false).parse().size();
+  }
+
+  private static int parseParallel(Path file) throws Exception {
+    // decode every field, as the other paths do, so lazy decoding does not skew the comparison
+    return new ParallelCsvParser<>(file, row -> List.copyOf(row), false).parse().size();
+  }
+
+  private static int parseWithTokenizer(String csv) throws Exception {
+    return new CsvParser<>(new StringReader(csv), new StandardObjectCreator(), false)
+        .parse()
+        .size();
+  }
+
+  private static int parseWithRegex(String csv) throws IOException {
+    BufferedReader reader = new BufferedReader(new StringReader(csv));
+    List<List<String>> parsed = new ArrayList<>();
+    String line = reader.readLine();
+    while (line != null) {
+      parsed.add(Arrays.asList(line.split(LOOKAHEAD_SPLIT)));
+      line = reader.readLine();
+    }
+    return parsed.size();
+  }
+
+  private static void report(String name, double megabytes, String csv, ParsePath path)
+      throws Exception {
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      path.parse(csv);
+    }
+    long best = Long.MAX_VALUE;
+    int parsedRows = 0;
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      parsedRows = path.parse(csv);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    double seconds = best / 1e9;
+    System.out.printf(
+        "%-12s %8.1f MB/s  (%d rows in %.1f ms)%n",
+        name, megabytes / seconds, parsedRows, seconds * 1000);
+  }
+
+  /** Generates rows of the given width where roughly one field in five is quoted. */
+  static String generate(int columns, int rows, Random random) {
+    StringBuilder csv = new StringBuilder();
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < columns; c++) {
+        if (c > 0) {
+          csv.append(',');
+        }
+        if (random.nextInt(5) == 0) {
+          csv.append('"').append(random.nextInt(1000)).append(',').append("000.00\"");
+        } else {
+          csv.append("value").append(random.nextInt(10000));
+        }
+      }
+      csv.append('\n');
+    }
+    return csv.toString();
+  }
+}
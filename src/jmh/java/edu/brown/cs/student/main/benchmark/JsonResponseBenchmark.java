@@ -0,0 +1,84 @@
+package edu.brown.cs.student.main.benchmark;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of serializing one response the way the handlers used to, building a Moshi instance and
+ * its adapters for every request, against the shared Moshi and precompiled adapters of
+ * JsonResponses. Run with the GC profiler to see the bytes allocated per response
+ * (gc.alloc.rate.norm):
+ *
+ * <p>java -cp target/classes:... org.openjdk.jmh.Main JsonResponseBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonResponseBenchmark {
+  private static final Type MAP_STRING_OBJECT =
+      Types.newParameterizedType(Map.class, String.class, Object.class);
+
+  @Param({"10", "1000"})
+  public int rowCount;
+
+  private Map<String, Object> errorResponse;
+  private List<List<String>> rows;
+
+  @Setup
+  public void setup() {
+    errorResponse = new HashMap<>();
+    errorResponse.put("Parameters", "Query-Providence, Column Name-City/Town, Headers-true");
+    errorResponse.put("result", "error_bad_request");
+    errorResponse.put("message", "Column index out of bounds: \"12\"");
+    rows = new ArrayList<>();
+    for (int r = 0; r < rowCount; r++) {
+      rows.add(List.of("Town " + r, "\"" + r * 1000 + ".00\"", "Rhode Island", "2024"));
+    }
+  }
+
+  @Benchmark
+  public String errorPerRequestMoshi() {
+    Moshi moshi = new Moshi.Builder().build();
+    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(MAP_STRING_OBJECT);
+    return adapter.toJson(errorResponse).replace("\\\"", "");
+  }
+
+  @Benchmark
+  public String errorSharedAdapter() {
+    return JsonResponses.toJson(errorResponse);
+  }
+
+  @Benchmark
+  public String rowsPerRequestMoshi() {
+    Moshi moshi = new Moshi.Builder().build();
+    JsonAdapter<List<List<String>>> adapter = moshi.adapter(JsonResponses.ROWS_TYPE);
+    return adapter.toJson(rows);
+  }
+
+  @Benchmark
+  public String rowsStreamingAdapter() {
+    return JsonResponses.rows().toJson(rows);
+  }
+}
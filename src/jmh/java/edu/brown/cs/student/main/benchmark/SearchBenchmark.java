@@ -0,0 +1,75 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.Search;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searches a generated table the way searchcsv does: one column or every column, by substring or
+ * exact match, and through the column indexes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+  @Param({"100000"})
+  public int rowCount;
+
+  @Param({"8"})
+  public int columns;
+
+  @Param({"0.1"})
+  public double quoteDensity;
+
+  private CsvTable table;
+  private CsvTable indexedTable;
+
+  @Setup
+  public void setup() {
+    SyntheticCsv csv = new SyntheticCsv(rowCount, columns, 8, quoteDensity, 320);
+    table = csv.table(false);
+    indexedTable = csv.table(true);
+  }
+
+  @Benchmark
+  public List<List<String>> substringInColumn() throws Exception {
+    return new Search(table, "Warwick 12", "col1", true).searchFor();
+  }
+
+  @Benchmark
+  public List<List<String>> exactInColumn() throws Exception {
+    return new Search(table, "Warwick 1234", "col1", true, true).searchFor();
+  }
+
+  @Benchmark
+  public List<List<String>> substringInEveryColumn() throws Exception {
+    return new Search(table, "Warwick 12", null, true).searchFor();
+  }
+
+  @Benchmark
+  public List<List<String>> exactInColumnIndexed() throws Exception {
+    return new Search(indexedTable, "Warwick 1234", "col1", true, true)
+        .searchFor(indexedTable.getIndex());
+  }
+
+  @Benchmark
+  public List<List<String>> substringInColumnIndexed() throws Exception {
+    return new Search(indexedTable, "Warwick 12", "col1", true)
+        .searchFor(indexedTable.getIndex());
+  }
+}
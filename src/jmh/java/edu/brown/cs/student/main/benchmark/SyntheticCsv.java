@@ -0,0 +1,125 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.parser.CsvTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates CSV files of a chosen shape for the benchmarks, so they do not depend on the small
+ * files under data. A file has a header row "col0,col1,..." followed by rows of a fixed number of
+ * columns. Each cell is a word from a small vocabulary followed by a number, padded to the chosen
+ * cell length, so searches find a predictable share of rows. The quote density is the share of
+ * cells that are quoted; quoted cells hold a comma and an escaped quote, the cases that make a
+ * tokenizer leave its fast path. The same seed always generates the same file.
+ */
+public final class SyntheticCsv {
+  /** The words cells start with; searching for one matches about a fifth of the cells. */
+  public static final String[] WORDS = {"Providence", "Warwick", "Cranston", "Newport", "Bristol"};
+
+  private final int rows;
+  private final int columns;
+  private final int cellLength;
+  private final double quoteDensity;
+  private final long seed;
+
+  /**
+   * Constructs a generator.
+   *
+   * @param rows the number of rows after the header row.
+   * @param columns the number of columns of every row.
+   * @param cellLength the minimum number of characters of a cell's value, before quoting.
+   * @param quoteDensity the share of cells that are quoted, from 0 to 1.
+   * @param seed the seed of the random cells.
+   */
+  public SyntheticCsv(int rows, int columns, int cellLength, double quoteDensity, long seed) {
+    if (rows < 0 || columns < 1 || cellLength < 0 || quoteDensity < 0 || quoteDensity > 1) {
+      throw new IllegalArgumentException("invalid synthetic CSV shape");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.cellLength = cellLength;
+    this.quoteDensity = quoteDensity;
+    this.seed = seed;
+  }
+
+  /**
+   * Generates the text of the file.
+   *
+   * @return the CSV text, header row included.
+   */
+  public String text() {
+    StringBuilder csv = new StringBuilder();
+    Random random = new Random(seed);
+    appendHeader(csv);
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < columns; c++) {
+        if (c > 0) {
+          csv.append(',');
+        }
+        String value = value(random);
+        if (random.nextDouble() < quoteDensity) {
+          csv.append("\"").append(value).append(", \"\"").append(r).append("\"\"\"");
+        } else {
+          csv.append(value);
+        }
+      }
+      csv.append('\n');
+    }
+    return csv.toString();
+  }
+
+  /**
+   * Generates the rows the text parses to, without going through a parser.
+   *
+   * @return the rows, header row included.
+   */
+  public List<List<String>> rows() {
+    List<List<String>> parsed = new ArrayList<>(rows + 1);
+    List<String> header = new ArrayList<>(columns);
+    for (int c = 0; c < columns; c++) {
+      header.add("col" + c);
+    }
+    parsed.add(header);
+    Random random = new Random(seed);
+    for (int r = 0; r < rows; r++) {
+      List<String> row = new ArrayList<>(columns);
+      for (int c = 0; c < columns; c++) {
+        String value = value(random);
+        row.add(random.nextDouble() < quoteDensity ? value + ", \"" + r + "\"" : value);
+      }
+      parsed.add(row);
+    }
+    return parsed;
+  }
+
+  /**
+   * Builds a table of the generated rows.
+   *
+   * @param buildIndex whether to also build column indexes.
+   * @return the table.
+   */
+  public CsvTable table(boolean buildIndex) {
+    return buildIndex ? CsvTable.indexedFromRows(rows()) : CsvTable.fromRows(rows());
+  }
+
+  private void appendHeader(StringBuilder csv) {
+    for (int c = 0; c < columns; c++) {
+      if (c > 0) {
+        csv.append(',');
+      }
+      csv.append("col").append(c);
+    }
+    csv.append('\n');
+  }
+
+  // text() and rows() draw the same randoms in the same order, so they describe the same file
+  private String value(Random random) {
+    StringBuilder value = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+    value.append(' ').append(random.nextInt(10000));
+    while (value.length() < cellLength) {
+      value.append('x');
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,69 @@
+package edu.brown.cs.student.main.benchmark;
+
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.server.Endpoints.ViewCSVHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializes pages of a generated table the way viewcsv writes them to its response, into a
+ * stream that discards the bytes, so only the encoding is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ViewBenchmark {
+  @Param({"100", "10000"})
+  public int pageSize;
+
+  @Param({"8"})
+  public int columns;
+
+  @Param({"0.0", "0.5"})
+  public double quoteDensity;
+
+  private CsvTable table;
+  private CountingOutputStream out;
+
+  /** Counts the bytes written to it, so the encoding can not be optimized away. */
+  private static final class CountingOutputStream extends OutputStream {
+    long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    table = new SyntheticCsv(pageSize, columns, 8, quoteDensity, 320).table(false);
+    out = new CountingOutputStream();
+  }
+
+  @Benchmark
+  public long writePage() throws IOException {
+    ViewCSVHandler.writePage(table.getRows(), 0, pageSize, out);
+    return out.count;
+  }
+}
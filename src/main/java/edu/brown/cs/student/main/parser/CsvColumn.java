@@ -0,0 +1,154 @@
+package edu.brown.cs.student.main.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * One dictionary-encoded column of a CsvTable. Every distinct cell value is stored once in the
+ * dictionary, and each row holds only the int code of its value. Rows too narrow to have the
+ * column hold the code -1.
+ */
+public final class CsvColumn {
+  /** Code of a row that does not have this column. */
+  public static final int ABSENT = -1;
+
+  private final String[] dictionary;
+  private final int[] codes;
+
+  private CsvColumn(String[] dictionary, int[] codes) {
+    this.dictionary = dictionary;
+    this.codes = codes;
+  }
+
+  /**
+   * Returns the cell of a row in this column.
+   *
+   * @param rowId the row.
+   * @return the cell value, or null if the row does not have this column.
+   */
+  public String get(int rowId) {
+    int code = codes[rowId];
+    return code == ABSENT ? null : dictionary[code];
+  }
+
+  /**
+   * Returns the dictionary code of a row's cell.
+   *
+   * @param rowId the row.
+   * @return the code, or ABSENT if the row does not have this column.
+   */
+  public int code(int rowId) {
+    return codes[rowId];
+  }
+
+  /**
+   * Returns the value a dictionary code stands for.
+   *
+   * @param code a code between 0 and distinctCount() - 1.
+   * @return the value.
+   */
+  public String value(int code) {
+    return dictionary[code];
+  }
+
+  /**
+   * Returns the number of distinct values in this column.
+   *
+   * @return the size of the dictionary.
+   */
+  public int distinctCount() {
+    return dictionary.length;
+  }
+
+  /**
+   * Finds the rows whose cell satisfies a predicate. The predicate runs once per distinct value
+   * rather than once per row, and the rows are then found with a single pass over the codes.
+   *
+   * @param predicate the test for a cell value.
+   * @return the ids of the matching rows.
+   */
+  public BitSet rowsMatching(Predicate<String> predicate) {
+    boolean[] hit = new boolean[dictionary.length];
+    boolean anyHit = false;
+    for (int code = 0; code < dictionary.length; code++) {
+      hit[code] = predicate.test(dictionary[code]);
+      anyHit |= hit[code];
+    }
+    BitSet rows = new BitSet();
+    if (!anyHit) {
+      return rows;
+    }
+    for (int rowId = 0; rowId < codes.length; rowId++) {
+      int code = codes[rowId];
+      if (code != ABSENT && hit[code]) {
+        rows.set(rowId);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Estimates the heap held by this column: the codes plus the dictionary strings.
+   *
+   * @return the estimated size in bytes.
+   */
+  public long estimatedBytes() {
+    long bytes = 16L + 4L * codes.length + 16L + 4L * dictionary.length;
+    for (String value : dictionary) {
+      // String header and array header, plus up to two bytes per char
+      bytes += 40L + 2L * value.length();
+    }
+    return bytes;
+  }
+
+  /** Collects the cells of one column while a table is being built. */
+  static final class Builder {
+    private final Map<String, Integer> codeByValue = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private int[] codes;
+    private int size;
+
+    /**
+     * Starts a column whose first rows, up to the given count, do not have it.
+     *
+     * @param absentRows the number of earlier rows that are too narrow for this column.
+     */
+    Builder(int absentRows) {
+      this.codes = new int[Math.max(16, absentRows * 2)];
+      Arrays.fill(this.codes, 0, absentRows, ABSENT);
+      this.size = absentRows;
+    }
+
+    /** Appends the cell of the next row. */
+    void add(String value) {
+      Integer code = codeByValue.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        codeByValue.put(value, code);
+        dictionary.add(value);
+      }
+      append(code);
+    }
+
+    /** Appends a row that does not have this column. */
+    void addAbsent() {
+      append(ABSENT);
+    }
+
+    private void append(int code) {
+      if (size == codes.length) {
+        codes = Arrays.copyOf(codes, size * 2);
+      }
+      codes[size++] = code;
+    }
+
+    CsvColumn build() {
+      return new CsvColumn(dictionary.toArray(new String[0]), Arrays.copyOf(codes, size));
+    }
+  }
+}
@@ -1,27 +1,53 @@
 package edu.brown.cs.student.main.parser;
 
 import edu.brown.cs.student.main.parser.RowCreators.CreatorFromRow;
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class CsvParser<T> {
-  private BufferedReader reader;
+  private RowSource rows;
   private boolean hasHeaders;
   private CreatorFromRow<T> creator;
 
   /**
    * Generic CSV parser for converting CSV file content into a list of type T. It requires a Reader
    * to read the CSV file and a CreatorFromRow interface object to convert each CSV row into an
-   * object of type T.
+   * object of type T. Rows are split by a single-pass CsvTokenizer, so quoted fields may hold
+   * commas, escaped quotes and newlines.
    *
    * @param <T> The type of objects that each CSV row will be converted into.
    */
   public CsvParser(Reader inputReader, CreatorFromRow<T> creator, Boolean hasHeaders) {
-    this.reader = new BufferedReader(inputReader);
+    this(new CsvTokenizer(inputReader), creator, hasHeaders);
+  }
+
+  /**
+   * Constructs a CsvParser that reads the file through a memory mapping instead of a Reader. Row
+   * and field boundaries are found on the raw bytes, and a field is only decoded into a String
+   * when the creator reads it (see MappedCsvReader). The file is closed once parse() returns.
+   *
+   * @param file the CSV file, encoded as UTF-8.
+   * @param creator CreatorFromRow instance to create objects of type T from each row.
+   * @param hasHeaders Boolean flag indicating if the CSV file contains headers.
+   * @throws IOException if the file cannot be opened or mapped.
+   */
+  public CsvParser(Path file, CreatorFromRow<T> creator, Boolean hasHeaders) throws IOException {
+    this(new MappedCsvReader(file), creator, hasHeaders);
+  }
+
+  /**
+   * Constructs a CsvParser over any source of rows.
+   *
+   * @param rows the source of the CSV rows.
+   * @param creator CreatorFromRow instance to create objects of type T from each row.
+   * @param hasHeaders Boolean flag indicating if the CSV file contains headers.
+   */
+  public CsvParser(RowSource rows, CreatorFromRow<T> creator, Boolean hasHeaders) {
+    this.rows = rows;
     this.creator = creator;
     this.hasHeaders = hasHeaders;
   }
@@ -34,32 +60,36 @@ public class CsvParser<T> {
    * @param hasHeaders Boolean flag indicating if the CSV file contains headers.
    */
   public List<T> parse() throws IOException, FactoryFailureException {
+    try {
+      return parseRows();
+    } finally {
+      if (rows instanceof Closeable closeable) {
+        closeable.close();
+      }
+    }
+  }
+
+  private List<T> parseRows() throws IOException, FactoryFailureException {
     List<T> parsedData = new ArrayList<>();
-    String line = reader.readLine();
-    List<String> headers = new ArrayList<>();
-    if (line == null) {
+    List<String> rowList = rows.nextRow();
+    if (rowList == null) {
       return parsedData;
     }
-    if (hasHeaders) {
-      // Split the header line to determine number of columns
-      headers = Arrays.asList(line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)"));
-    }
-    List<String> malformedRows = new ArrayList<>(); // List to keep track of malformed rows
-    while (line != null) {
-      String[] values = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-      List<String> rowList = Arrays.asList(values);
-
-      if (hasHeaders && (values.length != headers.size())) {
-        malformedRows.add(line); // Add to malformed rows if the row size doesn't match header size
+    // The header row is kept as data; its width decides which rows are well formed
+    int headerSize = rowList.size();
+    List<List<String>> malformedRows = new ArrayList<>(); // List to keep track of malformed rows
+    while (rowList != null) {
+      if (hasHeaders && (rowList.size() != headerSize)) {
+        malformedRows.add(rowList); // Add to malformed rows if the row size doesn't match headers
       } else {
         T row = creator.create(rowList); // Attempt to create a row
         parsedData.add(row);
       }
-      line = reader.readLine();
+      rowList = rows.nextRow();
     }
     if (!malformedRows.isEmpty()) {
 //      System.out.println("The following rows are malformed and are not searchable:");
-//      for (String row : malformedRows) {
+//      for (List<String> row : malformedRows) {
 //        System.out.println(row);
 //      }
       //If malformed rows are desired, new functionality needs to be added to deal
@@ -0,0 +1,318 @@
+package edu.brown.cs.student.main.parser;
+
+import edu.brown.cs.student.main.parser.Indexes.TableIndex;
+import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, fully parsed snapshot of a CSV file. The file is read and parsed exactly once when
+ * the table is built, after which every search and view is served from memory. Rows are kept
+ * exactly as the parser produced them (including a possible header row), so that whether the
+ * first row is a header can still be decided per request. Column indexes for repeated searches
+ * are optional and, when requested, are built together with the table.
+ *
+ * <p>The table is stored by column rather than by row: each column is a dictionary of its
+ * distinct values plus one int code per row (see CsvColumn). Files that repeat the same few values
+ * many times therefore hold each value once, and searches scan flat int arrays. Rows are handed
+ * out as lightweight list views that read the cells from the columns on demand.
+ */
+public final class CsvTable {
+  private final CsvColumn[] columns;
+  private final int[] widths;
+  private final int[] wellFormedRowIds;
+  private final int minimumWidth;
+  private final TableIndex index;
+
+  private CsvTable(CsvColumn[] columns, int[] widths, boolean buildIndex) {
+    this.columns = columns;
+    this.widths = widths;
+    int headerWidth = widths.length == 0 ? -1 : widths[0];
+    int[] wellFormed = new int[widths.length];
+    int wellFormedCount = 0;
+    int narrowest = Integer.MAX_VALUE;
+    for (int rowId = 0; rowId < widths.length; rowId++) {
+      narrowest = Math.min(narrowest, widths[rowId]);
+      if (widths[rowId] == headerWidth) {
+        wellFormed[wellFormedCount++] = rowId;
+      }
+    }
+    this.wellFormedRowIds = Arrays.copyOf(wellFormed, wellFormedCount);
+    this.minimumWidth = widths.length == 0 ? 0 : narrowest;
+    this.index = buildIndex ? new TableIndex(this) : null;
+  }
+
+  /**
+   * Reads and parses the CSV file at the given path into a table, without column indexes.
+   *
+   * @param filePath the path of the CSV file to parse.
+   * @return the parsed table.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if a row cannot be converted.
+   */
+  public static CsvTable fromFile(String filePath) throws IOException, FactoryFailureException {
+    return fromFile(filePath, false);
+  }
+
+  /**
+   * Reads and parses the CSV file at the given path into a table. Rows go straight from the
+   * tokenizer into the columns, so the file is never held as a list of rows.
+   *
+   * @param filePath the path of the CSV file to parse.
+   * @param buildIndex whether to also build column indexes for repeated searches.
+   * @return the parsed table.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if a row cannot be converted.
+   */
+  public static CsvTable fromFile(String filePath, boolean buildIndex)
+      throws IOException, FactoryFailureException {
+    try (FileReader fileReader = new FileReader(filePath)) {
+      CsvTokenizer tokenizer = new CsvTokenizer(fileReader);
+      Builder builder = new Builder();
+      List<String> row = tokenizer.nextRow();
+      while (row != null) {
+        builder.addRow(row);
+        row = tokenizer.nextRow();
+      }
+      return builder.build(buildIndex);
+    }
+  }
+
+  /**
+   * Reads and parses a large CSV file into a table on several threads, with ParallelCsvParser on
+   * the common ForkJoinPool. The rows are the same as fromFile's, but they are held as a list
+   * until the table is built, so this only pays off for files large enough to split.
+   *
+   * @param filePath the path of the CSV file to parse, encoded as UTF-8.
+   * @param buildIndex whether to also build column indexes for repeated searches.
+   * @return the parsed table.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if a row cannot be converted.
+   */
+  public static CsvTable fromFileInParallel(String filePath, boolean buildIndex)
+      throws IOException, FactoryFailureException {
+    List<List<String>> rows =
+        new ParallelCsvParser<>(Path.of(filePath), new StandardObjectCreator(), false).parse();
+    return buildFrom(rows, buildIndex);
+  }
+
+  /**
+   * Builds a table from rows that have already been parsed.
+   *
+   * @param rows the parsed rows, first row included.
+   * @return the table.
+   */
+  public static CsvTable fromRows(List<List<String>> rows) {
+    return buildFrom(rows, false);
+  }
+
+  /**
+   * Builds a table, with column indexes, from rows that have already been parsed.
+   *
+   * @param rows the parsed rows, first row included.
+   * @return the indexed table.
+   */
+  public static CsvTable indexedFromRows(List<List<String>> rows) {
+    return buildFrom(rows, true);
+  }
+
+  private static CsvTable buildFrom(List<List<String>> rows, boolean buildIndex) {
+    Builder builder = new Builder();
+    for (List<String> row : rows) {
+      builder.addRow(row);
+    }
+    return builder.build(buildIndex);
+  }
+
+  /**
+   * Returns every row of the table, in file order.
+   *
+   * @return an unmodifiable view of the rows.
+   */
+  public List<List<String>> getRows() {
+    return new AbstractList<>() {
+      @Override
+      public List<String> get(int rowId) {
+        return getRow(rowId);
+      }
+
+      @Override
+      public int size() {
+        return widths.length;
+      }
+    };
+  }
+
+  /**
+   * Returns the rows a search should consider. When the table has headers, rows whose width does
+   * not match the header row are malformed and left out, the same way the parser skips them. The
+   * ids of the well-formed rows are computed once, when the table is built.
+   *
+   * @param hasHeaders whether the first row is a header row.
+   * @return the searchable rows.
+   */
+  public List<List<String>> getSearchableRows(boolean hasHeaders) {
+    if (!hasHeaders) {
+      return getRows();
+    }
+    return new AbstractList<>() {
+      @Override
+      public List<String> get(int position) {
+        return getRow(wellFormedRowIds[position]);
+      }
+
+      @Override
+      public int size() {
+        return wellFormedRowIds.length;
+      }
+    };
+  }
+
+  /**
+   * Checks whether a row is one a search should consider, see getSearchableRows().
+   *
+   * @param rowId the row.
+   * @param hasHeaders whether the first row is a header row.
+   * @return true if the row is searchable.
+   */
+  public boolean isSearchable(int rowId, boolean hasHeaders) {
+    return !hasHeaders || widths[rowId] == widths[0];
+  }
+
+  /**
+   * Returns a single row as an unmodifiable list view over the columns.
+   *
+   * @param rowId the row, counting the first row of the file as 0.
+   * @return the row.
+   */
+  public List<String> getRow(int rowId) {
+    int width = widths[rowId];
+    return new AbstractList<>() {
+      @Override
+      public String get(int column) {
+        if (column < 0 || column >= width) {
+          throw new IndexOutOfBoundsException("Column " + column + " of a row of width " + width);
+        }
+        return columns[column].get(rowId);
+      }
+
+      @Override
+      public int size() {
+        return width;
+      }
+    };
+  }
+
+  /**
+   * Returns one column of the table.
+   *
+   * @param column the index of the column.
+   * @return the dictionary-encoded column.
+   */
+  public CsvColumn getColumn(int column) {
+    return columns[column];
+  }
+
+  /**
+   * Returns the number of columns, which is the width of the widest row.
+   *
+   * @return the column count.
+   */
+  public int columnCount() {
+    return columns.length;
+  }
+
+  /**
+   * Returns the width of the narrowest searchable row, so a column can be range checked without
+   * walking the rows.
+   *
+   * @param hasHeaders whether the first row is a header row.
+   * @return the smallest row width; 0 for an empty table.
+   */
+  public int getMinimumWidth(boolean hasHeaders) {
+    return hasHeaders && widths.length > 0 ? widths[0] : minimumWidth;
+  }
+
+  /**
+   * Returns the column indexes built with the table.
+   *
+   * @return the indexes, or null if the table was loaded without them.
+   */
+  public TableIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the number of rows in the table.
+   *
+   * @return the row count.
+   */
+  public int size() {
+    return widths.length;
+  }
+
+  /**
+   * Estimates the heap held by the table's columns and row widths, and by its indexes if it has
+   * them.
+   *
+   * @return the estimated size in bytes.
+   */
+  public long estimatedBytes() {
+    long bytes = 16L + 4L * (widths.length + wellFormedRowIds.length);
+    for (CsvColumn column : columns) {
+      bytes += column.estimatedBytes();
+    }
+    return index == null ? bytes : bytes + index.estimatedBytes();
+  }
+
+  /**
+   * Accumulates parsed rows into columns. Each cell is looked up in its column's dictionary as it
+   * arrives, so the row lists can be dropped right after they are added.
+   */
+  public static final class Builder {
+    private final List<CsvColumn.Builder> columns = new ArrayList<>();
+    private int[] widths = new int[16];
+    private int rowCount = 0;
+
+    /**
+     * Appends the next row of the table.
+     *
+     * @param row the cells of the row.
+     */
+    public void addRow(List<String> row) {
+      while (columns.size() < row.size()) {
+        columns.add(new CsvColumn.Builder(rowCount));
+      }
+      for (int column = 0; column < columns.size(); column++) {
+        if (column < row.size()) {
+          columns.get(column).add(row.get(column));
+        } else {
+          columns.get(column).addAbsent();
+        }
+      }
+      if (rowCount == widths.length) {
+        widths = Arrays.copyOf(widths, rowCount * 2);
+      }
+      widths[rowCount++] = row.size();
+    }
+
+    /**
+     * Finishes the table.
+     *
+     * @param buildIndex whether to also build column indexes for repeated searches.
+     * @return the table holding every row added so far.
+     */
+    public CsvTable build(boolean buildIndex) {
+      CsvColumn[] built = new CsvColumn[columns.size()];
+      for (int column = 0; column < built.length; column++) {
+        built[column] = columns.get(column).build();
+      }
+      return new CsvTable(built, Arrays.copyOf(widths, rowCount), buildIndex);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package edu.brown.cs.student.main.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass CSV tokenizer. Rows are read from a char buffer with a small state machine, so each
+ * character is looked at exactly once no matter how wide the row is. Quoted fields may contain
+ * commas, newlines and escaped quotes (written as two quotes); the surrounding quotes are removed
+ * from the returned value. Rows end at "\n", "\r\n" or a lone "\r".
+ */
+public class CsvTokenizer implements RowSource {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Reader reader;
+  private final char[] buffer;
+  private int position = 0;
+  private int limit = 0;
+  private final StringBuilder field = new StringBuilder();
+
+  private enum State {
+    FIELD_START,
+    UNQUOTED,
+    QUOTED,
+    QUOTE_IN_QUOTED
+  }
+
+  /**
+   * Constructs a tokenizer reading from the given reader. The reader is buffered internally, so it
+   * does not need to be wrapped in a BufferedReader.
+   *
+   * @param reader the source of the CSV text.
+   */
+  public CsvTokenizer(Reader reader) {
+    this.reader = reader;
+    this.buffer = new char[BUFFER_SIZE];
+  }
+
+  /**
+   * Reads the next row.
+   *
+   * @return the fields of the next row, or null once the input is exhausted.
+   * @throws IOException if the underlying reader fails.
+   */
+  @Override
+  public List<String> nextRow() throws IOException {
+    if (position >= limit && !fill()) {
+      return null;
+    }
+    List<String> row = new ArrayList<>();
+    State state = State.FIELD_START;
+    // start of the part of the current field that still sits in the buffer, or -1 if the field
+    // is being collected in the StringBuilder instead
+    int segmentStart = -1;
+    field.setLength(0);
+
+    while (true) {
+      if (position >= limit) {
+        if (segmentStart >= 0) {
+          field.append(buffer, segmentStart, position - segmentStart);
+          segmentStart = 0;
+        }
+        if (!fill()) {
+          row.add(finishField(segmentStart));
+          return row;
+        }
+      }
+      char c = buffer[position];
+      switch (state) {
+        case FIELD_START:
+          if (c == '"') {
+            state = State.QUOTED;
+            position++;
+            segmentStart = position;
+            continue;
+          }
+          state = State.UNQUOTED;
+          segmentStart = position;
+          // the character itself is handled as part of the unquoted field
+          continue;
+        case UNQUOTED:
+          while (c != ',' && c != '\n' && c != '\r' && ++position < limit) {
+            c = buffer[position];
+          }
+          if (position >= limit) {
+            continue;
+          }
+          if (c == ',') {
+            row.add(finishField(segmentStart));
+            segmentStart = -1;
+            state = State.FIELD_START;
+            position++;
+          } else {
+            row.add(finishField(segmentStart));
+            consumeLineEnd(c);
+            return row;
+          }
+          continue;
+        case QUOTED:
+          while (c != '"' && ++position < limit) {
+            c = buffer[position];
+          }
+          if (position >= limit) {
+            continue;
+          }
+          field.append(buffer, segmentStart, position - segmentStart);
+          state = State.QUOTE_IN_QUOTED;
+          position++;
+          segmentStart = position;
+          continue;
+        case QUOTE_IN_QUOTED:
+          if (c == '"') {
+            // escaped quote: keep one quote and stay inside the quoted field
+            state = State.QUOTED;
+            segmentStart = position;
+            position++;
+          } else if (c == ',') {
+            row.add(finishField(-1));
+            segmentStart = -1;
+            state = State.FIELD_START;
+            position++;
+          } else if (c == '\n' || c == '\r') {
+            row.add(finishField(-1));
+            consumeLineEnd(c);
+            return row;
+          } else {
+            // text after a closing quote is kept as-is rather than rejected
+            state = State.UNQUOTED;
+          }
+          continue;
+        default:
+          throw new IllegalStateException("Unknown tokenizer state " + state);
+      }
+    }
+  }
+
+  /**
+   * Builds the value of the field that ends at the current position. When the whole field still
+   * sits in the buffer the string is created straight from it without going through the builder.
+   */
+  private String finishField(int segmentStart) {
+    String value;
+    if (segmentStart < 0) {
+      value = field.toString();
+    } else if (field.length() == 0) {
+      value = new String(buffer, segmentStart, position - segmentStart);
+    } else {
+      field.append(buffer, segmentStart, position - segmentStart);
+      value = field.toString();
+    }
+    field.setLength(0);
+    return value;
+  }
+
+  /** Skips the row terminator that starts with the given character. */
+  private void consumeLineEnd(char c) throws IOException {
+    position++;
+    if (c == '\r' && (position < limit || fill()) && buffer[position] == '\n') {
+      position++;
+    }
+  }
+
+  /** Refills the buffer from the reader, returning false at end of input. */
+  private boolean fill() throws IOException {
+    int read;
+    do {
+      read = reader.read(buffer, 0, buffer.length);
+    } while (read == 0);
+    if (read < 0) {
+      position = 0;
+      limit = 0;
+      return false;
+    }
+    position = 0;
+    limit = read;
+    return true;
+  }
+}
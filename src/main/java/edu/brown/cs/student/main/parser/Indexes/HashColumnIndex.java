@@ -0,0 +1,77 @@
+package edu.brown.cs.student.main.parser.Indexes;
+
+import edu.brown.cs.student.main.parser.CsvColumn;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact-match index over a single column: maps every distinct cell value to the ids of the rows
+ * that hold it. Values are looked up through the column's dictionary codes, so each distinct value
+ * is hashed once. Rows too narrow to have the column are not indexed.
+ */
+public class HashColumnIndex {
+  private static final int[] NO_ROWS = new int[0];
+  private final Map<String, Integer> codeByValue;
+  private final int[][] rowsByCode;
+
+  /**
+   * Builds the index for one column of a table.
+   *
+   * @param column the dictionary-encoded column to index.
+   * @param rowCount the number of rows in the table.
+   */
+  public HashColumnIndex(CsvColumn column, int rowCount) {
+    PostingList[] building = new PostingList[column.distinctCount()];
+    this.codeByValue = new HashMap<>(column.distinctCount() * 2);
+    for (int code = 0; code < building.length; code++) {
+      building[code] = new PostingList();
+      codeByValue.put(column.value(code), code);
+    }
+    for (int rowId = 0; rowId < rowCount; rowId++) {
+      int code = column.code(rowId);
+      if (code != CsvColumn.ABSENT) {
+        building[code].add(rowId);
+      }
+    }
+    this.rowsByCode = new int[building.length][];
+    for (int code = 0; code < building.length; code++) {
+      rowsByCode[code] = building[code].toArray();
+    }
+  }
+
+  /**
+   * Looks up the rows whose cell in this column equals the value.
+   *
+   * @param value the exact value to look up.
+   * @return the ascending ids of the matching rows; empty if there are none.
+   */
+  public int[] lookup(String value) {
+    Integer code = codeByValue.get(value);
+    return code == null ? NO_ROWS : rowsByCode[code];
+  }
+
+  /**
+   * Looks up the rows whose cell in this column has the given dictionary code.
+   *
+   * @param code the dictionary code of a value in this column.
+   * @return the ascending ids of the rows holding that value.
+   */
+  public int[] rowsWithCode(int code) {
+    return rowsByCode[code];
+  }
+
+  /**
+   * Estimates the heap held by this index: the row id lists plus the value-to-code map, whose
+   * keys are the column's own dictionary strings.
+   *
+   * @return the estimated size in bytes.
+   */
+  public long estimatedBytes() {
+    // a HashMap entry, its table slot and a boxed code
+    long bytes = 16L + 56L * codeByValue.size();
+    for (int[] rows : rowsByCode) {
+      bytes += 16L + 4L * rows.length;
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,37 @@
+package edu.brown.cs.student.main.parser.Indexes;
+
+import java.util.Arrays;
+
+/**
+ * Growable, ascending list of ids (row ids or dictionary codes) used as the value side of the
+ * column indexes. Ids are indexed in order, so an id that was just added is never added a second
+ * time.
+ */
+class PostingList {
+  private int[] ids = new int[4];
+  private int size = 0;
+
+  /**
+   * Adds an id, ignoring it if it is the id that was added last.
+   *
+   * @param id the id, no smaller than any id added before.
+   */
+  void add(int id) {
+    if (size > 0 && ids[size - 1] == id) {
+      return;
+    }
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    ids[size++] = id;
+  }
+
+  /**
+   * Returns the ids, trimmed to size.
+   *
+   * @return the ascending ids.
+   */
+  int[] toArray() {
+    return Arrays.copyOf(ids, size);
+  }
+}
@@ -0,0 +1,100 @@
+package edu.brown.cs.student.main.parser.Indexes;
+
+import edu.brown.cs.student.main.parser.CsvColumn;
+import edu.brown.cs.student.main.parser.CsvTable;
+import java.util.BitSet;
+
+/**
+ * The per-column indexes of a loaded table: a hash index for exact matches and a trigram index for
+ * substring matches on every column. Lookups return the matching row ids as a BitSet, so that
+ * matches from several columns can be merged and then walked in row order.
+ */
+public class TableIndex {
+  private final CsvColumn[] columns;
+  private final HashColumnIndex[] hashIndexes;
+  private final TrigramColumnIndex[] trigramIndexes;
+
+  /**
+   * Builds the indexes for every column of the table.
+   *
+   * @param table the table to index.
+   */
+  public TableIndex(CsvTable table) {
+    int columnCount = table.columnCount();
+    this.columns = new CsvColumn[columnCount];
+    this.hashIndexes = new HashColumnIndex[columnCount];
+    this.trigramIndexes = new TrigramColumnIndex[columnCount];
+    for (int column = 0; column < columnCount; column++) {
+      columns[column] = table.getColumn(column);
+      hashIndexes[column] = new HashColumnIndex(columns[column], table.size());
+      trigramIndexes[column] = new TrigramColumnIndex(columns[column]);
+    }
+  }
+
+  /**
+   * Estimates the heap held by the indexes of every column.
+   *
+   * @return the estimated size in bytes.
+   */
+  public long estimatedBytes() {
+    long bytes = 16L;
+    for (int column = 0; column < columns.length; column++) {
+      bytes += hashIndexes[column].estimatedBytes() + trigramIndexes[column].estimatedBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * Checks whether a query can be answered by the indexes. Exact matches always can; substring
+   * matches need a query long enough to have trigrams.
+   *
+   * @param query the value being searched for.
+   * @param exactMatch whether cells must equal the query rather than contain it.
+   * @return true if matchingRows() may be called for this query.
+   */
+  public boolean canAnswer(String query, boolean exactMatch) {
+    return exactMatch || query.length() >= TrigramColumnIndex.MIN_QUERY_LENGTH;
+  }
+
+  /**
+   * Collects the rows matching a query in one column, or in any column when the column is
+   * negative. Trigram candidates are checked against the column's dictionary here, so the result
+   * holds only true matches.
+   *
+   * @param column the column to search, or a negative number for all columns.
+   * @param query the value being searched for.
+   * @param exactMatch whether cells must equal the query rather than contain it.
+   * @return the matching row ids.
+   */
+  public BitSet matchingRows(int column, String query, boolean exactMatch) {
+    BitSet result = new BitSet();
+    if (column >= 0) {
+      if (column < columns.length) {
+        addMatches(result, column, query, exactMatch);
+      }
+      return result;
+    }
+    for (int each = 0; each < columns.length; each++) {
+      addMatches(result, each, query, exactMatch);
+    }
+    return result;
+  }
+
+  private void addMatches(BitSet result, int column, String query, boolean exactMatch) {
+    if (exactMatch) {
+      addAll(result, hashIndexes[column].lookup(query));
+      return;
+    }
+    for (int code : trigramIndexes[column].candidates(query)) {
+      if (columns[column].value(code).contains(query)) {
+        addAll(result, hashIndexes[column].rowsWithCode(code));
+      }
+    }
+  }
+
+  private static void addAll(BitSet result, int[] rowIds) {
+    for (int rowId : rowIds) {
+      result.set(rowId);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package edu.brown.cs.student.main.parser.Indexes;
+
+import edu.brown.cs.student.main.parser.CsvColumn;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Substring index over a single column. Every run of three characters (trigram) in a distinct
+ * value of the column maps to the dictionary codes of the values containing it, so the values that
+ * contain a query of three or more characters are among the values holding all of the query's
+ * trigrams. The candidates still need to be checked with String.contains, since sharing trigrams
+ * does not guarantee a match. Indexing dictionary values rather than rows keeps the index small
+ * when values repeat.
+ */
+public class TrigramColumnIndex {
+  /** Queries shorter than this have no trigrams and cannot be answered by the index. */
+  public static final int MIN_QUERY_LENGTH = 3;
+
+  private static final int[] NO_CODES = new int[0];
+  private final Map<Long, int[]> codesByTrigram;
+
+  /**
+   * Builds the index for one column of a table.
+   *
+   * @param column the dictionary-encoded column to index.
+   */
+  public TrigramColumnIndex(CsvColumn column) {
+    Map<Long, PostingList> building = new HashMap<>();
+    for (int code = 0; code < column.distinctCount(); code++) {
+      String value = column.value(code);
+      for (int i = 0; i + MIN_QUERY_LENGTH <= value.length(); i++) {
+        building.computeIfAbsent(trigram(value, i), key -> new PostingList()).add(code);
+      }
+    }
+    this.codesByTrigram = new HashMap<>(building.size() * 2);
+    building.forEach((key, postings) -> this.codesByTrigram.put(key, postings.toArray()));
+  }
+
+  /**
+   * Finds the dictionary codes of the values that may contain the query.
+   *
+   * @param query the substring being searched for; at least MIN_QUERY_LENGTH characters long.
+   * @return the ascending candidate codes, a superset of the codes of values containing the query.
+   * @throws IllegalArgumentException if the query is too short to have trigrams.
+   */
+  public int[] candidates(String query) {
+    if (query.length() < MIN_QUERY_LENGTH) {
+      throw new IllegalArgumentException("Query is too short for the trigram index");
+    }
+    int[] result = null;
+    for (int i = 0; i + MIN_QUERY_LENGTH <= query.length(); i++) {
+      int[] postings = codesByTrigram.getOrDefault(trigram(query, i), NO_CODES);
+      result = result == null ? postings : intersect(result, postings);
+      if (result.length == 0) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Estimates the heap held by this index: one map entry with a boxed key per trigram, plus the
+   * code lists.
+   *
+   * @return the estimated size in bytes.
+   */
+  public long estimatedBytes() {
+    long bytes = 16L;
+    for (int[] codes : codesByTrigram.values()) {
+      bytes += 64L + 4L * codes.length;
+    }
+    return bytes;
+  }
+
+  /** Packs the three characters starting at the offset into one key. */
+  private static long trigram(String text, int offset) {
+    return ((long) text.charAt(offset) << 32)
+        | ((long) text.charAt(offset + 1) << 16)
+        | text.charAt(offset + 2);
+  }
+
+  /** Intersects two ascending code arrays. */
+  private static int[] intersect(int[] left, int[] right) {
+    int[] out = new int[Math.min(left.length, right.length)];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < left.length && j < right.length) {
+      if (left[i] < right[j]) {
+        i++;
+      } else if (left[i] > right[j]) {
+        j++;
+      } else {
+        out[size++] = left[i];
+        i++;
+        j++;
+      }
+    }
+    return size == out.length ? out : Arrays.copyOf(out, size);
+  }
+}
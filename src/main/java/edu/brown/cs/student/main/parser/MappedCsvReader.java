@@ -0,0 +1,261 @@
+package edu.brown.cs.student.main.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Reads a UTF-8 CSV file through FileChannel.map instead of a Reader. Row and field boundaries are
+ * found on the raw bytes (the delimiters are all ASCII, so they never occur inside a multi-byte
+ * character), and a field is only decoded into a String when a caller asks for it. Fields that are
+ * never looked at are never copied or decoded.
+ *
+ * <p>The quoting rules are the same as CsvTokenizer's. Files larger than one mapping window are
+ * mapped window by window; a row may not be larger than a window.
+ */
+public class MappedCsvReader implements RowSource, Closeable {
+  /** Default size of one mapping window. */
+  public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+  private static final byte COMMA = ',';
+  private static final byte QUOTE = '"';
+  private static final byte LF = '\n';
+  private static final byte CR = '\r';
+
+  private static final int FIELD_START = 0;
+  private static final int UNQUOTED = 1;
+  private static final int QUOTED = 2;
+  private static final int QUOTE_IN_QUOTED = 3;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final long endOffset;
+  private final int windowSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private int position;
+  private int[] fieldStarts = new int[16];
+  private int[] fieldEnds = new int[16];
+
+  /**
+   * Opens a mapped reader over a whole file.
+   *
+   * @param file the CSV file.
+   * @throws IOException if the file cannot be opened or mapped.
+   */
+  public MappedCsvReader(Path file) throws IOException {
+    this(file, 0, -1, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Opens a mapped reader over a byte range of a file. The range must start at the beginning of
+   * a row; reading stops at the first row that starts at or after the end of the range.
+   *
+   * @param file the CSV file.
+   * @param startOffset the offset of the first byte to read, at the start of a row.
+   * @param endOffset the offset where reading stops, or -1 for the end of the file.
+   * @param windowSize the number of bytes mapped at a time.
+   * @throws IOException if the file cannot be opened or mapped.
+   */
+  public MappedCsvReader(Path file, long startOffset, long endOffset, int windowSize)
+      throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.fileSize = channel.size();
+    this.endOffset = endOffset < 0 ? fileSize : Math.min(endOffset, fileSize);
+    this.windowSize = windowSize;
+    map(startOffset);
+  }
+
+  /**
+   * Reads the next row. The returned row decodes its fields lazily from the mapped file and
+   * remains usable after later rows are read.
+   *
+   * @return the fields of the next row, or null once the input is exhausted.
+   * @throws IOException if a row is larger than the mapping window or the file cannot be mapped.
+   */
+  @Override
+  public MappedRow nextRow() throws IOException {
+    while (true) {
+      if (windowStart + position >= endOffset) {
+        return null;
+      }
+      MappedRow row = scanRow();
+      if (row != null) {
+        return row;
+      }
+      // the row runs past the end of the window: map again starting at the row
+      if (position == 0) {
+        throw new IOException("CSV row at offset " + windowStart + " is larger than the window");
+      }
+      map(windowStart + position);
+    }
+  }
+
+  /**
+   * Finds the boundaries of the row starting at the current position, with the same state
+   * machine CsvTokenizer runs over chars.
+   *
+   * @return the row, or null if the row does not end within the current window.
+   */
+  private MappedRow scanRow() {
+    int limit = window.limit();
+    boolean windowReachesEnd = windowStart + limit >= fileSize;
+    int pos = position;
+    int fieldCount = 0;
+    int fieldStart = pos;
+    int state = FIELD_START;
+    while (true) {
+      if (pos >= limit) {
+        if (!windowReachesEnd) {
+          return null;
+        }
+        fieldCount = addField(fieldCount, fieldStart, pos);
+        position = pos;
+        return new MappedRow(window, fieldStarts, fieldEnds, fieldCount);
+      }
+      byte b = window.get(pos);
+      if (state == FIELD_START) {
+        state = b == QUOTE ? QUOTED : UNQUOTED;
+        if (b == QUOTE) {
+          pos++;
+        }
+        continue;
+      }
+      if (state == QUOTED) {
+        if (b == QUOTE) {
+          state = QUOTE_IN_QUOTED;
+        }
+        pos++;
+        continue;
+      }
+      if (state == QUOTE_IN_QUOTED && b == QUOTE) {
+        // escaped quote: back inside the quoted field
+        state = QUOTED;
+        pos++;
+        continue;
+      }
+      if (b == COMMA) {
+        fieldCount = addField(fieldCount, fieldStart, pos);
+        pos++;
+        fieldStart = pos;
+        state = FIELD_START;
+      } else if (b == LF || b == CR) {
+        fieldCount = addField(fieldCount, fieldStart, pos);
+        pos++;
+        if (b == CR && pos >= limit && !windowReachesEnd) {
+          return null;
+        }
+        if (b == CR && pos < limit && window.get(pos) == LF) {
+          pos++;
+        }
+        position = pos;
+        return new MappedRow(window, fieldStarts, fieldEnds, fieldCount);
+      } else {
+        // text after a closing quote is kept as-is, like an unquoted field
+        state = UNQUOTED;
+        pos++;
+      }
+    }
+  }
+
+  private int addField(int fieldCount, int start, int end) {
+    if (fieldCount == fieldStarts.length) {
+      fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+    }
+    fieldStarts[fieldCount] = start;
+    fieldEnds[fieldCount] = end;
+    return fieldCount + 1;
+  }
+
+  private void map(long offset) throws IOException {
+    long length = Math.min(windowSize, fileSize - offset);
+    this.window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    this.windowStart = offset;
+    this.position = 0;
+  }
+
+  /**
+   * Closes the file. Rows already read stay usable, since a mapping outlives its channel.
+   *
+   * @throws IOException if closing the file fails.
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * A row whose fields are byte ranges of the mapped file. Each field is decoded on first access
+   * and the String is kept, so later accesses do not decode it again.
+   */
+  public static final class MappedRow extends AbstractList<String> {
+    private final MappedByteBuffer buffer;
+    private final int[] starts;
+    private final int[] ends;
+    private final String[] decoded;
+
+    private MappedRow(MappedByteBuffer buffer, int[] starts, int[] ends, int fieldCount) {
+      this.buffer = buffer;
+      this.starts = Arrays.copyOf(starts, fieldCount);
+      this.ends = Arrays.copyOf(ends, fieldCount);
+      this.decoded = new String[fieldCount];
+    }
+
+    @Override
+    public String get(int field) {
+      String value = decoded[field];
+      if (value == null) {
+        value = decode(starts[field], ends[field]);
+        decoded[field] = value;
+      }
+      return value;
+    }
+
+    @Override
+    public int size() {
+      return decoded.length;
+    }
+
+    /**
+     * Returns the number of raw bytes of a field, without decoding it.
+     *
+     * @param field the index of the field.
+     * @return the length of the field in the file, quotes included.
+     */
+    public int byteLength(int field) {
+      return ends[field] - starts[field];
+    }
+
+    /** Decodes one field, removing its quotes and collapsing doubled quotes. */
+    private String decode(int start, int end) {
+      byte[] bytes = new byte[end - start];
+      buffer.get(start, bytes);
+      if (bytes.length == 0 || bytes[0] != QUOTE) {
+        return new String(bytes, StandardCharsets.UTF_8);
+      }
+      int size = 0;
+      boolean quoted = true;
+      for (int i = 1; i < bytes.length; i++) {
+        byte b = bytes[i];
+        if (quoted && b == QUOTE) {
+          if (i + 1 < bytes.length && bytes[i + 1] == QUOTE) {
+            bytes[size++] = QUOTE;
+            i++;
+          } else {
+            quoted = false;
+          }
+        } else {
+          bytes[size++] = b;
+        }
+      }
+      return new String(bytes, 0, size, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package edu.brown.cs.student.main.parser;
+
+import edu.brown.cs.student.main.parser.RowCreators.CreatorFromRow;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a large CSV file on several threads. The file is cut into byte ranges that each start at
+ * the beginning of a row, every range is parsed with its own MappedCsvReader on a ForkJoinPool,
+ * and the results are merged back in file order. parse() returns the same list CsvParser returns
+ * for the file, including which rows are left out as malformed when the file has headers.
+ *
+ * <p>Whether a newline ends a row depends on whether it sits inside a quoted field, which depends
+ * on everything before it. So each range is first scanned in parallel for every state the
+ * tokenizer could be in at its first byte. The real state at each range start is then chained
+ * from the front of the file, which only reads one small result per range.
+ *
+ * <p>The creator is called from several threads at once and must not keep state between rows.
+ */
+public class ParallelCsvParser<T> {
+  /** Files are not cut into ranges smaller than this unless asked to. */
+  public static final long MIN_CHUNK_BYTES = 1 << 20;
+
+  // tokenizer states while scanning for row starts; AFTER_CR waits to see if a '\n' follows
+  private static final int ROW_START = 0;
+  private static final int FIELD_START = 1;
+  private static final int UNQUOTED = 2;
+  private static final int QUOTED = 3;
+  private static final int QUOTE_IN_QUOTED = 4;
+  private static final int AFTER_CR = 5;
+  private static final int STATES = 6;
+
+  private static final int OTHER = 0;
+  private static final int COMMA = 1;
+  private static final int QUOTE = 2;
+  private static final int LF = 3;
+  private static final int CR = 4;
+
+  private static final int[] BYTE_CLASS = new int[256];
+
+  static {
+    BYTE_CLASS[','] = COMMA;
+    BYTE_CLASS['"'] = QUOTE;
+    BYTE_CLASS['\n'] = LF;
+    BYTE_CLASS['\r'] = CR;
+  }
+
+  /** NEXT[state][byte class] is the state after reading a byte of that class. */
+  private static final int[][] NEXT = {
+    {UNQUOTED, FIELD_START, QUOTED, ROW_START, AFTER_CR},
+    {UNQUOTED, FIELD_START, QUOTED, ROW_START, AFTER_CR},
+    {UNQUOTED, FIELD_START, UNQUOTED, ROW_START, AFTER_CR},
+    {QUOTED, QUOTED, QUOTE_IN_QUOTED, QUOTED, QUOTED},
+    {UNQUOTED, FIELD_START, QUOTED, ROW_START, AFTER_CR},
+    {UNQUOTED, FIELD_START, QUOTED, ROW_START, AFTER_CR}
+  };
+
+  private final Path file;
+  private final CreatorFromRow<T> creator;
+  private final boolean hasHeaders;
+  private final ForkJoinPool pool;
+  private final long chunkBytes;
+
+  /**
+   * Constructs a parallel parser that runs on the common ForkJoinPool and cuts the file into a few
+   * ranges per worker thread.
+   *
+   * @param file the CSV file, encoded as UTF-8.
+   * @param creator CreatorFromRow instance to create objects of type T from each row.
+   * @param hasHeaders Boolean flag indicating if the CSV file contains headers.
+   */
+  public ParallelCsvParser(Path file, CreatorFromRow<T> creator, Boolean hasHeaders) {
+    this(file, creator, hasHeaders, ForkJoinPool.commonPool(), 0);
+  }
+
+  /**
+   * Constructs a parallel parser on a given pool.
+   *
+   * @param file the CSV file, encoded as UTF-8.
+   * @param creator CreatorFromRow instance to create objects of type T from each row.
+   * @param hasHeaders Boolean flag indicating if the CSV file contains headers.
+   * @param pool the pool the ranges are scanned and parsed on.
+   * @param chunkBytes the size of a range, or 0 to pick one from the file size and the pool.
+   */
+  public ParallelCsvParser(
+      Path file,
+      CreatorFromRow<T> creator,
+      Boolean hasHeaders,
+      ForkJoinPool pool,
+      long chunkBytes) {
+    if (chunkBytes < 0) {
+      throw new IllegalArgumentException("chunkBytes must be non-negative");
+    }
+    this.file = file;
+    this.creator = creator;
+    this.hasHeaders = hasHeaders;
+    this.pool = pool;
+    this.chunkBytes = chunkBytes;
+  }
+
+  /**
+   * Parses the file.
+   *
+   * @return the created objects, in file order.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if the creator rejects a row.
+   */
+  public List<T> parse() throws IOException, FactoryFailureException {
+    long[] rowStarts;
+    long fileSize;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      fileSize = channel.size();
+      rowStarts = findRangeStarts(channel, fileSize);
+    }
+    int headerSize = hasHeaders ? headerSize() : -1;
+
+    List<Callable<List<T>>> ranges = new ArrayList<>();
+    for (int i = 0; i < rowStarts.length; i++) {
+      long start = rowStarts[i];
+      long end = i + 1 < rowStarts.length ? rowStarts[i + 1] : fileSize;
+      ranges.add(() -> parseRange(start, end, headerSize));
+    }
+    List<T> parsedData = new ArrayList<>();
+    for (Future<List<T>> range : pool.invokeAll(ranges)) {
+      parsedData.addAll(join(range));
+    }
+    return parsedData;
+  }
+
+  private List<T> parseRange(long start, long end, int headerSize)
+      throws IOException, FactoryFailureException {
+    List<T> parsedData = new ArrayList<>();
+    try (MappedCsvReader reader =
+        new MappedCsvReader(file, start, end, MappedCsvReader.DEFAULT_WINDOW_SIZE)) {
+      List<String> rowList = reader.nextRow();
+      while (rowList != null) {
+        // rows that do not match the header width are malformed, as in CsvParser
+        if (!hasHeaders || rowList.size() == headerSize) {
+          parsedData.add(creator.create(rowList));
+        }
+        rowList = reader.nextRow();
+      }
+    }
+    return parsedData;
+  }
+
+  private int headerSize() throws IOException {
+    try (MappedCsvReader reader = new MappedCsvReader(file)) {
+      List<String> header = reader.nextRow();
+      return header == null ? -1 : header.size();
+    }
+  }
+
+  /**
+   * Cuts the file into ranges of about chunkBytes and moves each cut forward to the next row
+   * start. Ranges that contain no row start are merged into the one before them.
+   */
+  private long[] findRangeStarts(FileChannel channel, long fileSize)
+      throws IOException, FactoryFailureException {
+    long rangeBytes = chunkBytes > 0 ? chunkBytes : defaultChunkBytes(fileSize);
+    rangeBytes = Math.min(rangeBytes, MappedCsvReader.DEFAULT_WINDOW_SIZE);
+    int chunks = (int) Math.max(1, (fileSize + rangeBytes - 1) / rangeBytes);
+    if (chunks == 1) {
+      return new long[] {0};
+    }
+    // map the file once, in windows holding a whole number of ranges, and scan slices of them
+    long windowBytes = MappedCsvReader.DEFAULT_WINDOW_SIZE / rangeBytes * rangeBytes;
+    List<Callable<ChunkScan>> scans = new ArrayList<>();
+    MappedByteBuffer window = null;
+    long windowStart = 0;
+    for (int i = 0; i < chunks; i++) {
+      long start = i * rangeBytes;
+      long end = Math.min(fileSize, start + rangeBytes);
+      if (window == null || start >= windowStart + window.limit()) {
+        windowStart = start;
+        long length = Math.min(windowBytes, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+      }
+      ByteBuffer slice = window.slice((int) (start - windowStart), (int) (end - start));
+      scans.add(() -> scan(slice, start));
+    }
+    List<Future<ChunkScan>> results = pool.invokeAll(scans);
+
+    long[] starts = new long[chunks];
+    int count = 1;
+    int state = join(results.get(0)).endState[ROW_START];
+    for (int i = 1; i < chunks; i++) {
+      ChunkScan chunk = join(results.get(i));
+      long rowStart = chunk.firstRowStart[state];
+      if (rowStart > starts[count - 1]) {
+        starts[count++] = rowStart;
+      }
+      state = chunk.endState[state];
+    }
+    return Arrays.copyOf(starts, count);
+  }
+
+  private long defaultChunkBytes(long fileSize) {
+    long perTask = fileSize / (4L * pool.getParallelism());
+    return Math.max(MIN_CHUNK_BYTES, perTask);
+  }
+
+  /**
+   * Runs the tokenizer over one range from every possible starting state at once. Runs that are in
+   * the same state at the same byte behave the same from then on, so they are merged at each
+   * newline; past the first row usually only an inside-quotes and an outside-quotes run are left.
+   */
+  private static ChunkScan scan(ByteBuffer bytes, long offset) {
+    ChunkScan result = new ChunkScan();
+    int[] runState = new int[STATES];
+    int[] runOf = new int[STATES];
+    int runs = STATES;
+    int unresolved = STATES - 1;
+    for (int s = 0; s < STATES; s++) {
+      runState[s] = s;
+      runOf[s] = s;
+      result.firstRowStart[s] = s == ROW_START ? offset : -1;
+    }
+    int limit = bytes.limit();
+    for (int pos = 0; pos < limit; pos++) {
+      int byteClass = BYTE_CLASS[bytes.get(pos) & 0xff];
+      for (int run = 0; run < runs; run++) {
+        int state = runState[run];
+        int next = NEXT[state][byteClass];
+        if (unresolved > 0) {
+          long rowStart = -1;
+          if (state == AFTER_CR && byteClass != LF) {
+            // a lone '\r' ended the previous row, so a row starts at this byte
+            rowStart = offset + pos;
+          } else if (next == ROW_START && pos + 1 < limit) {
+            rowStart = offset + pos + 1;
+          }
+          if (rowStart >= 0) {
+            unresolved -= resolve(result, runOf, run, rowStart);
+          }
+        }
+        runState[run] = next;
+      }
+      if (byteClass == LF && runs > 1) {
+        runs = merge(runState, runOf, runs);
+      }
+    }
+    for (int s = 0; s < STATES; s++) {
+      result.endState[s] = runState[runOf[s]];
+    }
+    return result;
+  }
+
+  /** Records a row start for the starting states of a run that have not found one yet. */
+  private static int resolve(ChunkScan result, int[] runOf, int run, long rowStart) {
+    int resolved = 0;
+    for (int s = 0; s < STATES; s++) {
+      if (runOf[s] == run && result.firstRowStart[s] < 0) {
+        result.firstRowStart[s] = rowStart;
+        resolved++;
+      }
+    }
+    return resolved;
+  }
+
+  /** Merges runs that are in the same state and returns the number of runs left. */
+  private static int merge(int[] runState, int[] runOf, int runs) {
+    for (int kept = 0; kept < runs; kept++) {
+      for (int other = kept + 1; other < runs; other++) {
+        if (runState[other] != runState[kept]) {
+          continue;
+        }
+        // fold the other run into the kept one, then move the last run into its slot
+        runs--;
+        runState[other] = runState[runs];
+        for (int s = 0; s < STATES; s++) {
+          if (runOf[s] == other) {
+            runOf[s] = kept;
+          } else if (runOf[s] == runs) {
+            runOf[s] = other;
+          }
+        }
+        other--;
+      }
+    }
+    return runs;
+  }
+
+  /** Waits for a finished task and rethrows what it threw. */
+  private static <R> R join(Future<R> task) throws IOException, FactoryFailureException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing in parallel");
+    } catch (ExecutionException e) {
+      // ForkJoinPool wraps checked exceptions of a Callable in RuntimeExceptions
+      for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof IOException io) {
+          throw io;
+        }
+        if (cause instanceof FactoryFailureException factory) {
+          throw factory;
+        }
+      }
+      if (e.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * For each state the tokenizer may be in at the first byte of a range: where the first row that
+   * starts inside the range begins (-1 if none does), and the state after the range's last byte.
+   */
+  private static final class ChunkScan {
+    private final long[] firstRowStart = new long[STATES];
+    private final int[] endState = new int[STATES];
+  }
+}
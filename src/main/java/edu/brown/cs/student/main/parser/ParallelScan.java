@@ -0,0 +1,69 @@
+package edu.brown.cs.student.main.parser;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * How a Search may spread its column scan over a shared ForkJoinPool. Scans of fewer rows than
+ * the threshold stay on the calling thread, since splitting them costs more than it saves. Larger
+ * scans are cut into ranges of at most threshold rows that are checked in parallel, and the
+ * matches are merged back in row order.
+ */
+public final class ParallelScan {
+  /** Rows below which a scan is not split. */
+  public static final int DEFAULT_THRESHOLD = 1 << 15;
+
+  private final ForkJoinPool pool;
+  private final int threshold;
+
+  /**
+   * Constructs the settings for parallel scans.
+   *
+   * @param pool the pool scans run on; it is shared by every search using these settings.
+   * @param threshold the number of rows below which a scan stays sequential, at least 1.
+   */
+  public ParallelScan(ForkJoinPool pool, int threshold) {
+    if (threshold < 1) {
+      throw new IllegalArgumentException("threshold must be at least 1");
+    }
+    this.pool = pool;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns settings that run scans on the common ForkJoinPool.
+   *
+   * @param threshold the number of rows below which a scan stays sequential, at least 1.
+   * @return the settings.
+   */
+  public static ParallelScan onCommonPool(int threshold) {
+    return new ParallelScan(ForkJoinPool.commonPool(), threshold);
+  }
+
+  /**
+   * Returns the pool scans run on.
+   *
+   * @return the pool.
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Returns the number of rows below which a scan stays sequential.
+   *
+   * @return the threshold.
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Checks whether a scan over the given number of rows should be split.
+   *
+   * @param rows the number of rows to scan.
+   * @return true if the scan should run in parallel.
+   */
+  boolean appliesTo(long rows) {
+    return rows >= threshold;
+  }
+}
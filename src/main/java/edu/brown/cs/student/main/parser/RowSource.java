@@ -0,0 +1,18 @@
+package edu.brown.cs.student.main.parser;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A source of CSV rows for CsvParser. Implementations differ in how they read the input (a
+ * buffered Reader or a memory-mapped file) but split rows and fields the same way.
+ */
+public interface RowSource {
+  /**
+   * Reads the next row.
+   *
+   * @return the fields of the next row, or null once the input is exhausted.
+   * @throws IOException if reading the input fails.
+   */
+  List<String> nextRow() throws IOException;
+}
@@ -1,37 +1,97 @@
 package edu.brown.cs.student.main.parser;
 
-import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import edu.brown.cs.student.main.parser.Indexes.TableIndex;
 import java.io.IOException;
 import java.rmi.NoSuchObjectException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * The search class is designed to facilitate searching through a csv file It supports specifying
- * whether the CSV has headers, the file name to search through the value to search for, and the
+ * whether the CSV has headers, the parsed table to search through the value to search for, and the
  * optional column ID to narrow down the searc
  */
 public class Search {
-  private String filename;
+  // per-value verdicts of a streamed scan, filled in the first time a value is seen
+  private static final byte UNKNOWN = 0;
+  private static final byte HIT = 1;
+  private static final byte MISS = 2;
+  // a streamed parallel scan checks blocks of rows that double up to this many ranges per worker
+  private static final int MAX_RANGES_PER_BLOCK = 64;
+
+  private CsvTable table;
   private String searchFor;
   private String columnID;
   private Boolean hasHeaders;
+  private boolean exactMatch;
+  private ParallelScan parallelScan;
+
+  /** Receives the rows of a streamed search, in table order, as they are found. */
+  public interface MatchConsumer {
+    /**
+     * Takes one matching row.
+     *
+     * @param rowId the id of the row in the table, usable as a cursor.
+     * @param row the matching row.
+     * @return true to keep searching, false to stop the search here.
+     * @throws IOException if passing the row on fails.
+     */
+    boolean accept(int rowId, List<String> row) throws IOException;
+  }
+
+  /**
+   * constructor for a new Search object, matching cells that contain the value.
+   *
+   * @param table the parsed CSV table to search through.
+   * @param searchFor the value to search for within the CSV.
+   * @param columnID the optional ID of the column to search, which may be a name or column index
+   * @param hasHeaders flag indicating whether the CSV has header rows.
+   */
+  public Search(CsvTable table, String searchFor, String columnID, Boolean hasHeaders) {
+    this(table, searchFor, columnID, hasHeaders, false);
+  }
 
   /**
    * constructor for a new Search object.
    *
-   * @param filename the name of the file to search through.
+   * @param table the parsed CSV table to search through.
    * @param searchFor the value to search for within the CSV.
    * @param columnID the optional ID of the column to search, which may be a name or column index
    * @param hasHeaders flag indicating whether the CSV has header rows.
+   * @param exactMatch true if cells must equal the value, false if they only need to contain it.
    */
-  public Search(String filename, String searchFor, String columnID, Boolean hasHeaders) {
-    this.filename = filename;
+  public Search(
+      CsvTable table, String searchFor, String columnID, Boolean hasHeaders, boolean exactMatch) {
+    this.table = table;
     this.searchFor = searchFor;
     this.columnID = columnID;
     this.hasHeaders = hasHeaders;
+    this.exactMatch = exactMatch;
+  }
+
+  /**
+   * Lets this search scan the table's columns in parallel when there are enough rows to scan.
+   * Results are the same, in the same order, as with a sequential scan.
+   *
+   * @param parallelScan the pool and threshold to use, or null to always scan on the calling
+   *     thread.
+   * @return this search.
+   */
+  public Search withParallelScan(ParallelScan parallelScan) {
+    this.parallelScan = parallelScan;
+    return this;
+  }
+
+  /**
+   * Checks a single cell against the value being searched for.
+   *
+   * @param field the cell value.
+   * @return true if the cell matches.
+   */
+  private boolean matches(String field) {
+    return exactMatch ? field.equals(searchFor) : field.contains(searchFor);
   }
 
   /**
@@ -71,81 +131,337 @@ public class Search {
   }
 
   /**
-   * Prints the rows that match the search criteria, used as a helper in searchFor. Iterates through
-   * each element of each row of the CSV file with for loops
+   * Finds the rows that match the search criteria, used as a helper in searchFor. Works on the
+   * table's dictionary-encoded columns: each distinct value is checked once, and the matching rows
+   * are then found by scanning the column's codes.
    *
-   * @param data the parsed CSV data as a list of lists of strings.
    * @param columnIndex the index of the column to search in.
    * @param columnSpecified a boolean indicating if a specific column was specified for the search.
-   * @return true if matches are found, false otherwise, (used to tailor response)
+   * @return the ids of the matching rows, including rows a header table considers malformed.
+   */
+  private BitSet getMatchingRows(int columnIndex, boolean columnSpecified) {
+    if (this.parallelScan != null && this.parallelScan.appliesTo(this.table.size())) {
+      int first = columnSpecified ? columnIndex : 0;
+      int last = columnSpecified ? columnIndex + 1 : this.table.columnCount();
+      byte[][] verdicts = newVerdicts(first, last);
+      // a task's rows are relative to its start, which is row 0 here
+      return this.parallelScan
+          .getPool()
+          .invoke(new MatchTask(0, this.table.size(), first, last, verdicts));
+    }
+    if (columnSpecified) {
+      return this.table.getColumn(columnIndex).rowsMatching(this::matches);
+    }
+    BitSet matchingRows = new BitSet();
+    for (int column = 0; column < this.table.columnCount(); column++) {
+      matchingRows.or(this.table.getColumn(column).rowsMatching(this::matches));
+    }
+    return matchingRows;
+  }
+
+  /**
+   * Checks that a specified column exists in every searchable row, failing the same way for every
+   * search path. A table without searchable rows passes, and the callers then find no matches
+   * without looking up the column.
+   *
+   * @param parsedData the searchable rows.
+   * @param columnIndex the index of the column to search in.
+   * @param columnSpecified a boolean indicating if a specific column was specified for the search.
+   * @throws NoSuchObjectException if a searchable row does not have the column.
+   */
+  private void checkColumnRange(
+      List<List<String>> parsedData, int columnIndex, boolean columnSpecified)
+      throws NoSuchObjectException {
+    if (!columnSpecified || parsedData.isEmpty()) {
+      return;
+    }
+    if (columnIndex < 0) {
+      throw new NoSuchObjectException("Specified column value was too small");
+    } else if (columnIndex >= this.table.getMinimumWidth(this.hasHeaders)) {
+      throw new NoSuchObjectException("Specified column value was too large");
+    }
+  }
+
+  /**
+   * uses helper methods to search the loaded table column by column, responding to errors from an
+   * invalid column or an empty result. The table is already parsed, so no file is read here.
+   */
+  public List<List<String>> searchFor() throws IllegalArgumentException, NoSuchObjectException {
+    List<List<String>> parsedData = this.table.getSearchableRows(this.hasHeaders);
+
+    boolean columnSpecified = columnID != null && !columnID.isEmpty();
+    int columnIndex = determineColumnIndex(parsedData, columnID, this.hasHeaders);
+    checkColumnRange(parsedData, columnIndex, columnSpecified);
+    // a table without searchable rows may not have the column at all
+    if (parsedData.isEmpty()) {
+      return checkNotEmpty(List.of(), columnSpecified);
+    }
+    return collectRows(getMatchingRows(columnIndex, columnSpecified), columnSpecified);
+  }
+
+  /**
+   * Searches using the table's column indexes instead of scanning the columns. The indexes return
+   * exactly the rows the scan would find, so the result is identical to searchFor(). Queries the
+   * indexes cannot answer fall back to the scan.
+   *
+   * @param index the column indexes of the table being searched.
+   * @return the matching rows, in table order.
    */
-  private List<List<String>> getMatchingRows(
-      List<List<String>> data, int columnIndex, boolean columnSpecified)
+  public List<List<String>> searchFor(TableIndex index)
       throws IllegalArgumentException, NoSuchObjectException {
+    if (!index.canAnswer(searchFor, exactMatch)) {
+      return searchFor();
+    }
+    List<List<String>> parsedData = this.table.getSearchableRows(this.hasHeaders);
+    boolean columnSpecified = columnID != null && !columnID.isEmpty();
+    int columnIndex = determineColumnIndex(parsedData, columnID, this.hasHeaders);
+    checkColumnRange(parsedData, columnIndex, columnSpecified);
+    if (parsedData.isEmpty()) {
+      return checkNotEmpty(List.of(), columnSpecified);
+    }
+    BitSet matchingRows =
+        index.matchingRows(columnSpecified ? columnIndex : -1, searchFor, exactMatch);
+    return collectRows(matchingRows, columnSpecified);
+  }
 
-    List<List<String>> matchingRows = new ArrayList<>();
-    for (List<String> eachRow : data) {
-      if (columnSpecified) {
-        if (columnIndex >= 0 && columnIndex < eachRow.size()) {
-          if (eachRow.get(columnIndex).contains(searchFor)) {
-            matchingRows.add(eachRow);
+  /**
+   * Streams the matching rows, starting at a cursor, to a consumer as they are found. Unlike
+   * searchFor(), nothing is collected: the search stops as soon as the consumer returns false, so
+   * a caller that only wants a page of results pays only for the rows scanned to find it. The
+   * column indexes are used when given and able to answer the query.
+   *
+   * @param cursor the id of the first row to consider; 0 to start at the top of the table.
+   * @param index the column indexes of the table, or null to scan.
+   * @param consumer the receiver of the matching rows.
+   * @throws IllegalArgumentException if the column identifier is invalid.
+   * @throws NoSuchObjectException if the column does not exist in every searchable row, or if a
+   *     search from the top of the table finds no matches at all.
+   * @throws IOException if the consumer fails.
+   */
+  public void streamMatches(int cursor, TableIndex index, MatchConsumer consumer)
+      throws IllegalArgumentException, NoSuchObjectException, IOException {
+    List<List<String>> parsedData = this.table.getSearchableRows(this.hasHeaders);
+    boolean columnSpecified = columnID != null && !columnID.isEmpty();
+    int columnIndex = determineColumnIndex(parsedData, columnID, this.hasHeaders);
+    checkColumnRange(parsedData, columnIndex, columnSpecified);
+
+    boolean[] found = new boolean[1];
+    MatchConsumer counting =
+        (rowId, row) -> {
+          found[0] = true;
+          return consumer.accept(rowId, row);
+        };
+    if (!parsedData.isEmpty()) {
+      scanFrom(cursor, index, columnIndex, columnSpecified, counting);
+    }
+    if (!found[0] && cursor <= 0) {
+      checkNotEmpty(List.of(), columnSpecified);
+    }
+  }
+
+  /**
+   * Walks the matching rows from a cursor, handing each to the consumer until it asks to stop.
+   *
+   * @param cursor the id of the first row to consider.
+   * @param index the column indexes of the table, or null to scan.
+   * @param columnIndex the index of the column to search in.
+   * @param columnSpecified a boolean indicating if a specific column was specified for the search.
+   * @param consumer the receiver of the matching rows.
+   * @throws IOException if the consumer fails.
+   */
+  private void scanFrom(
+      int cursor,
+      TableIndex index,
+      int columnIndex,
+      boolean columnSpecified,
+      MatchConsumer consumer)
+      throws IOException {
+
+    if (index != null && index.canAnswer(searchFor, exactMatch)) {
+      BitSet matchingRows =
+          index.matchingRows(columnSpecified ? columnIndex : -1, searchFor, exactMatch);
+      for (int rowId = matchingRows.nextSetBit(Math.max(cursor, 0));
+          rowId >= 0;
+          rowId = matchingRows.nextSetBit(rowId + 1)) {
+        if (this.table.isSearchable(rowId, this.hasHeaders)
+            && !consumer.accept(rowId, this.table.getRow(rowId))) {
+          return;
+        }
+      }
+      return;
+    }
+
+    int first = columnSpecified ? columnIndex : 0;
+    int last = columnSpecified ? columnIndex + 1 : this.table.columnCount();
+    byte[][] verdicts = newVerdicts(first, last);
+    if (this.parallelScan != null
+        && this.parallelScan.appliesTo(this.table.size() - Math.max(cursor, 0))) {
+      scanInParallel(cursor, first, last, verdicts, consumer);
+      return;
+    }
+    for (int rowId = Math.max(cursor, 0); rowId < this.table.size(); rowId++) {
+      if (!this.table.isSearchable(rowId, this.hasHeaders)) {
+        continue;
+      }
+      for (int column = first; column < last; column++) {
+        if (codeMatches(this.table.getColumn(column), verdicts[column], rowId)) {
+          if (!consumer.accept(rowId, this.table.getRow(rowId))) {
+            return;
           }
-        } else if (columnIndex >= eachRow.size()) {
-          throw new NoSuchObjectException("Specified column value was too large");
-        } else {
-          throw new NoSuchObjectException("Specified column value was too small");
+          break;
         }
-      } else {
-        for (String field : eachRow) {
-          if (field.contains(searchFor)) {
-            matchingRows.add(eachRow);
-            break;
+      }
+    }
+  }
+
+  /**
+   * Streams matches from a cursor using the pool. Rows are checked a block at a time, each block
+   * split into ranges that run in parallel, and the block's matches are then handed to the
+   * consumer in row order on the calling thread. Blocks start at one range per worker and double
+   * in size, so a small page does not pay for scanning the whole table.
+   */
+  private void scanInParallel(
+      int cursor, int first, int last, byte[][] verdicts, MatchConsumer consumer)
+      throws IOException {
+    int ranges = this.parallelScan.getPool().getParallelism();
+    int maxRanges = ranges * MAX_RANGES_PER_BLOCK;
+    int from = Math.max(cursor, 0);
+    while (from < this.table.size()) {
+      long blockSize = (long) this.parallelScan.getThreshold() * ranges;
+      int to = (int) Math.min(from + blockSize, this.table.size());
+      // the block's matches are relative to from
+      BitSet matchingRows =
+          this.parallelScan.getPool().invoke(new MatchTask(from, to, first, last, verdicts));
+      for (int row = matchingRows.nextSetBit(0); row >= 0; row = matchingRows.nextSetBit(row + 1)) {
+        int rowId = from + row;
+        if (!consumer.accept(rowId, this.table.getRow(rowId))) {
+          return;
+        }
+      }
+      from = to;
+      ranges = Math.min(ranges * 2, maxRanges);
+    }
+  }
+
+  private byte[][] newVerdicts(int first, int last) {
+    byte[][] verdicts = new byte[last][];
+    for (int column = first; column < last; column++) {
+      verdicts[column] = new byte[this.table.getColumn(column).distinctCount()];
+    }
+    return verdicts;
+  }
+
+  /**
+   * Finds the searchable matching rows in a range of row ids, splitting the range in half until
+   * it is no larger than the threshold. Each task returns its rows relative to the start of its
+   * range, so a leaf's BitSet is as large as its range rather than the table. The verdict arrays
+   * are shared between the tasks: two tasks may both test a value and store the same verdict,
+   * which is harmless, so they are not locked.
+   */
+  private final class MatchTask extends RecursiveTask<BitSet> {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final int first;
+    private final int last;
+    private final byte[][] verdicts;
+
+    MatchTask(int from, int to, int first, int last, byte[][] verdicts) {
+      this.from = from;
+      this.to = to;
+      this.first = first;
+      this.last = last;
+      this.verdicts = verdicts;
+    }
+
+    @Override
+    protected BitSet compute() {
+      if (to - from <= parallelScan.getThreshold()) {
+        BitSet matchingRows = new BitSet(to - from);
+        for (int rowId = from; rowId < to; rowId++) {
+          if (!table.isSearchable(rowId, hasHeaders)) {
+            continue;
+          }
+          for (int column = first; column < last; column++) {
+            if (codeMatches(table.getColumn(column), verdicts[column], rowId)) {
+              matchingRows.set(rowId - from);
+              break;
+            }
           }
         }
+        return matchingRows;
       }
+      int middle = (from + to) >>> 1;
+      MatchTask right = new MatchTask(middle, to, first, last, verdicts);
+      right.fork();
+      BitSet matchingRows = new MatchTask(from, middle, first, last, verdicts).compute();
+      BitSet rightRows = right.join();
+      // the right half's rows are relative to middle; shift them into this task's range
+      int offset = middle - from;
+      for (int row = rightRows.nextSetBit(0); row >= 0; row = rightRows.nextSetBit(row + 1)) {
+        matchingRows.set(offset + row);
+      }
+      return matchingRows;
     }
-    return matchingRows;
   }
 
   /**
-   * uses helper methods to loop through the parameter CSV, while also checking file name security
-   * and responding to errors called from opening a file incorrectly
+   * Checks a row's cell in one column, testing each distinct value at most once per search.
+   *
+   * @param column the column to check.
+   * @param verdicts the verdicts reached so far for the column's values.
+   * @param rowId the row to check.
+   * @return true if the row has the column and its cell matches.
    */
-  public List<List<String>> searchFor()
-      throws IOException, FactoryFailureException, IllegalArgumentException, NoSuchObjectException {
-    List<List<String>> resultList = new ArrayList<>();
-    if (!this.filename.contains("data/")) {
-      throw new IllegalArgumentException("Invalid file location");
+  private boolean codeMatches(CsvColumn column, byte[] verdicts, int rowId) {
+    int code = column.code(rowId);
+    if (code == CsvColumn.ABSENT) {
+      return false;
+    }
+    if (verdicts[code] == UNKNOWN) {
+      verdicts[code] = matches(column.value(code)) ? HIT : MISS;
     }
-    try (FileReader fileReader = new FileReader(this.filename)) {
-      CsvParser<List<String>> parser =
-          new CsvParser<>(fileReader, new StandardObjectCreator(), this.hasHeaders);
-      List<List<String>> parsedData = parser.parse();
+    return verdicts[code] == HIT;
+  }
 
-      boolean columnSpecified = columnID != null && !columnID.isEmpty();
-      int columnIndex = -1;
-      try {
-        columnIndex = determineColumnIndex(parsedData, columnID, this.hasHeaders);
-      } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException(e);
+  /**
+   * Turns matching row ids into rows, in table order, leaving out rows that are not searchable.
+   *
+   * @param matchingRows the ids of the matching rows.
+   * @param columnSpecified whether the search was limited to one column.
+   * @return the matching rows, if there are any.
+   * @throws NoSuchObjectException if there are no matching rows.
+   */
+  private List<List<String>> collectRows(BitSet matchingRows, boolean columnSpecified)
+      throws NoSuchObjectException {
+    List<List<String>> resultList = new ArrayList<>();
+    for (int rowId = matchingRows.nextSetBit(0);
+        rowId >= 0;
+        rowId = matchingRows.nextSetBit(rowId + 1)) {
+      if (this.table.isSearchable(rowId, this.hasHeaders)) {
+        resultList.add(this.table.getRow(rowId));
       }
-      resultList = getMatchingRows(parsedData, columnIndex, columnSpecified);
+    }
+    return checkNotEmpty(resultList, columnSpecified);
+  }
 
-      if (resultList.isEmpty()) {
-        if (columnSpecified) {
-          throw new NoSuchObjectException("No matches were found in the specified columns");
-        } else {
-          throw new NoSuchObjectException("No matches were found");
-        }
+  /**
+   * Turns an empty result into the error the handlers report for it.
+   *
+   * @param resultList the matching rows.
+   * @param columnSpecified whether the search was limited to one column.
+   * @return the matching rows, if there are any.
+   * @throws NoSuchObjectException if there are no matching rows.
+   */
+  private List<List<String>> checkNotEmpty(List<List<String>> resultList, boolean columnSpecified)
+      throws NoSuchObjectException {
+    if (resultList.isEmpty()) {
+      if (columnSpecified) {
+        throw new NoSuchObjectException("No matches were found in the specified columns");
+      } else {
+        throw new NoSuchObjectException("No matches were found");
       }
-    } catch (FileNotFoundException e) {
-      throw new FileNotFoundException("CSV file not found.");
-    } catch (NoSuchObjectException e) {
-      throw new NoSuchObjectException(e.getMessage());
-    } catch (FactoryFailureException e) {
-      throw new FactoryFailureException("Failed to create object from row data", null);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException(e.getMessage());
     }
     return resultList;
   }
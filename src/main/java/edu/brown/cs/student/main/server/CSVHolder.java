@@ -1,17 +1,99 @@
 package edu.brown.cs.student.main.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.FactoryFailureException;
+import edu.brown.cs.student.main.server.Metrics.ServerMetrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Singleton class responsible for managing the currently loaded CSV file within the application.
- * It keeps track of the file path of the loaded CSV and whether a CSV is currently loaded.
+ * Singleton class responsible for managing the loaded CSV files within the application. Files are
+ * loaded under a dataset name, and every loaded dataset stays in memory so that switching between
+ * them costs nothing. For each name it keeps track of the file path of the loaded CSV and the table
+ * parsed from it when it was loaded. The methods without a name work on the dataset named
+ * DEFAULT_DATASET.
+ *
+ * <p>Datasets are held in a Guava Cache weighed by the estimated heap of their tables. When the
+ * total goes over the memory budget the least recently used datasets are evicted, and have to be
+ * loaded again before they can be searched.
+ *
+ * <p>A dataset's path and table are held together in one immutable snapshot, so a request always
+ * sees a path and table that belong together and readers never take a lock. A new file is parsed
+ * before its snapshot is swapped in, and requests that already hold the old table keep using it
+ * until they finish. Every load and unload takes a version number when it is requested, and a
+ * snapshot only replaces one with a lower version, so a slow load can not undo a newer load or
+ * unload of the same dataset that finished first.
+ *
+ * <p>A background load that fails is counted in the server metrics and remembered, and the next
+ * request for its dataset fails with the reason, unless a newer load or unload came first.
  */
 public class CSVHolder {
-  private static CSVHolder instance = null;
-  private String csvFilePath;
-  private boolean isCSVLoaded = false;
+  /** Name of the dataset used when a request does not name one. */
+  public static final String DEFAULT_DATASET = "default";
+
+  /** Memory budget used until setMemoryBudget is called: half of the maximum heap. */
+  public static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 2;
+
+  /** Files at least this large are parsed in parallel until setParallelParseThreshold is called. */
+  public static final long DEFAULT_PARALLEL_PARSE_BYTES = 32L << 20;
+
+  // parses files for loadCSVInBackground one at a time, so queued loads do not pile up tables
+  private static final ExecutorService LOADER =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setNameFormat("csv-loader-%d").setDaemon(true).build());
+
+  private final AtomicLong versions = new AtomicLong();
+  // loads that took a version but have not published yet; only they need the unload snapshots
+  private final AtomicInteger loadsInFlight = new AtomicInteger();
+  private volatile long memoryBudget;
+  private volatile long parallelParseBytes = DEFAULT_PARALLEL_PARSE_BYTES;
+  private volatile Cache<String, Snapshot> datasets;
+  private final Map<String, LoadFailure> failedLoads = new ConcurrentHashMap<>();
+
+  /**
+   * An immutable loaded state of one dataset. After an unload the path and table are null; the
+   * snapshot is kept while loads are in flight, so that its version still orders them, and
+   * dropped once none are.
+   */
+  private record Snapshot(long version, String csvFilePath, CsvTable csvTable) {
+    /** Weight in KiB, since the cache's weights are ints; at least 1, so everything can go. */
+    int weight() {
+      if (csvTable == null) {
+        return 1;
+      }
+      return (int) Math.max(1, Math.min(Integer.MAX_VALUE, csvTable.estimatedBytes() >> 10));
+    }
+  }
+
+  /** A background load that failed, until the dataset's next request reports it. */
+  private record LoadFailure(long version, String message) {}
+
+  /** Lazily creates the instance, safely published by class initialization. */
+  private static final class InstanceHolder {
+    private static final CSVHolder INSTANCE = new CSVHolder();
+  }
 
   /**
    * Private constructor to prevent instantiation from outside this class.
    */
-  private CSVHolder() {}
+  private CSVHolder() {
+    this.memoryBudget = DEFAULT_MEMORY_BUDGET;
+    this.datasets = newCache(DEFAULT_MEMORY_BUDGET);
+  }
 
   /**
    * Provides access to the singleton instance of the CSVHolder class,
@@ -20,24 +102,226 @@ public class CSVHolder {
    * @return The singleton instance of the CSVHolder.
    */
   public static CSVHolder getInstance() {
-    if (instance == null) {
-      instance = new CSVHolder();
+    return InstanceHolder.INSTANCE;
+  }
+
+  private static Cache<String, Snapshot> newCache(long memoryBudget) {
+    // one segment, so eviction is least recently used across all datasets
+    return CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(Math.max(1, memoryBudget >> 10))
+        .weigher((String name, Snapshot snapshot) -> snapshot.weight())
+        .build();
+  }
+
+  /**
+   * Sets the total estimated heap the loaded datasets may use, evicting the least recently used
+   * ones if they already use more. Meant to be called once at startup.
+   *
+   * @param maxBytes the memory budget in bytes.
+   * @throws IllegalArgumentException if the budget is not positive.
+   */
+  public synchronized void setMemoryBudget(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("memory budget must be positive");
+    }
+    Cache<String, Snapshot> resized = newCache(maxBytes);
+    resized.putAll(datasets.asMap());
+    this.memoryBudget = maxBytes;
+    this.datasets = resized;
+  }
+
+  /**
+   * Sets the file size from which loads are parsed on several threads (see
+   * CsvTable.fromFileInParallel). Smaller files are parsed on the loading thread, which is
+   * faster when there is too little to split.
+   *
+   * @param minBytes the smallest file parsed in parallel.
+   * @throws IllegalArgumentException if the threshold is negative.
+   */
+  public void setParallelParseThreshold(long minBytes) {
+    if (minBytes < 0) {
+      throw new IllegalArgumentException("parallel parse threshold cannot be negative");
+    }
+    this.parallelParseBytes = minBytes;
+  }
+
+  /**
+   * Returns the memory budget of the loaded datasets.
+   *
+   * @return the budget in bytes.
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Loads a CSV file by parsing it once into an in-memory table, storing its file path and marking
+   * the CSV as loaded. Searches and views are served from the parsed table afterwards.
+   *
+   * @param filePath The file path of the CSV to load.
+   * @throws NullPointerException if the filePath argument is null.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if a row of the file cannot be parsed.
+   */
+  public void loadCSV(String filePath) throws IOException, FactoryFailureException {
+    loadCSV(filePath, false);
+  }
+
+  /**
+   * Loads a CSV file like loadCSV(String), optionally also building column indexes so that
+   * repeated searches on the file do not have to scan every row. The previously loaded table
+   * stays visible until the new one is fully parsed.
+   *
+   * @param filePath The file path of the CSV to load.
+   * @param buildIndex Whether to build column indexes for the loaded table.
+   * @throws NullPointerException if the filePath argument is null.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if a row of the file cannot be parsed.
+   */
+  public void loadCSV(String filePath, boolean buildIndex)
+      throws IOException, FactoryFailureException {
+    loadCSV(DEFAULT_DATASET, filePath, buildIndex);
+  }
+
+  /**
+   * Loads a CSV file under a dataset name, replacing whatever that name held before. Other
+   * datasets are not affected, unless the new table pushes the total over the memory budget.
+   *
+   * @param name The name of the dataset.
+   * @param filePath The file path of the CSV to load.
+   * @param buildIndex Whether to build column indexes for the loaded table.
+   * @throws NullPointerException if the name or filePath argument is null.
+   * @throws IOException if the file cannot be read.
+   * @throws FactoryFailureException if a row of the file cannot be parsed.
+   * @throws IllegalStateException if the table alone is larger than the memory budget.
+   */
+  public void loadCSV(String name, String filePath, boolean buildIndex)
+      throws IOException, FactoryFailureException {
+    checkArguments(name, filePath);
+    loadsInFlight.incrementAndGet();
+    try {
+      load(name, versions.incrementAndGet(), filePath, buildIndex);
+    } finally {
+      loadFinished();
     }
-    return instance;
   }
 
   /**
-   * Loads a CSV file by storing its file path and marking the CSV as loaded.
+   * Loads a CSV file like loadCSV(String, boolean), but parses it on a background thread and
+   * returns at once. Requests keep being served from the previously loaded table until the new
+   * one is swapped in.
    *
    * @param filePath The file path of the CSV to load.
+   * @param buildIndex Whether to build column indexes for the loaded table.
+   * @return a future that completes once the table is loaded, or fails with the IOException or
+   *     FactoryFailureException that stopped it.
    * @throws NullPointerException if the filePath argument is null.
    */
-  public void loadCSV(String filePath) {
-    if(filePath == null){
+  public CompletableFuture<Void> loadCSVInBackground(String filePath, boolean buildIndex) {
+    return loadCSVInBackground(DEFAULT_DATASET, filePath, buildIndex);
+  }
+
+  /**
+   * Loads a CSV file under a dataset name like loadCSV(String, String, boolean), but parses it on
+   * a background thread and returns at once.
+   *
+   * @param name The name of the dataset.
+   * @param filePath The file path of the CSV to load.
+   * @param buildIndex Whether to build column indexes for the loaded table.
+   * @return a future that completes once the table is loaded, or fails with the exception that
+   *     stopped it.
+   * @throws NullPointerException if the name or filePath argument is null.
+   */
+  public CompletableFuture<Void> loadCSVInBackground(
+      String name, String filePath, boolean buildIndex) {
+    checkArguments(name, filePath);
+    loadsInFlight.incrementAndGet();
+    long version = versions.incrementAndGet();
+    return CompletableFuture.runAsync(
+        () -> {
+          try {
+            load(name, version, filePath, buildIndex);
+          } catch (IOException | FactoryFailureException e) {
+            failedLoads.put(name, new LoadFailure(version, failure(filePath, e)));
+            throw new CompletionException(e);
+          } catch (RuntimeException e) {
+            failedLoads.put(name, new LoadFailure(version, failure(filePath, e)));
+            throw e;
+          } finally {
+            loadFinished();
+          }
+        },
+        LOADER);
+  }
+
+  // a load takes its version after counting itself in flight, so once none are in flight no
+  // load older than an unload snapshot is left, and the snapshots can go
+  private void loadFinished() {
+    if (loadsInFlight.decrementAndGet() == 0) {
+      dropUnloaded();
+    }
+  }
+
+  private void dropUnloaded() {
+    datasets
+        .asMap()
+        .forEach(
+            (name, snapshot) -> {
+              if (snapshot.csvTable() == null) {
+                // only if no newer load replaced it meanwhile
+                datasets.asMap().remove(name, snapshot);
+              }
+            });
+  }
+
+  private static String failure(String filePath, Exception e) {
+    return "Background load of " + filePath + " failed: " + e.getMessage();
+  }
+
+  private static void checkArguments(String name, String filePath) {
+    if (name == null) {
+      throw new NullPointerException("dataset name cannot be null");
+    }
+    if (filePath == null) {
       throw new NullPointerException("filepath cannot be null");
     }
-    this.csvFilePath = filePath;
-    this.isCSVLoaded = true;
+  }
+
+  /**
+   * Parses a file into a table and publishes it, recording the parse time and row count in the
+   * server metrics once the table is published, and a failure if it is not.
+   */
+  private void load(String name, long version, String filePath, boolean buildIndex)
+      throws IOException, FactoryFailureException {
+    long start = System.nanoTime();
+    CsvTable table;
+    try {
+      table = Files.size(Path.of(filePath)) >= parallelParseBytes
+          ? CsvTable.fromFileInParallel(filePath, buildIndex)
+          : CsvTable.fromFile(filePath, buildIndex);
+      publish(name, new Snapshot(version, filePath, table));
+    } catch (IOException | FactoryFailureException | RuntimeException e) {
+      ServerMetrics.getInstance().recordLoadFailure();
+      throw e;
+    }
+    ServerMetrics.getInstance().recordLoad(name, filePath, table.size(), System.nanoTime() - start);
+  }
+
+  /** Swaps in a snapshot unless a newer load or unload of the dataset was already published. */
+  private void publish(String name, Snapshot next) {
+    if (next.csvTable() != null && next.csvTable().estimatedBytes() > memoryBudget) {
+      throw new IllegalStateException(
+          "CSV file needs about "
+              + (next.csvTable().estimatedBytes() >> 20)
+              + " MB, more than the memory budget of "
+              + (memoryBudget >> 20)
+              + " MB");
+    }
+    datasets
+        .asMap()
+        .merge(
+            name, next, (old, candidate) -> candidate.version() > old.version() ? candidate : old);
   }
 
   /**
@@ -47,18 +331,69 @@ public class CSVHolder {
    * @throws IllegalStateException if no CSV file is currently loaded.
    */
   public String getCSVFilePath() throws IllegalStateException {
-    if (!isCSVLoaded) {
-      throw new IllegalStateException("No CSV file is currently loaded");
+    return loaded(DEFAULT_DATASET).csvFilePath();
+  }
+
+  /**
+   * Retrieves the table parsed from the currently loaded CSV file. A request should read the
+   * table once and use that table throughout, since a load may swap in another one meanwhile.
+   *
+   * @return The parsed table of the loaded CSV.
+   * @throws IllegalStateException if no CSV file is currently loaded.
+   */
+  public CsvTable getCSVTable() throws IllegalStateException {
+    return getCSVTable(DEFAULT_DATASET);
+  }
+
+  /**
+   * Retrieves the table of a named dataset, marking the dataset as recently used.
+   *
+   * @param name The name of the dataset.
+   * @return The parsed table of the dataset.
+   * @throws IllegalStateException if no CSV file is loaded under that name, or once after a
+   *     background load of the dataset failed.
+   */
+  public CsvTable getCSVTable(String name) throws IllegalStateException {
+    LoadFailure failure = failedLoads.remove(name);
+    if (failure != null) {
+      Snapshot snapshot = datasets.getIfPresent(name);
+      if (snapshot == null || snapshot.version() < failure.version()) {
+        throw new IllegalStateException(failure.message());
+      }
+    }
+    return loaded(name).csvTable();
+  }
+
+  private Snapshot loaded(String name) {
+    Snapshot snapshot = datasets.getIfPresent(name);
+    if (snapshot == null || snapshot.csvTable() == null) {
+      throw new IllegalStateException(
+          DEFAULT_DATASET.equals(name)
+              ? "No CSV file is currently loaded"
+              : "No CSV file is currently loaded as dataset " + name);
     }
-    return csvFilePath;
+    return snapshot;
   }
 
   /**
-   * Unloads the currently loaded CSV file, clearing its file path and marking no CSV as loaded.
+   * Unloads the currently loaded CSV file, clearing its file path and table and marking no CSV as
+   * loaded. Requests that already hold the table can still finish with it.
    */
   public void unloadCSV(){
-    this.csvFilePath = null;
-    this.isCSVLoaded = false;
+    unloadCSV(DEFAULT_DATASET);
+  }
+
+  /**
+   * Unloads a named dataset. Requests that already hold its table can still finish with it.
+   *
+   * @param name The name of the dataset.
+   */
+  public void unloadCSV(String name) {
+    failedLoads.remove(name);
+    publish(name, new Snapshot(versions.incrementAndGet(), null, null));
+    if (loadsInFlight.get() == 0) {
+      dropUnloaded();
+    }
   }
 
   /**
@@ -67,6 +402,35 @@ public class CSVHolder {
    * @return True if a CSV is loaded, false otherwise.
    */
   public boolean isCSVLoaded() {
-    return isCSVLoaded;
+    return isCSVLoaded(DEFAULT_DATASET);
+  }
+
+  /**
+   * Checks whether a dataset is loaded.
+   *
+   * @param name The name of the dataset.
+   * @return True if a CSV is loaded under that name, false otherwise.
+   */
+  public boolean isCSVLoaded(String name) {
+    Snapshot snapshot = datasets.getIfPresent(name);
+    return snapshot != null && snapshot.csvTable() != null;
+  }
+
+  /**
+   * Lists the names of the loaded datasets.
+   *
+   * @return the names, in alphabetical order.
+   */
+  public Set<String> getDatasetNames() {
+    Set<String> names = new TreeSet<>();
+    datasets
+        .asMap()
+        .forEach(
+            (name, snapshot) -> {
+              if (snapshot.csvTable() != null) {
+                names.add(name);
+              }
+            });
+    return names;
   }
 }
@@ -3,28 +3,226 @@ package edu.brown.cs.student.main.server.Caching;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandRecord;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * This class implements a caching mechanism for storing broadband data.
  * It uses a Guava Cache to temporarily store data about broadband speeds by state and county.
  * Entries in the cache are automatically removed after a param passed duration or trimmed
- * when the cache reaches its maximum size.
+ * when the cache reaches its maximum size. A cache made with withMemoryBudget is bounded by the
+ * estimated bytes of its data instead of its number of entries, since the response for every
+ * county of a state is far larger than the response for one.
+ *
+ * <p>getOrFetch loads missing entries itself: when several requests miss on the same state and
+ * county at once, only the first fetches the data and the others wait for its result, so a burst
+ * of identical requests makes one upstream call. getOrFetchAsync does the same without blocking
+ * the caller, for fetchers built on HttpClient.sendAsync.
+ *
+ * <p>The Record methods parse a fetched response into a BroadbandRecord once and cache the record,
+ * so hits are neither re-parsed nor kept as response text. The text methods still work on the
+ * same entries: a cached record is written back as its Census table, and cached text is parsed
+ * when it is asked for as a record.
+ *
+ * <p>Entries have a soft and a hard time to live. getOrFetch serves an entry older than the soft
+ * TTL at once and starts one background refresh of it, so popular counties are refreshed ahead
+ * of their expiry and their requests never wait on the API. Only entries older than the hard TTL
+ * are gone, and the next request for them waits for a fetch.
+ *
+ * <p>A BroadbandDiskStore can be attached as a second tier under the cache. Every fetched entry is
+ * then also appended to it, getOrFetch looks in it before fetching on a miss, and attaching it
+ * warms the cache with what it holds, so a restarted server serves repeat queries without
+ * calling the API.
+ *
+ * <p>With HotKeys attached, the counties that are looked up are counted, so the most requested
+ * can be warmed again by a BroadbandWarmup after a restart.
  */
 public class BroadbandCache {
-  private final Cache<String, String> cache;
+  /** The default memory budget for withMemoryBudget: 16 MB of cached data. */
+  public static final long DEFAULT_MAX_BYTES = 16L << 20;
+  // rough heap of an entry beyond its strings: the entry, its record and the cache's node
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+  // the String and array headers of a response kept as text
+  private static final int STRING_OVERHEAD_BYTES = 40;
+
+  // runs the refreshes of every cache; a slow refresh only delays other refreshes, not requests
+  private static final ExecutorService REFRESHER =
+      Executors.newFixedThreadPool(
+          4,
+          new ThreadFactoryBuilder().setNameFormat("broadband-refresh-%d").setDaemon(true).build());
+
+  private final Cache<String, Entry> cache;
+  private final long softTtlNanos;
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  private final Map<String, CompletableFuture<Entry>> fetching = new ConcurrentHashMap<>();
+  private final LongAdder staleHits = new LongAdder();
+  private final LongAdder refreshes = new LongAdder();
+  private final LongAdder refreshFailures = new LongAdder();
+  private final LongAdder sizeEvictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private final long hardTtlNanos;
+  private volatile BroadbandDiskStore diskStore;
+  private volatile HotKeys hotKeys;
+  private final LongAdder diskHits = new LongAdder();
+  private final LongAdder diskWrites = new LongAdder();
+  private final LongAdder diskFailures = new LongAdder();
+
+  /** Keeps fetched data as it is, for getOrFetch and getOrFetchAsync. */
+  private static final Decoder RAW = data -> data;
+  /** Parses fetched data into a record, for getOrFetchRecord and getOrFetchRecordAsync. */
+  private static final Decoder PARSED = BroadbandRecord::parse;
+
+  /** Turns fetched data into the value that is cached. */
+  private interface Decoder {
+    Object decode(String data) throws IOException;
+  }
 
   /**
-   * Constructs a BroadbandCache with specified expiration time and maximum size.
+   * Cached data and when it was fetched. The value is the API response as it was fetched, or the
+   * BroadbandRecord parsed from it.
+   */
+  private record Entry(Object value, long fetchedNanos) {
+    /** Returns the data as API response text. */
+    String data() {
+      return value instanceof BroadbandRecord record ? record.toCensusJson() : (String) value;
+    }
+
+    /** Returns the data as a record, parsing response text. */
+    BroadbandRecord record() throws IOException {
+      return value instanceof BroadbandRecord record
+          ? record
+          : BroadbandRecord.parse((String) value);
+    }
+
+    int estimatedBytes() {
+      return value instanceof BroadbandRecord record
+          ? record.estimatedBytes()
+          : STRING_OVERHEAD_BYTES + ((String) value).length();
+    }
+  }
+
+  /** Fetches the broadband data of a county when it is not cached. */
+  @FunctionalInterface
+  public interface Fetcher {
+    /**
+     * Fetches the data of one county.
+     *
+     * @param stateCode the state code of the county
+     * @param county the county code
+     * @return the broadband data
+     * @throws URISyntaxException if the URI for the API request is incorrect
+     * @throws IOException if the request fails
+     * @throws InterruptedException if the request is interrupted
+     */
+    String fetch(String stateCode, String county)
+        throws URISyntaxException, IOException, InterruptedException;
+  }
+
+  /** Fetches the broadband data of a county without blocking the calling thread. */
+  @FunctionalInterface
+  public interface AsyncFetcher {
+    /**
+     * Starts fetching the data of one county.
+     *
+     * @param stateCode the state code of the county
+     * @param county the county code
+     * @return the broadband data, once it has been fetched
+     */
+    CompletableFuture<String> fetch(String stateCode, String county);
+  }
+
+  /**
+   * Constructs a BroadbandCache with specified expiration time and maximum size. Entries are not
+   * refreshed ahead of their expiry.
    *
    * @param timeAmount the amount of time after which entries should expire
    * @param timeUnit the unit of time for the expiration amount
    * @param maxSize the maximum number of entries the cache can hold
    */
   public BroadbandCache(int timeAmount, TimeUnit timeUnit, int maxSize) {
-    cache =
-            CacheBuilder.newBuilder().expireAfterWrite(timeAmount, timeUnit).maximumSize(maxSize).recordStats().build();
+    this(timeAmount, timeAmount, timeUnit, maxSize);
+  }
+
+  /**
+   * Constructs a BroadbandCache that refreshes entries in the background once they are older
+   * than the soft TTL, and drops them once they are older than the hard TTL.
+   *
+   * @param softTtl the age after which getOrFetch refreshes an entry in the background
+   * @param hardTtl the age after which an entry expires, at least softTtl
+   * @param timeUnit the unit of both TTLs
+   * @param maxSize the maximum number of entries the cache can hold
+   */
+  public BroadbandCache(long softTtl, long hardTtl, TimeUnit timeUnit, int maxSize) {
+    this(softTtl, hardTtl, timeUnit, maxSize, false);
+  }
+
+  private BroadbandCache(
+      long softTtl, long hardTtl, TimeUnit timeUnit, long capacity, boolean inBytes) {
+    if (softTtl > hardTtl) {
+      throw new IllegalArgumentException("soft TTL must not be longer than hard TTL");
+    }
+    this.softTtlNanos = timeUnit.toNanos(softTtl);
+    this.hardTtlNanos = timeUnit.toNanos(hardTtl);
+    CacheBuilder<String, Entry> builder =
+        CacheBuilder.newBuilder()
+            .removalListener(
+                (RemovalNotification<String, Entry> notification) -> {
+                  if (notification.getCause() == RemovalCause.SIZE) {
+                    sizeEvictions.increment();
+                  } else if (notification.getCause() == RemovalCause.EXPIRED) {
+                    expirations.increment();
+                  }
+                });
+    if (inBytes) {
+      builder.maximumWeight(capacity).weigher(BroadbandCache::estimatedBytes);
+    } else {
+      builder.maximumSize(capacity);
+    }
+    this.cache = builder.expireAfterWrite(hardTtl, timeUnit).recordStats().build();
+  }
+
+  /**
+   * Constructs a BroadbandCache bounded by the estimated bytes of its entries rather than their
+   * number. When the budget is exceeded the least recently used entries are evicted, so one
+   * large response takes the room of many small ones. Like the other constructors, entries older
+   * than the soft TTL are refreshed in the background and entries older than the hard TTL expire.
+   * Guava splits the budget evenly across the cache's four segments, so an entry larger than a
+   * quarter of the budget is evicted as soon as it is stored.
+   *
+   * @param softTtl the age after which getOrFetch refreshes an entry in the background
+   * @param hardTtl the age after which an entry expires, at least softTtl
+   * @param timeUnit the unit of both TTLs
+   * @param maxBytes the estimated heap the cached data may use
+   * @return the cache
+   */
+  public static BroadbandCache withMemoryBudget(
+      long softTtl, long hardTtl, TimeUnit timeUnit, long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("memory budget must be positive");
+    }
+    return new BroadbandCache(softTtl, hardTtl, timeUnit, maxBytes, true);
+  }
+
+  /** Estimates the heap of an entry; its strings are ASCII, so one byte per character. */
+  private static int estimatedBytes(String key, Entry entry) {
+    long bytes = ENTRY_OVERHEAD_BYTES + key.length() + (long) entry.estimatedBytes();
+    return (int) Math.min(Integer.MAX_VALUE, bytes);
   }
 
   /**
@@ -38,12 +236,32 @@ public class BroadbandCache {
   public void putData(String stateCode, String county, String data) {
     if(stateCode.equals("") || county.equals("") || data.equals(""))
       throw new NullPointerException("cannot store a null value");
-    String key = generateKey(stateCode, county);
-    cache.put(key, data);
+    put(generateKey(stateCode, county), new Entry(data, System.nanoTime()));
   }
 
   /**
-   * Retrieves broadband data from the cache for a given state and county.
+   * Stores the parsed broadband data of a county in the cache.
+   *
+   * @param stateCode the state code to associate with the data
+   * @param county the county code to associate with the data
+   * @param record the broadband data to store
+   * @throws NullPointerException if any of the parameters are empty
+   */
+  public void putRecord(String stateCode, String county, BroadbandRecord record) {
+    if(stateCode.equals("") || county.equals("") || record == null)
+      throw new NullPointerException("cannot store a null value");
+    put(generateKey(stateCode, county), new Entry(record, System.nanoTime()));
+  }
+
+  private void put(String key, Entry entry) {
+    cache.put(key, entry);
+    persist(key, entry);
+  }
+
+  /**
+   * Retrieves broadband data from the cache for a given state and county. Only the memory tier
+   * is looked in; getOrFetch also looks in an attached disk store. Parsed data is returned as the
+   * API response it was parsed from.
    *
    * @param stateCode the state code of the data to retrieve
    * @param county the county name of the data to retrieve
@@ -54,14 +272,400 @@ public class BroadbandCache {
     if(stateCode.equals("") || county.equals(""))
       throw new NullPointerException("cannot search a null value");
     String key = generateKey(stateCode, county);
-    return cache.getIfPresent(key);
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    touch(stateCode, county);
+    return entry.data();
   }
 
   /**
-   * Invalidates all entries in the cache and purges it
+   * Retrieves the parsed broadband data of a county from the memory tier of the cache.
+   *
+   * @param stateCode the state code of the data to retrieve
+   * @param county the county code of the data to retrieve
+   * @return the record if present, or null if nothing or no broadband table is cached for it
+   * @throws NullPointerException if any of the parameters are empty
+   */
+  public BroadbandRecord getRecord(String stateCode, String county) {
+    if(stateCode.equals("") || county.equals(""))
+      throw new NullPointerException("cannot search a null value");
+    Entry entry = cache.getIfPresent(generateKey(stateCode, county));
+    try {
+      if (entry == null) {
+        return null;
+      }
+      BroadbandRecord record = entry.record();
+      touch(stateCode, county);
+      return record;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Retrieves broadband data from the cache, fetching and storing it if it is missing. Concurrent
+   * misses on the same state and county share one fetch; if it fails, all of them get its
+   * exception and nothing is stored, so the next request fetches again. Fetches are recorded in
+   * the cache statistics as loads.
+   *
+   * <p>Data older than the soft TTL is returned as is, and one background refresh of it is
+   * started with the given fetcher unless one is already running. A failed refresh keeps the old
+   * data until the next request tries again or the hard TTL expires it.
+   *
+   * <p>With a disk store attached, a miss is looked up in it before fetching, and fetched data is
+   * appended to it. Data in the store keeps the age it had when it was fetched.
+   *
+   * @param stateCode the state code of the data to retrieve
+   * @param county the county code of the data to retrieve
+   * @param fetcher fetches the data on a miss or refresh
+   * @return the cached or fetched broadband data
+   * @throws NullPointerException if any of the parameters or the fetched data are empty
+   * @throws URISyntaxException if the fetch fails to build its request
+   * @throws IOException if the fetch fails
+   * @throws InterruptedException if the fetch is interrupted
+   */
+  public String getOrFetch(String stateCode, String county, Fetcher fetcher)
+      throws URISyntaxException, IOException, InterruptedException {
+    return getOrFetchEntry(stateCode, county, fetcher, RAW).data();
+  }
+
+  /**
+   * Retrieves the parsed broadband data of a county like getOrFetch. Fetched data is parsed once,
+   * and only the record is cached, which takes a fraction of the memory of the response text.
+   *
+   * @param stateCode the state code of the data to retrieve
+   * @param county the county code of the data to retrieve
+   * @param fetcher fetches the API response on a miss or refresh
+   * @return the cached or fetched record
+   * @throws NullPointerException if any of the parameters or the fetched data are empty
+   * @throws URISyntaxException if the fetch fails to build its request
+   * @throws IOException if the fetch fails or its response is not a table of one county
+   * @throws InterruptedException if the fetch is interrupted
+   */
+  public BroadbandRecord getOrFetchRecord(String stateCode, String county, Fetcher fetcher)
+      throws URISyntaxException, IOException, InterruptedException {
+    return getOrFetchEntry(stateCode, county, fetcher, PARSED).record();
+  }
+
+  private Entry getOrFetchEntry(String stateCode, String county, Fetcher fetcher, Decoder decoder)
+      throws URISyntaxException, IOException, InterruptedException {
+    if(stateCode.equals("") || county.equals(""))
+      throw new NullPointerException("cannot search a null value");
+    String key = generateKey(stateCode, county);
+    Entry entry =
+        CacheLoads.getOrLoad(
+            cache, key, () -> loadEntry(key, stateCode, county, fetcher, decoder));
+    touch(stateCode, county);
+    if (System.nanoTime() - entry.fetchedNanos() > softTtlNanos) {
+      staleHits.increment();
+      refreshInBackground(key, stateCode, county, fetcher, decoder);
+    }
+    return entry;
+  }
+
+  private Entry loadEntry(
+      String key, String stateCode, String county, Fetcher fetcher, Decoder decoder)
+      throws URISyntaxException, IOException, InterruptedException {
+    Entry stored = readFromDisk(key);
+    if (stored != null) {
+      diskHits.increment();
+      return stored;
+    }
+    Entry fetched = toEntry(fetcher.fetch(stateCode, county), decoder);
+    persist(key, fetched);
+    return fetched;
+  }
+
+  /**
+   * Retrieves broadband data from the cache like getOrFetch, but without blocking: a miss starts
+   * the fetch and returns at once, and the data arrives when the fetch completes. Concurrent
+   * misses on the same state and county share one fetch, and a failed fetch stores nothing.
+   * Stale data is returned as is while the fetcher refreshes it, as in getOrFetch. A miss is not
+   * recorded as a load in the cache statistics, since no thread waits for it.
+   *
+   * @param stateCode the state code of the data to retrieve
+   * @param county the county code of the data to retrieve
+   * @param fetcher starts fetching the data on a miss or refresh
+   * @return the cached or fetched broadband data, or the exception the fetch failed with
+   * @throws NullPointerException if any of the parameters are empty
+   */
+  public CompletableFuture<String> getOrFetchAsync(
+      String stateCode, String county, AsyncFetcher fetcher) {
+    return getOrFetchEntryAsync(stateCode, county, fetcher, RAW)
+        .thenApply(
+            entry -> {
+              touch(stateCode, county);
+              return entry.data();
+            });
+  }
+
+  /**
+   * Retrieves the parsed broadband data of a county like getOrFetchAsync, caching only the
+   * record parsed from the fetched response.
+   *
+   * @param stateCode the state code of the data to retrieve
+   * @param county the county code of the data to retrieve
+   * @param fetcher starts fetching the API response on a miss or refresh
+   * @return the cached or fetched record, or the exception the fetch or parse failed with
+   * @throws NullPointerException if any of the parameters are empty
+   */
+  public CompletableFuture<BroadbandRecord> getOrFetchRecordAsync(
+      String stateCode, String county, AsyncFetcher fetcher) {
+    return asRecord(getOrFetchEntryAsync(stateCode, county, fetcher, PARSED))
+        .thenApply(
+            record -> {
+              touch(stateCode, county);
+              return record;
+            });
+  }
+
+  /**
+   * Caches the record of a county like getOrFetchRecordAsync, without counting it as a request
+   * in the attached HotKeys, so a warm-up does not make its own counties hot.
+   */
+  CompletableFuture<BroadbandRecord> warm(String stateCode, String county, AsyncFetcher fetcher) {
+    return asRecord(getOrFetchEntryAsync(stateCode, county, fetcher, PARSED));
+  }
+
+  private static CompletableFuture<BroadbandRecord> asRecord(CompletableFuture<Entry> fetch) {
+    return fetch
+        .thenApply(
+            entry -> {
+              try {
+                return entry.record();
+              } catch (IOException e) {
+                throw new CompletionException(e);
+              }
+            });
+  }
+
+  private CompletableFuture<Entry> getOrFetchEntryAsync(
+      String stateCode, String county, AsyncFetcher fetcher, Decoder decoder) {
+    if(stateCode.equals("") || county.equals(""))
+      throw new NullPointerException("cannot search a null value");
+    String key = generateKey(stateCode, county);
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      entry = readFromDisk(key);
+      if (entry != null) {
+        diskHits.increment();
+        cache.put(key, entry);
+      }
+    }
+    if (entry != null) {
+      if (System.nanoTime() - entry.fetchedNanos() > softTtlNanos) {
+        staleHits.increment();
+        refreshInBackground(key, () -> fetcher.fetch(stateCode, county), decoder);
+      }
+      return CompletableFuture.completedFuture(entry);
+    }
+
+    CompletableFuture<Entry> result = new CompletableFuture<>();
+    CompletableFuture<Entry> running = fetching.putIfAbsent(key, result);
+    if (running != null) {
+      return running;
+    }
+    startFetch(() -> fetcher.fetch(stateCode, county))
+        .whenComplete(
+            (data, error) -> {
+              Entry fetched = null;
+              try {
+                if (error == null) {
+                  fetched = toEntry(data, decoder);
+                  cache.put(key, fetched);
+                  persist(key, fetched);
+                }
+              } catch (IOException | RuntimeException e) {
+                error = e;
+              } finally {
+                // stored before it is removed, so no request can miss in between
+                fetching.remove(key, result);
+              }
+              if (error == null) {
+                result.complete(fetched);
+              } else {
+                result.completeExceptionally(unwrap(error));
+              }
+            });
+    return result;
+  }
+
+  /** Starts a fetch, turning an exception thrown while starting it into a failed fetch. */
+  private static CompletableFuture<String> startFetch(Supplier<CompletableFuture<String>> start) {
+    try {
+      return start.get();
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static Entry toEntry(String data, Decoder decoder) throws IOException {
+    if (data == null || data.equals("")) {
+      throw new NullPointerException("cannot store a null value");
+    }
+    return new Entry(decoder.decode(data), System.nanoTime());
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null
+        ? error.getCause()
+        : error;
+  }
+
+  /** Starts a refresh of the key on the refresher threads unless one is already running. */
+  private void refreshInBackground(
+      String key, String stateCode, String county, Fetcher fetcher, Decoder decoder) {
+    refreshInBackground(
+        key,
+        () ->
+            CompletableFuture.supplyAsync(
+                () -> {
+                  try {
+                    return fetcher.fetch(stateCode, county);
+                  } catch (Exception e) {
+                    throw new CompletionException(e);
+                  }
+                },
+                REFRESHER),
+        decoder);
+  }
+
+  /** Starts a refresh of the key unless one is already running. */
+  private void refreshInBackground(
+      String key, Supplier<CompletableFuture<String>> refresh, Decoder decoder) {
+    if (!refreshing.add(key)) {
+      return;
+    }
+    startFetch(refresh)
+        .whenComplete(
+            (data, error) -> {
+              try {
+                if (error != null) {
+                  refreshFailures.increment();
+                  return;
+                }
+                Entry entry = toEntry(data, decoder);
+                cache.put(key, entry);
+                refreshes.increment();
+                persist(key, entry);
+              } catch (IOException | RuntimeException e) {
+                refreshFailures.increment();
+              } finally {
+                refreshing.remove(key);
+              }
+            });
+  }
+
+  /**
+   * Starts counting the counties that are looked up in the cache, with the getters and the
+   * getOrFetch methods. Only lookups that find or fetch the data count, so a county the API
+   * does not know never becomes hot.
+   *
+   * @param keys the counts to add to.
+   */
+  public void attachHotKeys(HotKeys keys) {
+    this.hotKeys = keys;
+  }
+
+  private void touch(String stateCode, String county) {
+    HotKeys keys = hotKeys;
+    if (keys != null && !county.equals("*")) {
+      keys.record(stateCode, county);
+    }
+  }
+
+  /**
+   * Attaches a disk store as the second tier of the cache, and warms the cache with the data in
+   * it that is younger than the hard TTL. Older data is dropped from the store. The least
+   * recently fetched data is loaded first, so when the cache can not hold all of it, the most
+   * recent is what remains.
+   *
+   * @param store the store to attach.
+   * @return the number of entries loaded into the cache.
+   * @throws IOException if the store can not be read or compacted.
+   */
+  public int attachDiskStore(BroadbandDiskStore store) throws IOException {
+    long nowMillis = System.currentTimeMillis();
+    store.compact(nowMillis - TimeUnit.NANOSECONDS.toMillis(hardTtlNanos));
+    int warmed = 0;
+    for (String key : store.keysByAge()) {
+      BroadbandDiskStore.Stored stored = store.read(key);
+      if (stored != null) {
+        cache.put(key, toEntry(stored, nowMillis));
+        warmed++;
+      }
+    }
+    this.diskStore = store;
+    return warmed;
+  }
+
+  /**
+   * Converts data read from the disk store to an entry. The store holds the API responses, which
+   * are parsed again when they are broadband tables of one county. The wall clock time the data
+   * was fetched at becomes the nanoTime it would have had.
+   */
+  private static Entry toEntry(BroadbandDiskStore.Stored stored, long nowMillis) {
+    long ageNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - stored.fetchedMillis()));
+    Object value;
+    try {
+      value = BroadbandRecord.parse(stored.data());
+    } catch (IOException e) {
+      value = stored.data();
+    }
+    return new Entry(value, System.nanoTime() - ageNanos);
+  }
+
+  /** Reads a key from the disk store, if one is attached and holds data younger than the TTL. */
+  private Entry readFromDisk(String key) {
+    BroadbandDiskStore store = diskStore;
+    if (store == null) {
+      return null;
+    }
+    try {
+      BroadbandDiskStore.Stored stored = store.read(key);
+      if (stored == null) {
+        return null;
+      }
+      Entry entry = toEntry(stored, System.currentTimeMillis());
+      return System.nanoTime() - entry.fetchedNanos() > hardTtlNanos ? null : entry;
+    } catch (IOException e) {
+      // a broken store only costs a fetch
+      diskFailures.increment();
+      return null;
+    }
+  }
+
+  /** Appends an entry to the disk store, if one is attached. */
+  private void persist(String key, Entry entry) {
+    BroadbandDiskStore store = diskStore;
+    if (store == null) {
+      return;
+    }
+    long ageMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.fetchedNanos());
+    try {
+      store.append(key, entry.data(), System.currentTimeMillis() - ageMillis);
+      diskWrites.increment();
+    } catch (IOException e) {
+      diskFailures.increment();
+    }
+  }
+
+  /**
+   * Invalidates all entries in the cache and purges it, and clears the attached disk store so
+   * the entries are not read back from it
    */
   public void invalidateAll(){
     cache.invalidateAll();
+    BroadbandDiskStore store = diskStore;
+    if (store != null) {
+      try {
+        store.clear();
+      } catch (IOException e) {
+        diskFailures.increment();
+      }
+    }
   }
 
   /**
@@ -83,4 +687,34 @@ public class BroadbandCache {
   public CacheStats stats() {
     return cache.stats();
   }
+
+  /**
+   * Retrieves the counts the cache keeps beyond Guava's statistics: its current entries and their
+   * estimated bytes, why entries were evicted, and how often stale data was served and how many
+   * of the background refreshes it started succeeded or failed, and how often the disk store
+   * answered a miss, was written to, or failed, and how many of its background rewrites failed.
+   *
+   * @return the counts by name, in a stable order
+   */
+  public Map<String, Long> counters() {
+    long bytes = 0;
+    for (Map.Entry<String, Entry> entry : cache.asMap().entrySet()) {
+      bytes += estimatedBytes(entry.getKey(), entry.getValue());
+    }
+    Map<String, Long> counters = new LinkedHashMap<>();
+    counters.put("entries", cache.size());
+    counters.put("estimated_bytes", bytes);
+    counters.put("size_evictions", sizeEvictions.sum());
+    counters.put("expirations", expirations.sum());
+    counters.put("stale_hits", staleHits.sum());
+    counters.put("refreshes", refreshes.sum());
+    counters.put("refresh_failures", refreshFailures.sum());
+    counters.put("refreshes_running", (long) refreshing.size());
+    counters.put("disk_hits", diskHits.sum());
+    counters.put("disk_writes", diskWrites.sum());
+    counters.put("disk_failures", diskFailures.sum());
+    BroadbandDiskStore store = diskStore;
+    counters.put("disk_rewrite_failures", store == null ? 0 : store.rewriteFailures());
+    return counters;
+  }
 }
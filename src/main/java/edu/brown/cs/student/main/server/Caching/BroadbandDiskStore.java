@@ -0,0 +1,438 @@
+package edu.brown.cs.student.main.server.Caching;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps broadband responses in a file, so they survive a restart of the server. The file is an
+ * append-only log of records, each holding a key, its data and the wall clock time the data was
+ * fetched. A later record for a key replaces the earlier ones. Only the position of each key's
+ * latest record is kept in memory; its data is read from the file when it is asked for. Once
+ * replaced records make up more than half of a file of at least MIN_REWRITE_BYTES, an append
+ * queues a rewrite of the file without them, so it stays within about twice the size of the
+ * latest data. The rewrite runs on a background thread and copies most of the file without
+ * holding the store's lock; only the records appended meanwhile are copied under it, just before
+ * the new file replaces the old one. If the rewrite fails, the new file is deleted and the store
+ * keeps the old one.
+ *
+ * <p>Every record starts with its length and a CRC32 of its contents. A record cut short by a
+ * crash, or any record after a corrupt one, is dropped when the file is opened, and the file is
+ * truncated before it, so a damaged tail never stops the server from starting.
+ *
+ * <p>Records are not forced to the disk one by one; losing the last few to a power cut only
+ * costs their refetch. The methods are synchronized, since the store is only read on misses of
+ * the BroadbandCache in front of it.
+ */
+public final class BroadbandDiskStore implements Closeable {
+  // the length and the CRC32 before every record's contents
+  private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+  // the time and key length before every record's key
+  private static final int PREFIX_BYTES = Long.BYTES + Integer.BYTES;
+  // larger records can only come from a corrupt length
+  private static final int MAX_RECORD_BYTES = 64 << 20;
+
+  /** Appends do not rewrite files smaller than this, which are cheap to keep as they are. */
+  public static final long MIN_REWRITE_BYTES = 256 << 10;
+
+  // one thread for the rewrites of every store, since they are rare and bound by the disk
+  private static final ExecutorService REWRITER =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("broadband-disk-rewrite")
+              .setDaemon(true)
+              .build());
+
+  private final Path file;
+  // compact rewrites to the one under the lock, and a background rewrite to the other, so the
+  // two never write the same file
+  private final Path compacted;
+  private final Path rewritten;
+  private FileChannel channel;
+  private long end;
+  private long liveBytes;
+  // bumped whenever records are dropped, which a background rewrite can not catch up with
+  private long generation;
+  private final Map<String, Location> index = new HashMap<>();
+  private final AtomicBoolean rewriteQueued = new AtomicBoolean();
+  private final LongAdder rewriteFailures = new LongAdder();
+
+  /** Where the contents of a key's latest record are in the file. */
+  private record Location(long position, int length, long fetchedMillis) {}
+
+  /** Data read from the store, with the wall clock time it was fetched at. */
+  public record Stored(String data, long fetchedMillis) {}
+
+  private BroadbandDiskStore(Path file) throws IOException {
+    this.file = file;
+    this.compacted = file.resolveSibling(file.getFileName() + ".compact");
+    this.rewritten = file.resolveSibling(file.getFileName() + ".rewrite");
+    this.channel = openChannel(file);
+    this.end = scan();
+  }
+
+  /**
+   * Opens the store in a file, creating the file and its directory if they do not exist.
+   *
+   * @param file the log file.
+   * @return the store, indexing the records already in the file.
+   * @throws IOException if the file can not be read or created.
+   */
+  public static BroadbandDiskStore open(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    return new BroadbandDiskStore(file);
+  }
+
+  private static FileChannel openChannel(Path file) throws IOException {
+    return FileChannel.open(
+        file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /** Indexes the records of the file and truncates it after the last intact one. */
+  private long scan() throws IOException {
+    long size = channel.size();
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    while (position + HEADER_BYTES <= size) {
+      header.clear();
+      readFully(header, position);
+      int length = header.getInt(0);
+      int crc = header.getInt(Integer.BYTES);
+      long contents = position + HEADER_BYTES;
+      if (length < PREFIX_BYTES || length > MAX_RECORD_BYTES || contents + length > size) {
+        break;
+      }
+      ByteBuffer record = ByteBuffer.allocate(length);
+      readFully(record, contents);
+      if (checksum(record.array()) != crc) {
+        break;
+      }
+      int keyLength = record.getInt(Long.BYTES);
+      if (keyLength < 0 || keyLength > length - PREFIX_BYTES) {
+        break;
+      }
+      String key = new String(record.array(), PREFIX_BYTES, keyLength, StandardCharsets.UTF_8);
+      index(key, new Location(contents, length, record.getLong(0)));
+      position = contents + length;
+    }
+    if (position < size) {
+      channel.truncate(position);
+    }
+    return position;
+  }
+
+  private void index(String key, Location location) {
+    Location replaced = index.put(key, location);
+    if (replaced != null) {
+      liveBytes -= HEADER_BYTES + replaced.length();
+    }
+    liveBytes += HEADER_BYTES + location.length();
+  }
+
+  /**
+   * Appends data for a key, replacing what the store held for it.
+   *
+   * @param key the key of the data.
+   * @param data the data.
+   * @param fetchedMillis the wall clock time the data was fetched at.
+   * @throws IOException if the record can not be written.
+   */
+  public synchronized void append(String key, String data, long fetchedMillis)
+      throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+    int length = PREFIX_BYTES + keyBytes.length + dataBytes.length;
+    if (length > MAX_RECORD_BYTES) {
+      throw new IOException("Record for " + key + " is too large to store");
+    }
+    ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+    record.putInt(length).putInt(0);
+    record.putLong(fetchedMillis).putInt(keyBytes.length).put(keyBytes).put(dataBytes);
+    record.putInt(Integer.BYTES, checksum(record.array(), HEADER_BYTES, length));
+    record.flip();
+    long position = end;
+    while (record.hasRemaining()) {
+      position += channel.write(record, position);
+    }
+    index(key, new Location(end + HEADER_BYTES, length, fetchedMillis));
+    end = position;
+    if (needsRewrite() && rewriteQueued.compareAndSet(false, true)) {
+      REWRITER.execute(this::rewriteInBackground);
+    }
+  }
+
+  private boolean needsRewrite() {
+    return end >= MIN_REWRITE_BYTES && liveBytes * 2 < end;
+  }
+
+  /**
+   * Reads the data of a key.
+   *
+   * @param key the key of the data.
+   * @return the data and when it was fetched, or null if the store holds none for the key.
+   * @throws IOException if the file can not be read.
+   */
+  public synchronized Stored read(String key) throws IOException {
+    Location location = index.get(key);
+    if (location == null) {
+      return null;
+    }
+    ByteBuffer record = ByteBuffer.allocate(location.length());
+    readFully(record, location.position());
+    int dataStart = PREFIX_BYTES + record.getInt(Long.BYTES);
+    String data =
+        new String(
+            record.array(), dataStart, location.length() - dataStart, StandardCharsets.UTF_8);
+    return new Stored(data, location.fetchedMillis());
+  }
+
+  /**
+   * Lists the keys the store holds data for, the least recently fetched first.
+   *
+   * @return the keys.
+   */
+  public synchronized List<String> keysByAge() {
+    List<Map.Entry<String, Location>> entries = new ArrayList<>(index.entrySet());
+    entries.sort(Comparator.comparingLong(entry -> entry.getValue().fetchedMillis()));
+    List<String> keys = new ArrayList<>(entries.size());
+    for (Map.Entry<String, Location> entry : entries) {
+      keys.add(entry.getKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Drops the data fetched before a time, and rewrites the file without its dropped and replaced
+   * records when they take up more than half of it. The rewrite goes to a new file that then
+   * replaces the old one, so a crash or a failure during it leaves the old file as it was.
+   *
+   * @param oldestMillis the wall clock time before which data is dropped.
+   * @throws IOException if the file can not be rewritten.
+   */
+  public synchronized void compact(long oldestMillis) throws IOException {
+    if (index.entrySet().removeIf(entry -> entry.getValue().fetchedMillis() < oldestMillis)) {
+      generation++;
+    }
+    long kept = 0;
+    for (Location location : index.values()) {
+      kept += HEADER_BYTES + location.length();
+    }
+    liveBytes = kept;
+    if (liveBytes * 2 < end) {
+      rewrite();
+    }
+  }
+
+  // copies the latest records to a new file that then replaces the old one, under the lock
+  private void rewrite() throws IOException {
+    FileChannel target = openTarget(compacted);
+    try {
+      Map<String, Location> moved = new HashMap<>();
+      long position = copy(channel, index, target, 0, moved);
+      replaceWith(compacted, target, moved, position);
+    } catch (IOException | RuntimeException e) {
+      discard(compacted, target, e);
+      throw e;
+    }
+  }
+
+  // copies the records indexed when it starts without the lock, then those appended meanwhile
+  // with it; the log is only appended to, so a record indexed at the start is still in place
+  // unless the generation changed
+  private void rewriteInBackground() {
+    try {
+      FileChannel source;
+      Map<String, Location> copied;
+      long startGeneration;
+      synchronized (this) {
+        if (!channel.isOpen() || !needsRewrite()) {
+          return;
+        }
+        source = channel;
+        copied = new HashMap<>(index);
+        startGeneration = generation;
+      }
+      FileChannel target = openTarget(rewritten);
+      try {
+        Map<String, Location> moved = new HashMap<>();
+        long position = copy(source, copied, target, 0, moved);
+        synchronized (this) {
+          if (channel != source || !channel.isOpen() || generation != startGeneration) {
+            discard(rewritten, target, null);
+            return;
+          }
+          Map<String, Location> appended = new HashMap<>();
+          for (Map.Entry<String, Location> entry : index.entrySet()) {
+            if (entry.getValue() != copied.get(entry.getKey())) {
+              moved.remove(entry.getKey());
+              appended.put(entry.getKey(), entry.getValue());
+            }
+          }
+          position = copy(channel, appended, target, position, moved);
+          replaceWith(rewritten, target, moved, position);
+        }
+      } catch (IOException | RuntimeException e) {
+        discard(rewritten, target, e);
+        throw e;
+      }
+    } catch (IOException | RuntimeException e) {
+      rewriteFailures.increment();
+    } finally {
+      rewriteQueued.set(false);
+    }
+  }
+
+  private static FileChannel openTarget(Path target) throws IOException {
+    return FileChannel.open(
+        target,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  // copies records from source to target at position, adding where they land to moved
+  private static long copy(
+      FileChannel source,
+      Map<String, Location> records,
+      FileChannel target,
+      long position,
+      Map<String, Location> moved)
+      throws IOException {
+    for (Map.Entry<String, Location> entry : records.entrySet()) {
+      Location location = entry.getValue();
+      long recordBytes = HEADER_BYTES + location.length();
+      long from = location.position() - HEADER_BYTES;
+      for (long copied = 0; copied < recordBytes; ) {
+        copied += source.transferTo(from + copied, recordBytes - copied, target);
+      }
+      moved.put(
+          entry.getKey(),
+          new Location(position + HEADER_BYTES, location.length(), location.fetchedMillis()));
+      position += recordBytes;
+    }
+    return position;
+  }
+
+  // moves the rewritten file over the old one; the old channel stays open until the move is
+  // done, so a failed move leaves the store as it was
+  private void replaceWith(
+      Path source, FileChannel target, Map<String, Location> moved, long position)
+      throws IOException {
+    target.force(true);
+    Files.move(
+        source, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    FileChannel replaced = channel;
+    channel = target;
+    index.clear();
+    index.putAll(moved);
+    end = position;
+    liveBytes = position;
+    try {
+      replaced.close();
+    } catch (IOException e) {
+      // the old file is already replaced, so only its handle is lost
+    }
+  }
+
+  // closes and deletes a rewritten file that will not replace the old one
+  private static void discard(Path path, FileChannel target, Exception failure) {
+    try {
+      target.close();
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      if (failure != null) {
+        failure.addSuppressed(e);
+      }
+    }
+  }
+
+  /**
+   * Removes all data from the store.
+   *
+   * @throws IOException if the file can not be truncated.
+   */
+  public synchronized void clear() throws IOException {
+    channel.truncate(0);
+    generation++;
+    index.clear();
+    end = 0;
+    liveBytes = 0;
+  }
+
+  /**
+   * Returns the number of keys the store holds data for.
+   *
+   * @return the number of keys.
+   */
+  public synchronized int size() {
+    return index.size();
+  }
+
+  /**
+   * Returns the size of the file, replaced records included.
+   *
+   * @return the size in bytes.
+   */
+  public synchronized long fileBytes() {
+    return end;
+  }
+
+  /**
+   * Returns the number of background rewrites that failed, leaving the file as it was.
+   *
+   * @return the number of failed rewrites.
+   */
+  public long rewriteFailures() {
+    return rewriteFailures.sum();
+  }
+
+  /** Forces the records to the disk and closes the file. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel.isOpen()) {
+      channel.force(false);
+      channel.close();
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new IOException("Unexpected end of " + file);
+      }
+    }
+    buffer.flip();
+  }
+
+  private static int checksum(byte[] bytes) {
+    return checksum(bytes, 0, bytes.length);
+  }
+
+  private static int checksum(byte[] bytes, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,242 @@
+package edu.brown.cs.student.main.server.Caching;
+
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandRecord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fills a BroadbandCache with a list of counties in the background, such as the counties that
+ * were requested most before the server last stopped. Counties that are already cached, for
+ * example from an attached disk store, count as warmed at once; the others are fetched with at
+ * most maxConcurrent fetches running at a time, so the warm-up does not become the burst of
+ * upstream requests it is meant to avoid.
+ *
+ * <p>The warm-up is a chain of asynchronous fetches rather than a pool of threads: each
+ * completed fetch starts the next, and no thread waits on the API.
+ *
+ * <p>A county the API answers for without its data, such as one it no longer knows, is missing
+ * for good and left out of the coverage. A county whose fetch failed on the way, because the API
+ * could not be reached or was throttling, still counts against the coverage; such counties are
+ * fetched again in another round after a delay that doubles each round, up to maxAttempts
+ * rounds, so a warm-up that started while the API was down can still become ready.
+ */
+public final class BroadbandWarmup {
+  /** The most times a county is fetched, until the constructor is given another number. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 4;
+
+  /** Milliseconds before the first retry round, until the constructor is given another delay. */
+  public static final long DEFAULT_RETRY_DELAY_MILLIS = 5_000;
+
+  private final BroadbandCache cache;
+  private final BroadbandCache.AsyncFetcher fetcher;
+  private final List<HotKeys.Key> keys;
+  private final int maxConcurrent;
+  private final int maxAttempts;
+  private final long retryDelayMillis;
+  private final AtomicInteger next = new AtomicInteger();
+  private final LongAdder warmed = new LongAdder();
+  private final LongAdder missing = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final CompletableFuture<Void> done = new CompletableFuture<>();
+  private final AtomicInteger running = new AtomicInteger();
+  // the counties of this round whose fetch failed on the way, to fetch again next round
+  private final Queue<HotKeys.Key> retries = new ConcurrentLinkedQueue<>();
+  private volatile List<HotKeys.Key> round = List.of();
+  private volatile int retrying;
+  // only used between rounds, when no chain is running
+  private int attempt = 1;
+
+  /**
+   * Constructs a warm-up of the given counties that retries DEFAULT_MAX_ATTEMPTS times. It does
+   * nothing until it is started.
+   *
+   * @param cache the cache to fill.
+   * @param fetcher fetches the data of a county that is not cached.
+   * @param keys the counties to warm, in the order they are fetched.
+   * @param maxConcurrent the most fetches running at a time.
+   */
+  public BroadbandWarmup(
+      BroadbandCache cache,
+      BroadbandCache.AsyncFetcher fetcher,
+      List<HotKeys.Key> keys,
+      int maxConcurrent) {
+    this(cache, fetcher, keys, maxConcurrent, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY_MILLIS);
+  }
+
+  /**
+   * Constructs a warm-up of the given counties. It does nothing until it is started.
+   *
+   * @param cache the cache to fill.
+   * @param fetcher fetches the data of a county that is not cached.
+   * @param keys the counties to warm, in the order they are fetched.
+   * @param maxConcurrent the most fetches running at a time.
+   * @param maxAttempts the most times a county whose fetch failed on the way is fetched.
+   * @param retryDelayMillis how long before the first retry round; it doubles each round.
+   */
+  public BroadbandWarmup(
+      BroadbandCache cache,
+      BroadbandCache.AsyncFetcher fetcher,
+      List<HotKeys.Key> keys,
+      int maxConcurrent,
+      int maxAttempts,
+      long retryDelayMillis) {
+    if (maxConcurrent < 1 || maxAttempts < 1) {
+      throw new IllegalArgumentException(
+          "A warm-up needs at least one concurrent fetch and one attempt.");
+    }
+    if (retryDelayMillis < 0) {
+      throw new IllegalArgumentException("The retry delay cannot be negative.");
+    }
+    this.cache = cache;
+    this.fetcher = fetcher;
+    this.keys = List.copyOf(keys);
+    this.maxConcurrent = maxConcurrent;
+    this.maxAttempts = maxAttempts;
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  /**
+   * Starts fetching the counties in the background.
+   *
+   * @return completes once every county is warmed, missing, or has failed its last attempt; it
+   *     never completes with an exception.
+   */
+  public CompletableFuture<Void> start() {
+    startRound(keys);
+    return done;
+  }
+
+  private void startRound(List<HotKeys.Key> roundKeys) {
+    int chains = Math.min(maxConcurrent, roundKeys.size());
+    if (chains == 0) {
+      finishRound();
+      return;
+    }
+    round = roundKeys;
+    next.set(0);
+    running.set(chains);
+    for (int i = 0; i < chains; i++) {
+      warmNext();
+    }
+  }
+
+  // warms keys one after another until none are left, then ends this chain; keys that are
+  // already cached are counted in the loop instead of growing the stack
+  private void warmNext() {
+    List<HotKeys.Key> current = round;
+    while (true) {
+      int index = next.getAndIncrement();
+      if (index >= current.size()) {
+        if (running.decrementAndGet() == 0) {
+          finishRound();
+        }
+        return;
+      }
+      HotKeys.Key key = current.get(index);
+      CompletableFuture<?> fetch = warm(key);
+      if (fetch.isDone()) {
+        count(key, fetch);
+        continue;
+      }
+      fetch.whenComplete(
+          (record, error) -> {
+            count(key, fetch);
+            warmNext();
+          });
+      return;
+    }
+  }
+
+  // starts another round for the counties that failed on the way, or ends the warm-up
+  private void finishRound() {
+    List<HotKeys.Key> again = new ArrayList<>(retries);
+    retries.clear();
+    if (again.isEmpty() || attempt >= maxAttempts) {
+      failed.add(again.size());
+      retrying = 0;
+      done.complete(null);
+      return;
+    }
+    long delay = retryDelayMillis << (attempt - 1);
+    attempt++;
+    retrying = again.size();
+    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+        .execute(() -> startRound(again));
+  }
+
+  private CompletableFuture<?> warm(HotKeys.Key key) {
+    try {
+      return cache.warm(key.stateCode(), key.county(), fetcher);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private void count(HotKeys.Key key, CompletableFuture<?> fetch) {
+    Throwable error = fetch.handle((record, e) -> e).join();
+    if (error == null) {
+      warmed.increment();
+      return;
+    }
+    Throwable cause =
+        error instanceof CompletionException && error.getCause() != null
+            ? error.getCause()
+            : error;
+    // the API answered, or the key itself is bad, so fetching again would get the same
+    if (cause instanceof BroadbandRecord.UnexpectedResponseException
+        || !(cause instanceof IOException)) {
+      missing.increment();
+    } else {
+      retries.add(key);
+    }
+  }
+
+  /**
+   * Returns the share of the counties that are warmed so far, leaving out the counties that are
+   * missing for good.
+   *
+   * @return a number from 0 to 1, which is 1 when no county is left to warm.
+   */
+  public double coverage() {
+    long wanted = keys.size() - missing.sum();
+    return wanted <= 0 ? 1 : (double) warmed.sum() / wanted;
+  }
+
+  /**
+   * Checks whether enough of the counties are warmed to serve traffic.
+   *
+   * @param threshold the least coverage that counts as ready, from 0 to 1.
+   * @return true once the coverage reaches the threshold.
+   */
+  public boolean isReady(double threshold) {
+    return coverage() >= threshold;
+  }
+
+  /**
+   * Returns the progress of the warm-up, for the readiness endpoint.
+   *
+   * @return the counties to warm, those warmed, those missing for good, those waiting for a
+   *     retry, those that failed their last attempt, the coverage, and whether it is done.
+   */
+  public Map<String, Object> progress() {
+    Map<String, Object> progress = new LinkedHashMap<>();
+    progress.put("keys", keys.size());
+    progress.put("warmed", warmed.sum());
+    progress.put("missing", missing.sum());
+    progress.put("retrying", retrying);
+    progress.put("failed", failed.sum());
+    progress.put("coverage", coverage());
+    progress.put("done", done.isDone());
+    return progress;
+  }
+}
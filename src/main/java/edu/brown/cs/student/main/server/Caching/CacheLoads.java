@@ -0,0 +1,64 @@
+package edu.brown.cs.student.main.server.Caching;
+
+import com.google.common.cache.Cache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Loads missing cache entries from the Census API. Guava wraps whatever a loader throws, so this
+ * unwraps it again and callers see the same exceptions as when they call the API themselves.
+ */
+public final class CacheLoads {
+  private CacheLoads() {}
+
+  /** Fetches a value from the Census API when it is not cached. */
+  @FunctionalInterface
+  public interface Loader<V> {
+    /**
+     * Fetches the value.
+     *
+     * @return the value, never null.
+     * @throws URISyntaxException if the URI for the API request is incorrect.
+     * @throws IOException if the request fails.
+     * @throws InterruptedException if the request is interrupted.
+     */
+    V load() throws URISyntaxException, IOException, InterruptedException;
+  }
+
+  /**
+   * Returns the cached value of a key, loading and storing it if it is missing. Concurrent misses
+   * on the same key share one load; if it fails, all of them get its exception and nothing is
+   * stored, so the next call loads again.
+   *
+   * @param cache the cache to look in.
+   * @param key the key of the value.
+   * @param loader fetches the value on a miss.
+   * @return the cached or loaded value.
+   * @throws URISyntaxException if the load fails to build its request.
+   * @throws IOException if the load fails.
+   * @throws InterruptedException if the load is interrupted.
+   */
+  public static <K, V> V getOrLoad(Cache<K, V> cache, K key, Loader<? extends V> loader)
+      throws URISyntaxException, IOException, InterruptedException {
+    try {
+      return cache.get(key, loader::load);
+    } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      } else if (cause instanceof URISyntaxException) {
+        throw (URISyntaxException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package edu.brown.cs.student.main.server.Caching;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often the counties of a BroadbandCache are requested, so the most requested can be
+ * saved when the server stops and fetched again when it starts. The saved file is also the
+ * format of a hand-written warm-up list: one "stateCode,countyCode" line per county, most
+ * requested first, where blank lines and lines starting with # are skipped.
+ *
+ * <p>Counting is a lookup and an increment of a striped adder. Only the first MAX_KEYS distinct
+ * counties are counted, which bounds the memory of a server that is sent many unknown codes.
+ */
+public final class HotKeys {
+  /** The most distinct counties that are counted. */
+  public static final int MAX_KEYS = 10_000;
+
+  private final Map<Key, LongAdder> counts = new ConcurrentHashMap<>();
+
+  /**
+   * A county of the cache.
+   *
+   * @param stateCode the state code.
+   * @param county the county code.
+   */
+  public record Key(String stateCode, String county) {}
+
+  /**
+   * Counts one request for a county.
+   *
+   * @param stateCode the state code.
+   * @param county the county code.
+   */
+  public void record(String stateCode, String county) {
+    Key key = new Key(stateCode, county);
+    LongAdder count = counts.get(key);
+    if (count == null) {
+      if (counts.size() >= MAX_KEYS) {
+        return;
+      }
+      count = counts.computeIfAbsent(key, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  /**
+   * Returns the most requested counties.
+   *
+   * @param limit the most counties to return.
+   * @return the counties, most requested first.
+   */
+  public List<Key> top(int limit) {
+    List<Map.Entry<Key, Long>> snapshot = new ArrayList<>(counts.size());
+    counts.forEach((key, count) -> snapshot.add(Map.entry(key, count.sum())));
+    snapshot.sort(Map.Entry.<Key, Long>comparingByValue(Comparator.reverseOrder()));
+    List<Key> keys = new ArrayList<>(Math.min(limit, snapshot.size()));
+    for (Map.Entry<Key, Long> entry : snapshot.subList(0, Math.min(limit, snapshot.size()))) {
+      keys.add(entry.getKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Writes the most requested counties to a file, replacing it only once it is fully written.
+   *
+   * @param file the file to write, whose directory is created if it does not exist.
+   * @param limit the most counties to write.
+   * @return the number of counties written.
+   * @throws IOException if the file cannot be written.
+   */
+  public int save(Path file, int limit) throws IOException {
+    List<Key> keys = top(limit);
+    List<String> lines = new ArrayList<>(keys.size());
+    for (Key key : keys) {
+      lines.add(key.stateCode() + "," + key.county());
+    }
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Path written = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(written, lines, StandardCharsets.UTF_8);
+    Files.move(
+        written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return keys.size();
+  }
+
+  /**
+   * Reads a list of counties written by save or by hand.
+   *
+   * @param file the file to read.
+   * @return the counties, in the order of the file.
+   * @throws IOException if the file cannot be read or a line is not "stateCode,countyCode".
+   */
+  public static List<Key> read(Path file) throws IOException {
+    List<Key> keys = new ArrayList<>();
+    List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).strip();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] codes = line.split(",");
+      if (codes.length != 2 || codes[0].isBlank() || codes[1].isBlank()) {
+        throw new IOException(file + " line " + (i + 1) + ": expected stateCode,countyCode");
+      }
+      keys.add(new Key(codes[0].strip(), codes[1].strip()));
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,138 @@
+package edu.brown.cs.student.main.server.Endpoints;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandRecord;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import okio.Okio;
+
+/**
+ * The serialization shared by every handler. Building a Moshi instance and looking up an adapter
+ * reflects over the serialized types, so the handlers share one Moshi and adapters that are built
+ * once, instead of building them again on every request. Rows of CSV cells are written by a
+ * hand-written adapter that streams them cell by cell, and broadband records by theirs.
+ */
+public final class JsonResponses {
+  /** The type of the rows of a CSV table. */
+  public static final Type ROWS_TYPE =
+      Types.newParameterizedType(
+          List.class, Types.newParameterizedType(List.class, String.class));
+
+  private static final JsonAdapter<List<List<String>>> ROWS_ADAPTER = new RowsAdapter();
+  private static final Moshi MOSHI =
+      new Moshi.Builder()
+          .add(ROWS_TYPE, ROWS_ADAPTER)
+          .add(BroadbandRecord.class, BroadbandRecord.JSON_ADAPTER)
+          .build();
+  private static final JsonAdapter<Map<String, Object>> MAP_ADAPTER =
+      MOSHI.adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+
+  private JsonResponses() {}
+
+  /**
+   * Returns the Moshi instance shared by the handlers, for building adapters of other response
+   * types once, when their class is initialized.
+   *
+   * @return the shared Moshi.
+   */
+  public static Moshi moshi() {
+    return MOSHI;
+  }
+
+  /**
+   * Serializes a response built as a map from field names to values.
+   *
+   * @param responseMap the fields of the response.
+   * @return the JSON of the response.
+   */
+  public static String toJson(Map<String, Object> responseMap) {
+    return MAP_ADAPTER.toJson(responseMap);
+  }
+
+  /**
+   * Returns the adapter that reads and writes rows of CSV cells as JSON arrays of strings.
+   *
+   * @return the rows adapter.
+   */
+  public static JsonAdapter<List<List<String>>> rows() {
+    return ROWS_ADAPTER;
+  }
+
+  /**
+   * Opens a JSON writer over a response body. The writer buffers and flushes as it fills, so the
+   * caller must flush it once the response is complete.
+   *
+   * @param outputStream the response body.
+   * @return the writer.
+   */
+  static JsonWriter open(OutputStream outputStream) {
+    return JsonWriter.of(Okio.buffer(Okio.sink(outputStream)));
+  }
+
+  /**
+   * Writes one row as a JSON array of strings.
+   *
+   * @param writer the writer of the response.
+   * @param row the cells of the row.
+   * @throws IOException if writing to the client fails.
+   */
+  static void writeRow(JsonWriter writer, List<String> row) throws IOException {
+    writer.beginArray();
+    for (String cell : row) {
+      writer.value(cell);
+    }
+    writer.endArray();
+  }
+
+  /**
+   * Writes rows straight to the writer, without the reflective lookups of Moshi's collection
+   * adapters, and reads them back into lists.
+   */
+  private static final class RowsAdapter extends JsonAdapter<List<List<String>>> {
+    @Override
+    public List<List<String>> fromJson(JsonReader reader) throws IOException {
+      if (reader.peek() == JsonReader.Token.NULL) {
+        return reader.nextNull();
+      }
+      List<List<String>> rows = new ArrayList<>();
+      reader.beginArray();
+      while (reader.hasNext()) {
+        List<String> row = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          row.add(reader.peek() == JsonReader.Token.NULL ? reader.nextNull() : reader.nextString());
+        }
+        reader.endArray();
+        rows.add(row);
+      }
+      reader.endArray();
+      return rows;
+    }
+
+    @Override
+    public void toJson(JsonWriter writer, List<List<String>> rows) throws IOException {
+      if (rows == null) {
+        writer.nullValue();
+        return;
+      }
+      writer.beginArray();
+      for (List<String> row : rows) {
+        writeRow(writer, row);
+      }
+      writer.endArray();
+    }
+
+    @Override
+    public String toString() {
+      return "JsonAdapter(List<List<String>>)";
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package edu.brown.cs.student.main.server.Endpoints;
 
+import edu.brown.cs.student.main.parser.FactoryFailureException;
 import edu.brown.cs.student.main.server.CSVHolder;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
@@ -12,8 +14,11 @@ import spark.Route;
 
 /**
  * Handles requests to load a CSV file into the application. Validates the provided file path
- * to ensure it points to a valid CSV file within an allowed directory. Updates the application's
- * state to reference the newly loaded CSV file for future operations.
+ * to ensure it points to a valid CSV file within an allowed directory, then parses it once into
+ * the application's state so that future operations are served from memory. With 'async=true' the
+ * file is parsed in the background and the previously loaded file keeps being served until then.
+ * The optional 'dataset' parameter names the dataset to load the file into, so several files can
+ * stay loaded at once; without it the file replaces the default dataset.
  */
 public class LoadCSVHandler implements Route {
 
@@ -21,17 +26,22 @@ public class LoadCSVHandler implements Route {
    * Processes the incoming request to load a CSV file. Validates the file path against
    * specific criteria, including the existence of the file, its location within our allowed
    * directory, and the nature (not being a directory itself). Assuming there is successful validation,
-   * handle() updates the central CSVHolder instance to reference the loaded file.
+   * handle() has the central CSVHolder instance parse and hold the loaded file.
    *
-   * @param request the Spark request object, containing the 'filepath' query parameter.
+   * @param request the Spark request object, containing the 'filepath' query parameter and the
+   *     optional 'dataset', 'index' and 'async' parameters.
    * @param response the Spark response object, used to set response metadata such as status codes.
    * @return A map object serialized into JSON, indicating the outcome of the operation.
    * @throws Exception for any underlying exceptions that occur during file validation or loading.
    */
   @Override
   public Object handle(Request request, Response response) throws Exception {
-    System.out.println(request.toString());
     String filePath = request.queryParams("filepath");
+    String dataset = datasetName(request);
+    // optional; "true" also builds column indexes for repeated searches on this file
+    boolean buildIndex = "true".equals(request.queryParams("index"));
+    // optional; "true" answers right away and swaps the file in once it is parsed
+    boolean inBackground = "true".equals(request.queryParams("async"));
     Map<String, Object> responseMap = new HashMap<>();
 
     if (filePath == null || filePath.isEmpty()) {
@@ -44,6 +54,7 @@ public class LoadCSVHandler implements Route {
     String normalizedFilePathStr = normalizedFilePath.toString();
     String allowedDirectory = "edu/brown/cs/student/main/data";
     responseMap.put("filepath", filePath);
+    responseMap.put("dataset", dataset);
     if (!normalizedFilePathStr.contains(allowedDirectory)) {
       response.status(400);
       responseMap.put("result", "error");
@@ -59,11 +70,63 @@ public class LoadCSVHandler implements Route {
       return responseMap;
     }
 
-    CSVHolder.getInstance().loadCSV(filePath);
+    if (inBackground) {
+      // a failure is counted in the metrics and reported to the dataset's next request
+      CSVHolder.getInstance().loadCSVInBackground(dataset, filePath, buildIndex);
+      response.status(202);
+      responseMap.put("result", "success");
+      responseMap.put("message", "CSV file is loading in the background");
+      return responseMap;
+    }
+
+    try {
+      CSVHolder.getInstance().loadCSV(dataset, filePath, buildIndex);
+    } catch (IOException | FactoryFailureException e) {
+      response.status(500);
+      responseMap.put("result", "error");
+      responseMap.put("message", "CSV file could not be parsed: " + e.getMessage());
+      return responseMap;
+    } catch (IllegalStateException e) {
+      // the table does not fit in the dataset memory budget
+      response.status(500);
+      responseMap.put("result", "error");
+      responseMap.put("message", "CSV file could not be loaded: " + e.getMessage());
+      return responseMap;
+    }
     response.status(200);
     responseMap.put("result", "success");
     responseMap.put("message", "CSV file loaded successfully");
 
     return responseMap;
   }
+
+  /**
+   * Reads the optional 'dataset' parameter shared by the CSV endpoints.
+   *
+   * @param request the Spark request object.
+   * @return the named dataset, or the default dataset if none is named.
+   */
+  static String datasetName(Request request) {
+    String dataset = request.queryParams("dataset");
+    return dataset == null || dataset.isEmpty() ? CSVHolder.DEFAULT_DATASET : dataset;
+  }
+
+  /**
+   * Parses an optional paging parameter shared by the CSV endpoints, such as 'limit'.
+   *
+   * @param value the raw parameter value, possibly null.
+   * @param defaultValue the value to use when the parameter is missing.
+   * @return the parsed value.
+   * @throws NumberFormatException if the value is not a non-negative integer.
+   */
+  static int parseNonNegative(String value, int defaultValue) {
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    int parsed = Integer.parseInt(value);
+    if (parsed < 0) {
+      throw new NumberFormatException("negative value " + value);
+    }
+    return parsed;
+  }
 }
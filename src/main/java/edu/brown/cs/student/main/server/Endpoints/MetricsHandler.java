@@ -0,0 +1,42 @@
+package edu.brown.cs.student.main.server.Endpoints;
+
+import edu.brown.cs.student.main.server.Metrics.ServerMetrics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Handles requests for the server's metrics: the request counts, error counts and latency
+ * percentiles of each route, the parse time and row count of the CSV loads, and the statistics of
+ * the caches. Responses are formatted in JSON.
+ */
+public class MetricsHandler implements Route {
+  private final ServerMetrics metrics;
+
+  /**
+   * Constructs a handler reporting the given metrics.
+   *
+   * @param metrics the metrics to report.
+   */
+  public MetricsHandler(ServerMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Reports the metrics recorded so far.
+   *
+   * @param request the Spark request object.
+   * @param response the Spark response object, used to set the content type.
+   * @return A JSON string of the metrics.
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    response.type("application/json");
+    Map<String, Object> responseMap = new LinkedHashMap<>();
+    responseMap.put("result", "success");
+    responseMap.putAll(metrics.snapshot());
+    return JsonResponses.toJson(responseMap);
+  }
+}
@@ -0,0 +1,50 @@
+package edu.brown.cs.student.main.server.Endpoints;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandWarmup;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Handles readiness checks. The server is ready once its broadband warm-up has warmed at least
+ * the given share of the counties the API has data for; until then it answers with a 503, so a
+ * load balancer keeps traffic away from a cold cache. Either way the warm-up's progress is
+ * reported in JSON.
+ */
+public class ReadinessHandler implements Route {
+  private final BroadbandWarmup warmup;
+  private final double threshold;
+
+  /**
+   * Constructs a handler reporting the given warm-up.
+   *
+   * @param warmup the warm-up of the broadband cache.
+   * @param threshold the least coverage of the warm-up that counts as ready, from 0 to 1.
+   */
+  public ReadinessHandler(BroadbandWarmup warmup, double threshold) {
+    this.warmup = warmup;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Reports whether the server is ready.
+   *
+   * @param request the Spark request object.
+   * @param response the Spark response object, used to set the status and content type.
+   * @return A JSON string of the readiness and the warm-up's progress.
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    boolean ready = warmup.isReady(threshold);
+    response.type("application/json");
+    response.status(ready ? 200 : 503);
+    Map<String, Object> responseMap = new LinkedHashMap<>();
+    responseMap.put("result", ready ? "success" : "error");
+    responseMap.put("ready", ready);
+    responseMap.put("threshold", threshold);
+    responseMap.putAll(warmup.progress());
+    return JsonResponses.toJson(responseMap);
+  }
+}
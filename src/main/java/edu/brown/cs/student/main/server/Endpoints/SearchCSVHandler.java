@@ -1,11 +1,11 @@
 package edu.brown.cs.student.main.server.Endpoints;
 
-import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.ParallelScan;
 import edu.brown.cs.student.main.parser.Search;
 import edu.brown.cs.student.main.server.CSVHolder;
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,9 +16,30 @@ import spark.Route;
 /**
  * Handles search requests on the loaded CSV file. Allows users to search for data
  * within the file based on a specified query, column, and whether the file contains headers.
+ * Searches run against the table parsed when the file was loaded, so the file is not re-read, and
+ * use the table's column indexes when it was loaded with them. Matching rows are streamed to the
+ * response as they are found; the optional 'limit' and 'cursor' parameters page through the
+ * results, and the search stops as soon as a page is full. Scans of large tables are split across
+ * a shared ForkJoinPool (see ParallelScan). The optional 'dataset' parameter picks which loaded
+ * dataset to search.
  * Responses are formatted in JSON and include the search results or an error message if applicable.
  */
 public class SearchCSVHandler implements Route {
+  private final ParallelScan parallelScan;
+
+  /** Constructs a handler whose scans run on the common ForkJoinPool with the default threshold. */
+  public SearchCSVHandler() {
+    this(ParallelScan.onCommonPool(ParallelScan.DEFAULT_THRESHOLD));
+  }
+
+  /**
+   * Constructs a handler with the given parallel scan settings.
+   *
+   * @param parallelScan how scans are split across threads, or null to always scan sequentially.
+   */
+  public SearchCSVHandler(ParallelScan parallelScan) {
+    this.parallelScan = parallelScan;
+  }
 
   /**
    * Converts a string input to a boolean value. Specifically used to parse the 'headers' parameter.
@@ -32,7 +53,8 @@ public class SearchCSVHandler implements Route {
 
   /**
    * Processes the incoming search request and extracts parameters for the search query,
-   * the column to search in, and whether the CSV has headers. Performs the search
+   * the column to search in, whether the CSV has headers, and whether cells must match exactly
+   * ('match=exact') or only contain the query. Performs the search
    * and constructs a response indicating success or failure with the corresponding data or
    * a relevant error message.
    *
@@ -43,9 +65,6 @@ public class SearchCSVHandler implements Route {
   @Override
   public Object handle(Request request, Response response) {
     response.type("application/json");
-    Moshi moshi = new Moshi.Builder().build();
-    Type mapStringObject = Types.newParameterizedType(Map.class, String.class, Object.class);
-    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapStringObject);
     Map<String, Object> responseMap = new HashMap<>();
     String searchQuery = request.queryParams("query");
     String columnID = request.queryParams("column");
@@ -53,23 +72,41 @@ public class SearchCSVHandler implements Route {
         request.queryParams(
             "headers"); // defaults to false if the input is null or not a boolean value
     Boolean headers = this.convertToBoolean(hasHeaders);
+    // "exact" matches whole cells; anything else keeps the default substring match
+    boolean exactMatch = "exact".equals(request.queryParams("match"));
     responseMap.put("Parameters", "Query-" + searchQuery + ", Column Name-" + columnID + ", Headers-" + headers);
 
     if (searchQuery == null || columnID == null) {
       responseMap.put("result", "error_bad_request");
       responseMap.put("message", "Query and column parameters are required.");
       response.status(400);
-      return responseMap;
+      return JsonResponses.toJson(responseMap);
+    }
+
+    int cursor;
+    int limit;
+    try {
+      cursor = LoadCSVHandler.parseNonNegative(request.queryParams("cursor"), 0);
+      limit = LoadCSVHandler.parseNonNegative(request.queryParams("limit"), Integer.MAX_VALUE);
+    } catch (NumberFormatException e) {
+      responseMap.put("result", "error_bad_request");
+      responseMap.put("message", "cursor and limit must be non-negative integers");
+      response.status(400);
+      return JsonResponses.toJson(responseMap);
     }
 
+    StreamedResults results = null;
     try {
-      String csvFilePath = CSVHolder.getInstance().getCSVFilePath();
-      if (csvFilePath != null && !csvFilePath.isEmpty()) {
-        Search search = new Search(csvFilePath, searchQuery, columnID, headers);
-        List<List<String>> searchResults = search.searchFor();
-        responseMap.put("result", "success");
-        responseMap.put("data", searchResults);
-        response.status(200);
+      CsvTable csvTable = CSVHolder.getInstance().getCSVTable(LoadCSVHandler.datasetName(request));
+      if (csvTable != null) {
+        Search search =
+            new Search(csvTable, searchQuery, columnID, headers, exactMatch)
+                .withParallelScan(parallelScan);
+        results =
+            new StreamedResults(response, (String) responseMap.get("Parameters"), cursor, limit);
+        search.streamMatches(cursor, csvTable.getIndex(), results);
+        results.finish();
+        return "";
       } else {
         responseMap.put("result", "error_datasource");
         responseMap.put("message", "No CSV file is currently loaded!");
@@ -80,10 +117,81 @@ public class SearchCSVHandler implements Route {
       responseMap.put("message", e.getMessage());
       response.status(400);
     } catch (Exception e) {
+      if (results != null && results.isStarted()) {
+        // the response is already partly sent (e.g. the client went away mid-stream)
+        return "";
+      }
       responseMap.put("result", "error_bad_request");
       responseMap.put("message", e.getMessage());
       response.status(500);
     }
-    return adapter.toJson(responseMap).replace("\\\"","");
+    return JsonResponses.toJson(responseMap);
+  }
+
+  /**
+   * Writes matching rows to the response as the search finds them. The response is only started
+   * once the first row arrives (or the search ends), so errors found before any row still get a
+   * regular error response. Once the limit is reached, the next match is not written; its row id
+   * becomes the cursor of the next page and the search is stopped.
+   */
+  private static final class StreamedResults implements Search.MatchConsumer {
+    private final Response response;
+    private final String parameters;
+    private final int cursor;
+    private final int limit;
+    private JsonWriter writer;
+    private int written = 0;
+    private int nextCursor = -1;
+
+    StreamedResults(Response response, String parameters, int cursor, int limit) {
+      this.response = response;
+      this.parameters = parameters;
+      this.cursor = cursor;
+      this.limit = limit;
+    }
+
+    @Override
+    public boolean accept(int rowId, List<String> row) throws IOException {
+      if (written == limit) {
+        nextCursor = rowId;
+        return false;
+      }
+      start();
+      JsonResponses.writeRow(writer, row);
+      written++;
+      return true;
+    }
+
+    /** Whether any of the response has been written yet. */
+    boolean isStarted() {
+      return writer != null;
+    }
+
+    private void start() throws IOException {
+      if (writer != null) {
+        return;
+      }
+      response.status(200);
+      writer = JsonResponses.open(response.raw().getOutputStream());
+      writer.beginObject();
+      writer.name("result").value("success");
+      writer.name("Parameters").value(parameters);
+      writer.name("cursor").value(cursor);
+      if (limit != Integer.MAX_VALUE) {
+        writer.name("limit").value(limit);
+      }
+      writer.name("data").beginArray();
+    }
+
+    /** Closes the response once the search has ended or been stopped. */
+    void finish() throws IOException {
+      start();
+      writer.endArray();
+      if (nextCursor >= 0) {
+        writer.name("next_cursor").value(nextCursor);
+      }
+      writer.endObject();
+      writer.flush();
+    }
   }
 }
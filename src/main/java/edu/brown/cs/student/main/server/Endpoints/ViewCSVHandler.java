@@ -1,12 +1,11 @@
 package edu.brown.cs.student.main.server.Endpoints;
 
 import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.main.parser.CsvTable;
 import edu.brown.cs.student.main.server.CSVHolder;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,19 +15,24 @@ import spark.Route;
 
 /**
  * Handles requests to view the content of the currently loaded CSV file.
- * This class reads the CSV file specified by the CSVHolder's file path,
- * converts its contents into a JSON format, and returns it as a response.
+ * This class takes the table the CSVHolder parsed when the file was loaded
+ * and streams a page of its rows as JSON straight to the response, so no
+ * copy of the file's content is built up in memory, whatever its size.
+ * Pages are chosen with the optional 'offset' and 'limit' parameters; when
+ * more rows follow a page, the response carries the offset of the next one.
+ * The optional 'dataset' parameter picks which loaded dataset to view.
  */
 public class ViewCSVHandler implements Route {
 
   /**
    * Processes the request to view the currently loaded CSV file. Validates
-   * that a CSV file is loaded and then reads its contents, returning them
-   * as a structured JSON response.
+   * that a CSV file is loaded and the paging parameters are valid, and then
+   * writes the requested rows as a structured JSON response.
    *
-   * @param request the Spark request object.
+   * @param request the Spark request object, with the optional 'dataset', 'offset' and 'limit'
+   *     parameters.
    * @param response the Spark response object, used to set the response metadata.
-   * @return A JSON string representing the CSV content or an error message.
+   * @return A JSON string with an error message, or an empty string once the rows are streamed.
    */
   @Override
   public Object handle(Request request, Response response) {
@@ -37,32 +41,31 @@ public class ViewCSVHandler implements Route {
 
     try {
       CSVHolder csvHolder = CSVHolder.getInstance();
-      String csvFilePath = csvHolder.getCSVFilePath();
+      CsvTable csvTable = csvHolder.getCSVTable(LoadCSVHandler.datasetName(request));
 
-      if (csvFilePath == null || csvFilePath.isEmpty()) {
+      if (csvTable == null) {
         responseMap.put("result", "error_datasource");
         responseMap.put("message", "No CSV file is currently loaded!");
         response.status(400);
         return new ErrorResponse(responseMap).serialize();
-      } else {
-        List<String> csvLines = Files.readAllLines(Paths.get(csvFilePath));
-        List<List<String>> jsonData = new ArrayList<>();
+      }
 
-        for (String line : csvLines) {
-          List<String> row = new ArrayList<>();
-          String[] cells = line.split(",");
-          for (String cell : cells) {
-            row.add(cell.trim());
-          }
-          jsonData.add(row);
-        }
-        responseMap.put("result", "success");
-        responseMap.put("message", "CSV content loaded successfully.");
-        responseMap.put("data", jsonData);
-        response.status(200);
-        return new SuccessResponse(responseMap).serialize();
+      int offset;
+      int limit;
+      try {
+        offset = LoadCSVHandler.parseNonNegative(request.queryParams("offset"), 0);
+        limit = LoadCSVHandler.parseNonNegative(request.queryParams("limit"), csvTable.size());
+      } catch (NumberFormatException e) {
+        responseMap.put("result", "error_bad_request");
+        responseMap.put("message", "offset and limit must be non-negative integers");
+        response.status(400);
+        return new ErrorResponse(responseMap).serialize();
       }
-    } catch (IOException | IllegalStateException e) {
+
+      response.status(200);
+      writePage(csvTable.getRows(), offset, limit, response.raw().getOutputStream());
+      return "";
+    } catch (IllegalStateException | IOException e) {
       responseMap.put("result", "error_bad_request");
       responseMap.put("message", e.getMessage());
       response.status(500);
@@ -70,31 +73,46 @@ public class ViewCSVHandler implements Route {
     }
   }
 
-  /** Response object for successful CSV content loading */
-  public record SuccessResponse(String response_type, Map<String, Object> responseMap) {
-    public SuccessResponse(Map<String, Object> responseMap) {
-      this("success", responseMap);
-    }
-
-    /**
-     * method to serialize the output for the viewcsv, returning structured output
-     *
-     * @return serialized Json String
-     */
-    String serialize() {
-      try {
-        Moshi moshi = new Moshi.Builder().build();
-        JsonAdapter<SuccessResponse> adapter = moshi.adapter(SuccessResponse.class);
-        return adapter.toJson(this).replace("\\\"", "") ;
-      } catch (Exception e) {
-        e.printStackTrace();
-        throw e;
-      }
+  /**
+   * Writes one page of rows as the success response. Rows are encoded one at a time into a
+   * buffer that is flushed to the output stream as it fills, so memory use does not grow with
+   * the page size. Public so the benchmarks can measure it without a running server.
+   *
+   * @param rows all rows of the loaded table.
+   * @param offset the index of the first row of the page.
+   * @param limit the maximum number of rows in the page.
+   * @param outputStream the response body.
+   * @throws IOException if writing to the client fails.
+   */
+  public static void writePage(
+      List<List<String>> rows, int offset, int limit, OutputStream outputStream)
+      throws IOException {
+    int from = Math.min(offset, rows.size());
+    int to = (int) Math.min((long) from + limit, rows.size());
+    JsonWriter writer = JsonResponses.open(outputStream);
+    writer.beginObject();
+    writer.name("response_type").value("success");
+    writer.name("responseMap").beginObject();
+    writer.name("result").value("success");
+    writer.name("message").value("CSV content loaded successfully.");
+    writer.name("offset").value(from);
+    writer.name("limit").value(limit);
+    writer.name("total").value(rows.size());
+    if (to < rows.size()) {
+      writer.name("next_offset").value(to);
     }
+    writer.name("data");
+    JsonResponses.rows().toJson(writer, rows.subList(from, to));
+    writer.endObject();
+    writer.endObject();
+    writer.flush();
   }
 
   /** Response object for failure in CSV content loading */
   public record ErrorResponse(String response_type, Map<String, Object> responseMap) {
+    private static final JsonAdapter<ErrorResponse> ADAPTER =
+        JsonResponses.moshi().adapter(ErrorResponse.class);
+
     public ErrorResponse(Map<String, Object> responseMap) {
       this("error", responseMap);
     }
@@ -105,8 +123,7 @@ public class ViewCSVHandler implements Route {
      * @return serialized Json String
      */
     String serialize() {
-      Moshi moshi = new Moshi.Builder().build();
-      return moshi.adapter(ErrorResponse.class).toJson(this);
+      return ADAPTER.toJson(this);
     }
   }
 }
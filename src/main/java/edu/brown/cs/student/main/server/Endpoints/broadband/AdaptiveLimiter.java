@@ -0,0 +1,229 @@
+package edu.brown.cs.student.main.server.Endpoints.broadband;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many calls to the Census API run at once, and adapts the bound to how the API
+ * copes (additive increase, multiplicative decrease). A call that succeeds within the latency
+ * target raises the limit by 1/limit, so a fully used limit grows by about one per round of
+ * calls. A call that fails with an IOException, which includes being throttled, or that takes
+ * longer than the target multiplies the limit by BACKOFF_RATIO, at most once per latency target:
+ * the calls that were running together when the API slowed down all report it, and count as one
+ * sign of congestion. The limit stays between 1 and the given maximum.
+ *
+ * <p>Calls over the limit wait in a queue, in order, and start as running calls finish. A call
+ * that finds the queue full, or waits longer than the queue timeout, fails with a
+ * RejectedException instead of adding to a burst the API would throttle anyway. Waiting is
+ * asynchronous for submit, so a queued call holds no thread.
+ */
+public final class AdaptiveLimiter {
+  /** The limit is multiplied by this after a failed or slow call. */
+  public static final double BACKOFF_RATIO = 0.9;
+
+  // the time released for a permit that was granted but not used
+  private static final long UNUSED = -1;
+
+  private final int maxLimit;
+  private final long latencyTargetNanos;
+  private final int maxQueue;
+  private final long queueTimeoutMillis;
+
+  // guarded by this
+  private double limit;
+  private int inFlight;
+  private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+  private long rejections;
+  private long timeouts;
+  private long drops;
+  private long lastDropNanos;
+
+  /** Thrown when a call can not start because the API is already as busy as it is allowed. */
+  public static final class RejectedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    RejectedException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Constructs a limiter.
+   *
+   * @param initialLimit the limit before any call finishes.
+   * @param maxLimit the highest the limit grows to.
+   * @param latencyTargetMillis calls slower than this lower the limit.
+   * @param maxQueue the most calls waiting for the limit; more are rejected at once.
+   * @param queueTimeoutMillis how long a call waits for the limit before it is rejected.
+   */
+  public AdaptiveLimiter(
+      int initialLimit,
+      int maxLimit,
+      long latencyTargetMillis,
+      int maxQueue,
+      long queueTimeoutMillis) {
+    if (initialLimit < 1 || maxLimit < initialLimit) {
+      throw new IllegalArgumentException("Expected 1 <= initialLimit <= maxLimit.");
+    }
+    if (latencyTargetMillis <= 0 || maxQueue < 0 || queueTimeoutMillis <= 0) {
+      throw new IllegalArgumentException(
+          "The latency target and queue timeout must be positive, and the queue not negative.");
+    }
+    this.limit = initialLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+    this.maxQueue = maxQueue;
+    this.queueTimeoutMillis = queueTimeoutMillis;
+    this.lastDropNanos = System.nanoTime() - latencyTargetNanos - 1;
+  }
+
+  /**
+   * Starts an asynchronous call once the limit allows it.
+   *
+   * @param call starts the call.
+   * @param <T> the result of the call.
+   * @return the result of the call, or the exception it or the wait for the limit failed with.
+   */
+  public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+    return acquire()
+        .thenCompose(
+            granted -> {
+              long start = System.nanoTime();
+              CompletableFuture<T> result;
+              try {
+                result = call.get();
+              } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+              }
+              return result.whenComplete(
+                  (value, error) -> release(System.nanoTime() - start, error));
+            });
+  }
+
+  /**
+   * Runs a blocking call on the calling thread once the limit allows it.
+   *
+   * @param call the call.
+   * @param <T> the result of the call.
+   * @return the result of the call.
+   * @throws RejectedException if the queue is full or the wait for the limit times out.
+   * @throws Exception if the call fails.
+   */
+  public <T> T call(Callable<T> call) throws Exception {
+    CompletableFuture<Void> permit = acquire();
+    try {
+      permit.get();
+    } catch (InterruptedException e) {
+      // give the place in the queue back, or the permit once it is granted
+      if (!cancel(permit)) {
+        permit.thenRun(() -> release(UNUSED, null));
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    }
+    long start = System.nanoTime();
+    Throwable error = null;
+    try {
+      return call.call();
+    } catch (Exception | Error e) {
+      error = e;
+      throw e;
+    } finally {
+      release(System.nanoTime() - start, error);
+    }
+  }
+
+  private CompletableFuture<Void> acquire() {
+    CompletableFuture<Void> permit;
+    synchronized (this) {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        return CompletableFuture.completedFuture(null);
+      }
+      if (queue.size() >= maxQueue) {
+        rejections++;
+        return CompletableFuture.failedFuture(
+            new RejectedException("Too many requests are waiting for the Census API"));
+      }
+      permit = new CompletableFuture<>();
+      queue.add(permit);
+    }
+    CompletableFuture.delayedExecutor(queueTimeoutMillis, TimeUnit.MILLISECONDS)
+        .execute(
+            () -> {
+              if (cancel(permit)) {
+                synchronized (this) {
+                  timeouts++;
+                }
+                permit.completeExceptionally(
+                    new RejectedException(
+                        "Waited " + queueTimeoutMillis + " ms for the Census API"));
+              }
+            });
+    return permit;
+  }
+
+  // removes a waiting call from the queue; false if it was already granted or timed out
+  private synchronized boolean cancel(CompletableFuture<Void> permit) {
+    return queue.remove(permit);
+  }
+
+  // gives back the permit of a call that took the given time, and adapts the limit to it
+  private void release(long nanos, Throwable error) {
+    List<CompletableFuture<Void>> granted = new ArrayList<>();
+    synchronized (this) {
+      inFlight--;
+      Throwable cause = error instanceof CompletionException && error.getCause() != null
+          ? error.getCause()
+          : error;
+      if (nanos == UNUSED) {
+        // the permit was not used, so it says nothing about the API
+      } else if (cause instanceof IOException || nanos > latencyTargetNanos) {
+        long now = System.nanoTime();
+        if (now - lastDropNanos > latencyTargetNanos) {
+          lastDropNanos = now;
+          drops++;
+          limit = Math.max(1, limit * BACKOFF_RATIO);
+        }
+      } else if (cause == null) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      }
+      while (inFlight < (int) limit && !queue.isEmpty()) {
+        inFlight++;
+        granted.add(queue.poll());
+      }
+    }
+    // outside the lock, since completing a permit starts its call
+    for (CompletableFuture<Void> permit : granted) {
+      permit.complete(null);
+    }
+  }
+
+  /**
+   * Returns the limiter's state and counts, for the metrics endpoint.
+   *
+   * @return the limit, the calls running and queued, and the calls rejected for a full queue,
+   *     timed out in the queue, and the times the limit was lowered.
+   */
+  public synchronized Map<String, Long> counters() {
+    Map<String, Long> counters = new LinkedHashMap<>();
+    counters.put("limit", (long) limit);
+    counters.put("in_flight", (long) inFlight);
+    counters.put("queued", (long) queue.size());
+    counters.put("rejections", rejections);
+    counters.put("queue_timeouts", timeouts);
+    counters.put("drops", drops);
+    return counters;
+  }
+}
@@ -0,0 +1,295 @@
+package edu.brown.cs.student.main.server.Endpoints.broadband;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * Handles requests for the broadband data of many counties at once. The counties are given as
+ * repeated state and county parameters, paired in order:
+ * "?state=Rhode Island&county=Kent County&state=Rhode Island&county=Providence County".
+ *
+ * <p>Cached counties are answered from the cache. The missing counties are grouped by state, and
+ * the misses of a state are fetched with one request for all of its counties ("county:*"), whose
+ * rows are parsed and cached as one record per county, so they also answer later requests for
+ * the state's other counties. A state with a single miss fetches just that county. Wildcards are
+ * not supported here; /broadband answers them.
+ *
+ * <p>The county codes and the states are fetched asynchronously and at the same time, and the
+ * request waits for them at most the upstream timeout, like /broadband. A county whose fetch is
+ * slower than that gets an error result, while its fetch goes on and fills the cache.
+ *
+ * <p>Each county gets its own result in the response, in the order it was asked for, so one
+ * unknown county does not fail the others.
+ */
+public class BroadbandBatchHandler implements Route {
+  /** The most counties one request may ask for. */
+  public static final int MAX_COUNTIES = 100;
+
+  private final HttpClient httpClient;
+  private final IBroadbandHelper broadbandHelper;
+  private final BroadbandCache cacher;
+  private final long upstreamTimeoutMillis;
+
+  /**
+   * Constructs a handler that shares its helper and cache with the single county handler.
+   * @param helper the BroadbandHelper that looks up codes and fetches the data.
+   * @param cache the cache of fetched data.
+   */
+  public BroadbandBatchHandler(IBroadbandHelper helper, BroadbandCache cache) {
+    this(helper, cache, BroadbandHandler.DEFAULT_UPSTREAM_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Constructs a handler that waits at most the given time for the API.
+   * @param helper the BroadbandHelper that looks up codes and fetches the data.
+   * @param cache the cache of fetched data.
+   * @param upstreamTimeoutMillis how long a request waits for the API.
+   */
+  public BroadbandBatchHandler(
+      IBroadbandHelper helper, BroadbandCache cache, long upstreamTimeoutMillis) {
+    this(helper, cache, HttpClient.newHttpClient(), upstreamTimeoutMillis);
+  }
+
+  /**
+   * Constructs a handler that makes its requests with the given client.
+   * @param helper the BroadbandHelper that looks up codes and fetches the data.
+   * @param cache the cache of fetched data.
+   * @param client the HttpClient used to make the API requests.
+   */
+  public BroadbandBatchHandler(IBroadbandHelper helper, BroadbandCache cache, HttpClient client) {
+    this(helper, cache, client, BroadbandHandler.DEFAULT_UPSTREAM_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Constructs a handler that makes its requests with the given client and waits at most the
+   * given time for them.
+   * @param helper the BroadbandHelper that looks up codes and fetches the data.
+   * @param cache the cache of fetched data.
+   * @param client the HttpClient used to make the API requests.
+   * @param upstreamTimeoutMillis how long a request waits for the API.
+   */
+  public BroadbandBatchHandler(
+      IBroadbandHelper helper,
+      BroadbandCache cache,
+      HttpClient client,
+      long upstreamTimeoutMillis) {
+    if (upstreamTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("upstream timeout must be positive");
+    }
+    this.broadbandHelper = helper;
+    this.cacher = cache;
+    this.httpClient = client;
+    this.upstreamTimeoutMillis = upstreamTimeoutMillis;
+  }
+
+  /** One requested county and, once it is known, its result. */
+  private static final class Lookup {
+    final String stateName;
+    final String countyName;
+    final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+    String stateCode;
+    String countyCode;
+
+    Lookup(String stateName, String countyName) {
+      this.stateName = stateName;
+      this.countyName = countyName;
+    }
+  }
+
+  /**
+   * Answers the broadband data of every requested county.
+   *
+   * @param request the Spark request object, with the repeated state and county parameters.
+   * @param response the Spark response object, used to set response metadata.
+   * @return A JSON string with a result for each county, in the order they were requested.
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    String[] states = request.queryParamsValues("state");
+    String[] counties = request.queryParamsValues("county");
+    if (states == null || counties == null || states.length != counties.length) {
+      response.status(400);
+      return errorResponse("Give a state parameter for every county parameter.");
+    }
+    if (states.length > MAX_COUNTIES) {
+      response.status(400);
+      return errorResponse("At most " + MAX_COUNTIES + " counties can be requested at once.");
+    }
+
+    List<Lookup> lookups = new ArrayList<>(states.length);
+    List<CompletableFuture<Void>> codes = new ArrayList<>(states.length);
+    for (int i = 0; i < states.length; i++) {
+      Lookup lookup = new Lookup(states[i], counties[i]);
+      lookups.add(lookup);
+      codes.add(lookUpCodes(lookup));
+    }
+    CompletableFuture<Void> fetched =
+        CompletableFuture.allOf(codes.toArray(new CompletableFuture<?>[0]))
+            .thenCompose(ignored -> fetchMisses(lookups));
+    try {
+      fetched.get(upstreamTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      // the counties still missing get the error below
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // every step records its own failures in the results
+    }
+
+    IOException late =
+        new IOException("The Census API did not answer within " + upstreamTimeoutMillis + " ms");
+    List<Map<String, Object>> results = new ArrayList<>(lookups.size());
+    for (Lookup lookup : lookups) {
+      lookup.result.complete(countyError(lookup, late));
+      results.add(lookup.result.join());
+    }
+    Map<String, Object> responseMap = new LinkedHashMap<>();
+    responseMap.put("result", "success");
+    responseMap.put("responses", results);
+    response.status(200);
+    return JsonResponses.toJson(responseMap);
+  }
+
+  /** Looks up the state and county codes of a county, or records why they can not be. */
+  private CompletableFuture<Void> lookUpCodes(Lookup lookup) {
+    CompletableFuture<String> countyCode;
+    try {
+      if (lookup.stateName.equals("*") || lookup.countyName.equals("*")) {
+        throw new IllegalArgumentException(
+            "A wildcard is not supported in a batch; use /broadband for a whole state.");
+      }
+      lookup.stateCode = broadbandHelper.getStateCode(lookup.stateName);
+      countyCode =
+          broadbandHelper.getCountyCodeAsync(lookup.stateCode, lookup.countyName, httpClient);
+    } catch (RuntimeException e) {
+      countyCode = CompletableFuture.failedFuture(e);
+    }
+    return countyCode.handle(
+        (code, error) -> {
+          if (error != null) {
+            lookup.result.complete(countyError(lookup, unwrap(error)));
+          } else {
+            lookup.countyCode = code;
+          }
+          return null;
+        });
+  }
+
+  /** Answers the counties that are cached, and fetches the others grouped by state. */
+  private CompletableFuture<Void> fetchMisses(List<Lookup> lookups) {
+    // state code -> the lookups of the state that missed the cache
+    Map<String, List<Lookup>> misses = new LinkedHashMap<>();
+    for (Lookup lookup : lookups) {
+      if (lookup.result.isDone()) {
+        continue;
+      }
+      BroadbandRecord cached = cacher.getRecord(lookup.stateCode, lookup.countyCode);
+      if (cached != null) {
+        lookup.result.complete(countySuccess(lookup, cached));
+      } else {
+        misses.computeIfAbsent(lookup.stateCode, state -> new ArrayList<>()).add(lookup);
+      }
+    }
+    List<CompletableFuture<Void>> fetches = new ArrayList<>(misses.size());
+    misses.forEach((stateCode, stateLookups) -> fetches.add(fetchState(stateCode, stateLookups)));
+    return CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /** Fetches the counties of one state that missed the cache, and caches what comes back. */
+  private CompletableFuture<Void> fetchState(String stateCode, List<Lookup> lookups) {
+    CompletableFuture<Map<String, BroadbandRecord>> fetch;
+    if (lookups.size() == 1) {
+      String countyCode = lookups.get(0).countyCode;
+      fetch =
+          cacher
+              .getOrFetchRecordAsync(
+                  stateCode,
+                  countyCode,
+                  (state, county) ->
+                      broadbandHelper.fetchDataFromApiAsync(state, county, httpClient))
+              .thenApply(data -> Map.of(countyCode, data));
+    } else {
+      fetch =
+          broadbandHelper
+              .fetchDataFromApiAsync(stateCode, "*", httpClient)
+              .thenApply(
+                  body -> {
+                    List<BroadbandRecord> records;
+                    try {
+                      records = BroadbandRecord.parseAll(body);
+                    } catch (IOException e) {
+                      throw new CompletionException(e);
+                    }
+                    Map<String, BroadbandRecord> byCounty = new HashMap<>();
+                    for (BroadbandRecord data : records) {
+                      cacher.putRecord(stateCode, data.county(), data);
+                      byCounty.put(data.county(), data);
+                    }
+                    return byCounty;
+                  });
+    }
+    return fetch.handle(
+        (byCounty, error) -> {
+          for (Lookup lookup : lookups) {
+            BroadbandRecord data = error == null ? byCounty.get(lookup.countyCode) : null;
+            lookup.result.complete(
+                data != null
+                    ? countySuccess(lookup, data)
+                    : countyError(
+                        lookup,
+                        error != null
+                            ? unwrap(error)
+                            : new IOException("No broadband data for this county")));
+          }
+          return null;
+        });
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null
+        ? error.getCause()
+        : error;
+  }
+
+  private static Map<String, Object> countySuccess(Lookup lookup, BroadbandRecord data) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("state", lookup.stateName);
+    result.put("county", lookup.countyName);
+    result.put("result", "success");
+    result.put("data", data);
+    return result;
+  }
+
+  private static Map<String, Object> countyError(Lookup lookup, Throwable e) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("state", lookup.stateName);
+    result.put("county", lookup.countyName);
+    result.put("result", "error");
+    result.put("message", e.getMessage());
+    return result;
+  }
+
+  private static String errorResponse(String message) {
+    Map<String, Object> errorResponse = new HashMap<>();
+    errorResponse.put("result", "error");
+    errorResponse.put("message", message);
+    return JsonResponses.toJson(errorResponse);
+  }
+}
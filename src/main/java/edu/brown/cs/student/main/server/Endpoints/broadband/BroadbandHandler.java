@@ -1,17 +1,17 @@
 package edu.brown.cs.student.main.server.Endpoints.broadband;
 
-import com.squareup.moshi.JsonAdapter;
-import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
 import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import spark.Request;
 import spark.Response;
@@ -22,20 +22,29 @@ import spark.Route;
  * This class initializes state codes and sets up a caching mechanism to store
  * and retrieve broadband data efficiently. It supports handling requests with
  * or without an injected HttpClient instance for testing or customized HTTP behaviors.
+ *
+ * <p>Requests are answered through the helper's asynchronous path, so the API calls themselves
+ * hold no thread. Spark routes must return their response, so the request's thread still waits
+ * for the result, but only up to a deadline: when the API is slower than that, the request is
+ * answered with a 504 and its thread is free again, while the fetch goes on and fills the cache.
  */
 public class BroadbandHandler implements Route {
+  /** Minutes cached data is served before it is refreshed in the background. */
+  public static final long DEFAULT_SOFT_TTL_MINUTES = 10;
+  /** Minutes cached data is kept at most, when it could not be refreshed. */
+  public static final long DEFAULT_HARD_TTL_MINUTES = 60;
+  /** Milliseconds a request waits for the API before it is answered with a 504. */
+  public static final long DEFAULT_UPSTREAM_TIMEOUT_MILLIS = 10_000;
 
   private HttpClient httpClient = HttpClient.newHttpClient();
-  private BroadbandCache cacher = new BroadbandCache(10, TimeUnit.MINUTES, 10);
-  private IBroadbandHelper broadbandHelper = new BroadbandHelper();
-
-  static {
-    try {
-      new BroadbandHelper().initializeStateCodes();
-    } catch (IOException | InterruptedException | URISyntaxException e) {
-      e.printStackTrace();
-    }
-  }
+  private BroadbandCache cacher =
+      BroadbandCache.withMemoryBudget(
+          DEFAULT_SOFT_TTL_MINUTES,
+          DEFAULT_HARD_TTL_MINUTES,
+          TimeUnit.MINUTES,
+          BroadbandCache.DEFAULT_MAX_BYTES);
+  private IBroadbandHelper broadbandHelper;
+  private long upstreamTimeoutMillis = DEFAULT_UPSTREAM_TIMEOUT_MILLIS;
 
   /**
    * Constructs a BroadbandHandler with a custom HttpClient.
@@ -46,9 +55,46 @@ public class BroadbandHandler implements Route {
   }
 
   /**
-   * Default constructor that uses the system's default HttpClient.
+   * Constructs a BroadbandHandler that caches responses in the given cache, so its capacity and
+   * TTLs can be configured.
+   * @param handler the BroadbandHelper that fetches the data.
+   * @param cache the cache of fetched data.
    */
-  public BroadbandHandler() {}
+  public BroadbandHandler(IBroadbandHelper handler, BroadbandCache cache) {
+    this.broadbandHelper = handler;
+    this.cacher = cache;
+  }
+
+  /**
+   * Constructs a BroadbandHandler that caches responses in the given cache and waits at most the
+   * given time for the API.
+   * @param handler the BroadbandHelper that fetches the data.
+   * @param cache the cache of fetched data.
+   * @param upstreamTimeoutMillis how long a request waits for the API before it gets a 504.
+   */
+  public BroadbandHandler(
+      IBroadbandHelper handler, BroadbandCache cache, long upstreamTimeoutMillis) {
+    this(handler, cache);
+    if (upstreamTimeoutMillis <= 0) {
+      throw new IllegalArgumentException("upstream timeout must be positive");
+    }
+    this.upstreamTimeoutMillis = upstreamTimeoutMillis;
+  }
+
+  /**
+   * Default constructor that uses the system's default HttpClient and a BroadbandHelper whose
+   * state codes are fetched right away.
+   */
+  public BroadbandHandler() {
+    BroadbandHelper helper = new BroadbandHelper();
+    try {
+      // the helper that serves the requests needs the codes, not a throwaway one
+      helper.initializeStateCodes();
+    } catch (IOException | InterruptedException | URISyntaxException e) {
+      e.printStackTrace();
+    }
+    this.broadbandHelper = helper;
+  }
 
   /**
    * Processes the incoming request to fetch broadband data for a given state and county.
@@ -63,25 +109,48 @@ public class BroadbandHandler implements Route {
    */
   @Override
   public Object handle(Request request, Response response) {
-    Moshi moshi = new Moshi.Builder().build();
-    Type mapStringObject = Types.newParameterizedType(Map.class, String.class, Object.class);
-    JsonAdapter<Map<String, Object>> adapter = moshi.adapter(mapStringObject);
-
     String stateName = request.queryParams("state");
     String countyName = request.queryParams("county");
 
     try {
-      Map<String, Object> result = broadbandHelper.processBroadbandRequest(stateName, countyName, httpClient, cacher);
+      Map<String, Object> result =
+          broadbandHelper
+              .processBroadbandRequestAsync(stateName, countyName, httpClient, cacher)
+              .get(upstreamTimeoutMillis, TimeUnit.MILLISECONDS);
       response.status(200);
-      return adapter.toJson(result);
-    } catch (Exception e) {
-      Map<String, Object> errorResponse = new HashMap<>();
-      errorResponse.put("result", "error");
-      errorResponse.put("message", e.getMessage());
+      return JsonResponses.toJson(result);
+    } catch (TimeoutException e) {
+      response.status(504);
+      return errorResponse("The Census API did not answer within " + upstreamTimeoutMillis + " ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       response.status(500);
-      return adapter.toJson(errorResponse);
+      return errorResponse(e.getMessage());
+    } catch (Exception e) {
+      Throwable cause = e;
+      while ((cause instanceof ExecutionException || cause instanceof CompletionException)
+          && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      // the Census API is as busy as the limiter allows, so the client should retry later
+      response.status(cause instanceof AdaptiveLimiter.RejectedException ? 503 : 500);
+      return errorResponse(cause.getMessage());
     }
   }
 
+  private static String errorResponse(String message) {
+    Map<String, Object> errorResponse = new HashMap<>();
+    errorResponse.put("result", "error");
+    errorResponse.put("message", message);
+    return JsonResponses.toJson(errorResponse);
+  }
 
+  /**
+   * Returns this handler's broadband cache, so its statistics can be reported.
+   *
+   * @return the cache.
+   */
+  public BroadbandCache getCache() {
+    return cacher;
+  }
 }
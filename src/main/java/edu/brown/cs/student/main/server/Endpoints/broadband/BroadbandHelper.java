@@ -1,6 +1,12 @@
 package edu.brown.cs.student.main.server.Endpoints.broadband;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.squareup.moshi.JsonDataException;
 import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Caching.CacheLoads;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
 
 import java.io.IOException;
 import java.net.URI;
@@ -8,8 +14,17 @@ import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,9 +34,92 @@ import java.util.regex.Pattern;
  * This class includes methods for initializing state codes from an external API,
  * retrieving state and county codes based on names, and fetching broadband data
  * for a specific state and county.
+ *
+ * <p>The county directory of a state is fetched once and kept as a map from county names to
+ * codes for a fixed time, so looking up a county does not call the API on every request.
+ *
+ * <p>processBroadbandRequestAsync answers a request with HttpClient.sendAsync instead of send, so
+ * no thread waits while the API is called. The API's address is a constructor parameter, so the
+ * helper can be pointed at a local stub server.
+ *
+ * <p>With enableStatePrefetch, the first county of a state that misses the cache also starts a
+ * background request for all of the state's counties ("county:*"), which is cached as one record
+ * per county, so the next counties a user looks up in that state are already cached. A state is
+ * prefetched at most once per cooldown, since counties the API has no data for miss every time.
+ *
+ * <p>A request for "county=*" is answered the same way: the counties of the state's last
+ * "county:*" response are remembered like a county directory, and while each of them is still
+ * cached the request is answered from the cache. Otherwise the state is fetched again, with one
+ * request shared by every concurrent request for the state. "state=*&county=*" works the same
+ * way, with every county cached under its own state.
+ *
+ * <p>With limitUpstream, every county directory and data request goes through an
+ * AdaptiveLimiter, so a burst of misses is queued instead of sent all at once. An answer of 429
+ * or 503 from the API is then an IOException, which lowers the limit.
  */
 public class BroadbandHelper implements IBroadbandHelper{
+    /** How long a fetched county directory is used before it is fetched again. */
+    public static final long DEFAULT_DIRECTORY_TTL_MINUTES = 24 * 60;
+    /** The address of the Census API. */
+    public static final URI DEFAULT_API_BASE = URI.create("https://api.census.gov");
+
     private Map<String, String> stateCodeMap = new HashMap<>();
+    // state code -> lower-case county name -> county code
+    private final Cache<String, Map<String, String>> countyDirectories;
+    // the directory fetches started by getCountyCodeAsync that have not completed yet
+    private final Map<String, CompletableFuture<Map<String, String>>> pendingDirectories =
+            new ConcurrentHashMap<>();
+    // state code, or "*" -> the counties of its last "county:*" response
+    private final Cache<String, List<BroadbandRecord>> stateCounties;
+    // the "county:*" fetches that have not completed yet
+    private final Map<String, CompletableFuture<List<BroadbandRecord>>> pendingStates =
+            new ConcurrentHashMap<>();
+    private final String apiBase;
+    // state code -> when its last prefetch started, in System.nanoTime
+    private final Map<String, Long> statePrefetches = new ConcurrentHashMap<>();
+    // how long after a prefetch a state is not prefetched again; negative while prefetch is off
+    private volatile long prefetchCooldownNanos = -1;
+    private final LongAdder prefetches = new LongAdder();
+    private final LongAdder prefetchedCounties = new LongAdder();
+    private final LongAdder prefetchFailures = new LongAdder();
+    // bounds the concurrent API requests; null sends them as they come
+    private volatile AdaptiveLimiter upstreamLimiter;
+
+    /**
+     * Constructs a BroadbandHelper that keeps county directories for DEFAULT_DIRECTORY_TTL_MINUTES.
+     */
+    public BroadbandHelper() {
+        this(DEFAULT_DIRECTORY_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Constructs a BroadbandHelper that keeps county directories for the given time.
+     *
+     * @param directoryTtl how long a fetched county directory is used before it is fetched again.
+     * @param unit the unit of directoryTtl.
+     */
+    public BroadbandHelper(long directoryTtl, TimeUnit unit) {
+        this(directoryTtl, unit, DEFAULT_API_BASE);
+    }
+
+    /**
+     * Constructs a BroadbandHelper that calls the API at the given address.
+     *
+     * @param directoryTtl how long a fetched county directory is used before it is fetched again.
+     * @param unit the unit of directoryTtl.
+     * @param apiBase the scheme, host and port of the API, such as DEFAULT_API_BASE.
+     */
+    public BroadbandHelper(long directoryTtl, TimeUnit unit, URI apiBase) {
+        String base = apiBase.toString();
+        this.apiBase = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.countyDirectories = CacheBuilder.newBuilder()
+                .expireAfterWrite(directoryTtl, unit)
+                .recordStats()
+                .build();
+        this.stateCounties = CacheBuilder.newBuilder()
+                .expireAfterWrite(directoryTtl, unit)
+                .build();
+    }
 
 
     /**
@@ -35,7 +133,7 @@ public class BroadbandHelper implements IBroadbandHelper{
      */
     public void initializeStateCodes()
             throws URISyntaxException, IOException, InterruptedException {
-        String stateDirectoryUri = "https://api.census.gov/data/2010/dec/sf1?get=NAME&for=state:*";
+        String stateDirectoryUri = apiBase + "/data/2010/dec/sf1?get=NAME&for=state:*";
         HttpRequest stateRequest =
                 HttpRequest.newBuilder().uri(new URI(stateDirectoryUri)).GET().build();
         HttpResponse<String> stateResponse =
@@ -75,11 +173,12 @@ public class BroadbandHelper implements IBroadbandHelper{
     }
 
     /**
-     * Retrieves the code for a given county name within a state by making an API request.
-     * This method matches the county name against the API response to find the corresponding code.
+     * Retrieves the code for a given county name within a state. The state's county directory is
+     * fetched from the API on the first lookup in the state and reused until it expires, so most
+     * lookups make no request. Concurrent first lookups in a state share one fetch.
      *
      * @param stateCode the state code where the county is located.
-     * @param countyName the name of the county.
+     * @param countyName the name of the county, such as "Kent County"; case is ignored.
      * @param client the HttpClient used to make the API request.
      * @return The code of the county.
      * @throws IOException if an I/O exception occurs during the API request.
@@ -92,26 +191,250 @@ public class BroadbandHelper implements IBroadbandHelper{
         if (countyName.equals("*")) {
             return "*";
         }
+        Map<String, String> directory = CacheLoads.getOrLoad(
+                countyDirectories, stateCode, () -> fetchCountyDirectory(stateCode, client));
+        String countyCode = directory.get(countyName.trim().toLowerCase(Locale.ROOT));
+        if (countyCode == null) {
+            throw new IllegalArgumentException("County name not found: " + countyName);
+        }
+        return countyCode;
+    }
+
+    /**
+     * Fetches the county directory of a state and maps each county's name, without the state
+     * part of the full name ("Kent County" for "Kent County, Rhode Island"), to its code.
+     *
+     * @param stateCode the state code.
+     * @param client the HttpClient used to make the API request.
+     * @return the map from lower-case county names to county codes.
+     * @throws IOException if the request fails or the response is not a county directory.
+     * @throws InterruptedException if the operation is interrupted.
+     * @throws URISyntaxException if the URI for the API request is incorrect.
+     */
+    private Map<String, String> fetchCountyDirectory(String stateCode, HttpClient client)
+            throws IOException, InterruptedException, URISyntaxException {
+        HttpResponse<String> countyResponse = send(client, countyDirectoryRequest(stateCode));
+        return parseCountyDirectory(stateCode, countyResponse.body());
+    }
+
+    private HttpRequest countyDirectoryRequest(String stateCode) throws URISyntaxException {
         String countyDirectoryUri =
-                "https://api.census.gov/data/2010/dec/sf1?get=NAME&for=county:*&in=state:" + stateCode;
-        HttpRequest countyRequest =
-                HttpRequest.newBuilder().uri(new URI(countyDirectoryUri)).GET().build();
-        HttpResponse<String> countyResponse =
-                client.send(countyRequest, HttpResponse.BodyHandlers.ofString());
+                apiBase + "/data/2010/dec/sf1?get=NAME&for=county:*&in=state:" + stateCode;
+        return HttpRequest.newBuilder().uri(new URI(countyDirectoryUri)).GET().build();
+    }
 
-        String responseBody = countyResponse.body();
-        Pattern pattern =
-                Pattern.compile("\\[\"(" + countyName + ", .*?)\",\"" + stateCode + "\",\"(\\d{3})\"\\]");
-        Matcher matcher = pattern.matcher(responseBody);
+    private static Map<String, String> parseCountyDirectory(String stateCode, String body)
+            throws IOException {
+        List<List<String>> rows;
+        try {
+            rows = JsonResponses.rows().fromJson(body);
+        } catch (JsonDataException e) {
+            throw new IOException("Unexpected county directory response: " + e.getMessage());
+        }
+        if (rows == null || rows.isEmpty()) {
+            throw new IOException("Empty county directory for state " + stateCode);
+        }
+        Map<String, String> directory = new HashMap<>();
+        // the first row names the columns: NAME, state, county
+        for (List<String> row : rows.subList(1, rows.size())) {
+            if (row.size() < 3 || row.get(0) == null) {
+                continue;
+            }
+            String countyName = row.get(0).split(",")[0].trim().toLowerCase(Locale.ROOT);
+            directory.put(countyName, row.get(row.size() - 1));
+        }
+        return directory;
+    }
 
-        while (matcher.find()) {
-            String matchedCounty = matcher.group(1).split(",")[0].trim();
-            if (matchedCounty.equalsIgnoreCase(countyName)) {
-                return matcher.group(2);
+    /**
+     * Looks up the code of a county like getCountyCode, but without blocking: when the state's
+     * directory is not cached, its fetch is started with sendAsync and the code arrives when it
+     * completes. Concurrent lookups in a state whose directory is being fetched share the fetch.
+     *
+     * @param stateCode the state code where the county is located.
+     * @param countyName the name of the county; case is ignored.
+     * @param client the HttpClient used to make the API request.
+     * @return the code of the county, or the exception the lookup failed with: an
+     *     IllegalArgumentException if the county name is not found, or an IOException if the
+     *     directory can not be fetched.
+     */
+    @Override
+    public CompletableFuture<String> getCountyCodeAsync(
+            String stateCode, String countyName, HttpClient client) {
+        if (countyName.equals("*")) {
+            return CompletableFuture.completedFuture("*");
+        }
+        Map<String, String> cached = countyDirectories.getIfPresent(stateCode);
+        CompletableFuture<Map<String, String>> directory = cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : fetchCountyDirectoryAsync(stateCode, client);
+        return directory.thenApply(counties -> {
+            String countyCode = counties.get(countyName.trim().toLowerCase(Locale.ROOT));
+            if (countyCode == null) {
+                throw new IllegalArgumentException("County name not found: " + countyName);
+            }
+            return countyCode;
+        });
+    }
+
+    private CompletableFuture<Map<String, String>> fetchCountyDirectoryAsync(
+            String stateCode, HttpClient client) {
+        CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> running =
+                pendingDirectories.putIfAbsent(stateCode, result);
+        if (running != null) {
+            return running;
+        }
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = sendAsync(client, countyDirectoryRequest(stateCode));
+        } catch (URISyntaxException | RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((countyResponse, error) -> {
+            Map<String, String> directory = null;
+            try {
+                if (error == null) {
+                    directory = parseCountyDirectory(stateCode, countyResponse.body());
+                    countyDirectories.put(stateCode, directory);
+                }
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                pendingDirectories.remove(stateCode, result);
+            }
+            if (error == null) {
+                result.complete(directory);
+            } else {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the statistics of the county directory cache, for the metrics endpoint.
+     *
+     * @return the cache statistics.
+     */
+    public CacheStats countyDirectoryStats() {
+        return countyDirectories.stats();
+    }
+
+    /**
+     * Returns the counts of the state prefetches, for the metrics endpoint.
+     *
+     * @return the prefetches started, the counties they cached and the prefetches that failed.
+     */
+    public Map<String, Long> prefetchCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("prefetches", prefetches.sum());
+        counters.put("prefetched_counties", prefetchedCounties.sum());
+        counters.put("prefetch_failures", prefetchFailures.sum());
+        return counters;
+    }
+
+    /**
+     * Turns on the prefetch of whole states: from now on, a county that misses the cache also
+     * starts a background request for every county of its state, unless the state was prefetched
+     * less than the cooldown ago.
+     *
+     * @param cooldown how long after a prefetch its state is not prefetched again.
+     * @param unit the unit of cooldown.
+     */
+    public void enableStatePrefetch(long cooldown, TimeUnit unit) {
+        if (cooldown < 0) {
+            throw new IllegalArgumentException("The prefetch cooldown cannot be negative.");
+        }
+        this.prefetchCooldownNanos = unit.toNanos(cooldown);
+    }
+
+    /**
+     * Starts a background request for every county of a state and caches what comes back, unless
+     * prefetch is off or the state was prefetched less than the cooldown ago. Only one of the
+     * requests that miss on a state at once starts its prefetch.
+     */
+    private void prefetchState(String stateCode, HttpClient httpClient, BroadbandCache cacher) {
+        long cooldown = prefetchCooldownNanos;
+        if (cooldown < 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        Long last = statePrefetches.get(stateCode);
+        if (last != null && now - last < cooldown) {
+            return;
+        }
+        boolean claimed = last == null
+                ? statePrefetches.putIfAbsent(stateCode, now) == null
+                : statePrefetches.replace(stateCode, last, now);
+        if (!claimed) {
+            return;
+        }
+        prefetches.increment();
+        fetchStateAsync(stateCode, httpClient, cacher).whenComplete((counties, error) -> {
+            if (error != null) {
+                prefetchFailures.increment();
+            } else {
+                prefetchedCounties.add(counties.size());
+            }
+        });
+    }
+
+    /**
+     * Retrieves the records of every county of a state, from the cache when all counties of the
+     * state's last "county:*" response are still cached, and otherwise with fetchStateAsync.
+     */
+    private CompletableFuture<List<BroadbandRecord>> getStateAsync(
+            String stateCode, HttpClient httpClient, BroadbandCache cacher) {
+        List<BroadbandRecord> last = stateCounties.getIfPresent(stateCode);
+        if (last != null) {
+            List<BroadbandRecord> counties = new ArrayList<>(last.size());
+            for (BroadbandRecord county : last) {
+                BroadbandRecord record = cacher.getRecord(county.state(), county.county());
+                if (record == null) {
+                    break;
+                }
+                counties.add(record);
+            }
+            if (counties.size() == last.size()) {
+                return CompletableFuture.completedFuture(counties);
             }
         }
+        return fetchStateAsync(stateCode, httpClient, cacher);
+    }
 
-        throw new IllegalArgumentException("County name not found: " + countyName);
+    /**
+     * Fetches every county of a state with one "county:*" request and caches each county's
+     * record. Concurrent fetches of a state share one request.
+     */
+    private CompletableFuture<List<BroadbandRecord>> fetchStateAsync(
+            String stateCode, HttpClient httpClient, BroadbandCache cacher) {
+        CompletableFuture<List<BroadbandRecord>> result = new CompletableFuture<>();
+        CompletableFuture<List<BroadbandRecord>> running =
+                pendingStates.putIfAbsent(stateCode, result);
+        if (running != null) {
+            return running;
+        }
+        fetchDataFromApiAsync(stateCode, "*", httpClient).whenComplete((body, error) -> {
+            List<BroadbandRecord> counties = null;
+            try {
+                if (error == null) {
+                    counties = cacheAll(body, cacher);
+                    // after the records, so the list never names a county not yet cached
+                    stateCounties.put(stateCode, counties);
+                }
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                pendingStates.remove(stateCode, result);
+            }
+            if (error == null) {
+                result.complete(counties);
+            } else {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+        return result;
     }
 
 
@@ -130,39 +453,202 @@ public class BroadbandHelper implements IBroadbandHelper{
      */
     public String fetchDataFromApi(String stateCode, String county, HttpClient client)
             throws URISyntaxException, IOException, InterruptedException {
-        String baseUri = "https://api.census.gov/data/2021/acs/acs1/subject/variables";
+        HttpRequest request = broadbandRequest(stateCode, county);
+        return send(client, request).body();
+    }
+
+    /**
+     * Fetches broadband data for a county like fetchDataFromApi, but with sendAsync, so no thread
+     * waits for the response.
+     *
+     * @param stateCode the state code.
+     * @param county the county code.
+     * @param client the HttpClient used to make the API request.
+     * @return the API response containing broadband data, once it arrives.
+     */
+    @Override
+    public CompletableFuture<String> fetchDataFromApiAsync(
+            String stateCode, String county, HttpClient client) {
+        try {
+            HttpRequest request = broadbandRequest(stateCode, county);
+            return sendAsync(client, request).thenApply(HttpResponse::body);
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Sends every later county directory and data request through the given limiter.
+     *
+     * @param limiter bounds the requests running at once.
+     */
+    public void limitUpstream(AdaptiveLimiter limiter) {
+        this.upstreamLimiter = limiter;
+    }
+
+    private HttpResponse<String> send(HttpClient client, HttpRequest request)
+            throws IOException, InterruptedException {
+        AdaptiveLimiter limiter = upstreamLimiter;
+        if (limiter == null) {
+            return sendChecked(client, request);
+        }
+        try {
+            return limiter.call(() -> sendChecked(client, request));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendAsync(
+            HttpClient client, HttpRequest request) {
+        AdaptiveLimiter limiter = upstreamLimiter;
+        return limiter == null
+                ? sendAsyncChecked(client, request)
+                : limiter.submit(() -> sendAsyncChecked(client, request));
+    }
+
+    private static HttpResponse<String> sendChecked(HttpClient client, HttpRequest request)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        IOException throttled = throttled(response);
+        if (throttled != null) {
+            throw throttled;
+        }
+        return response;
+    }
+
+    private static CompletableFuture<HttpResponse<String>> sendAsyncChecked(
+            HttpClient client, HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    IOException throttled = throttled(response);
+                    if (throttled != null) {
+                        throw new CompletionException(throttled);
+                    }
+                    return response;
+                });
+    }
+
+    // the API answers 429 or 503 when it is throttling, which must not be cached as data
+    private static IOException throttled(HttpResponse<String> response) {
+        int status = response.statusCode();
+        return status == 429 || status == 503
+                ? new IOException("The Census API is throttling requests: " + status)
+                : null;
+    }
+
+    private HttpRequest broadbandRequest(String stateCode, String county)
+            throws URISyntaxException {
+        String baseUri = apiBase + "/data/2021/acs/acs1/subject/variables";
         String queryParam = "?get=NAME,S2802_C03_022E&for=county:" + county + "&in=state:" + stateCode;
         URI uri = new URI(baseUri + queryParam);
-        HttpRequest request = HttpRequest.newBuilder().uri(uri).GET().build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        return response.body();
+        return HttpRequest.newBuilder().uri(uri).GET().build();
     }
 
 
     @Override
     public Map<String, Object> processBroadbandRequest(String stateName, String countyName, HttpClient httpClient, BroadbandCache cacher) throws Exception {
-        Map<String, Object> responseMap = new HashMap<>();
-
         if (stateName == null || countyName == null || stateName.isEmpty() || countyName.isEmpty()) {
             throw new IllegalArgumentException("State and county parameters are required.");
         }
 
         String stateCode = getStateCode(stateName);
         String countyCode = getCountyCode(stateCode, countyName, httpClient);
-        String broadbandJson = cacher.getData(stateCode, countyCode);
+        if (countyCode.equals("*")) {
+            try {
+                return successResponse(stateName, countyName,
+                        getStateAsync(stateCode, httpClient, cacher).join());
+            } catch (CompletionException e) {
+                Throwable cause = unwrap(e);
+                throw cause instanceof Exception ? (Exception) cause : e;
+            }
+        }
+        // concurrent misses on the same county share one call to the API, and a miss may also
+        // start fetching the state's other counties
+        BroadbandRecord broadband = cacher.getOrFetchRecord(stateCode, countyCode,
+                (state, county) -> {
+                    prefetchState(state, httpClient, cacher);
+                    return fetchDataFromApi(state, county, httpClient);
+                });
+
+        return successResponse(stateName, countyName, broadband);
+    }
+
+    /**
+     * Processes a broadband request like processBroadbandRequest, but without blocking: the county
+     * directory and the data are fetched with sendAsync when they are not cached, and the response
+     * is built when they arrive.
+     *
+     * @param stateName the name of the state.
+     * @param countyName the name of the county.
+     * @param httpClient the HttpClient used to make the API requests.
+     * @param cacher the cache of broadband data.
+     * @return the response, or the exception the request failed with.
+     */
+    @Override
+    public CompletableFuture<Map<String, Object>> processBroadbandRequestAsync(
+            String stateName, String countyName, HttpClient httpClient, BroadbandCache cacher) {
+        if (stateName == null || countyName == null
+                || stateName.isEmpty() || countyName.isEmpty()) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("State and county parameters are required."));
+        }
+        String stateCode;
+        try {
+            stateCode = getStateCode(stateName);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (countyName.equals("*")) {
+            return getStateAsync(stateCode, httpClient, cacher)
+                    .thenApply(counties -> successResponse(stateName, countyName, counties));
+        }
+        return getCountyCodeAsync(stateCode, countyName, httpClient)
+                .thenCompose(countyCode -> cacher.getOrFetchRecordAsync(stateCode, countyCode,
+                        (state, county) -> {
+                            prefetchState(state, httpClient, cacher);
+                            return fetchDataFromApiAsync(state, county, httpClient);
+                        }))
+                .thenApply(broadband -> successResponse(stateName, countyName, broadband));
+    }
 
-        if (broadbandJson == null) {
-            broadbandJson = fetchDataFromApi(stateCode, countyCode, httpClient);
-            cacher.putData(stateCode, countyCode, broadbandJson);
+    /**
+     * Parses the response for all counties of a state, or of every state, and caches each
+     * county's record under its own state and county code, so the counties are cached as records
+     * instead of the whole response being kept as text.
+     *
+     * @param body the response for "county:*".
+     * @param cacher the cache of broadband data.
+     * @return the records of the counties, in the order of the response.
+     * @throws IOException if the body is not a broadband table.
+     */
+    static List<BroadbandRecord> cacheAll(String body, BroadbandCache cacher) throws IOException {
+        List<BroadbandRecord> records = BroadbandRecord.parseAll(body);
+        for (BroadbandRecord record : records) {
+            if (record.state() != null) {
+                cacher.putRecord(record.state(), record.county(), record);
+            }
         }
+        return records;
+    }
 
+    private static Map<String, Object> successResponse(
+            String stateName, String countyName, Object broadband) {
+        Map<String, Object> responseMap = new HashMap<>();
         responseMap.put("state", stateName);
         responseMap.put("county", countyName);
         responseMap.put("result", "success");
-        responseMap.put("data", broadbandJson);
-
+        responseMap.put("data", broadband);
         return responseMap;
     }
 
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+    }
+
 }
 
@@ -0,0 +1,215 @@
+package edu.brown.cs.student.main.server.Endpoints.broadband;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import com.squareup.moshi.JsonWriter;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The broadband data of one county, parsed from a Census API response once, when it is fetched.
+ * A response for one county is a table of a header row and the county's row; the percentage of
+ * households with broadband is the S2802_C03_022E column. Cached as a record, a county keeps its
+ * name, a primitive percentage and interned codes shared by every record, instead of the header
+ * row and quoted values of its response text. It is written to clients as a JSON object
+ * ({"name": ..., "state": ..., "county": ..., "percentage": ...}) instead of a string of JSON
+ * they would have to parse again.
+ *
+ * @param name the county's full name, such as "Kent County, Rhode Island".
+ * @param state the state code.
+ * @param county the county code.
+ * @param percentage the percentage of households with broadband, or NaN when the API has none.
+ */
+public record BroadbandRecord(String name, String state, String county, double percentage) {
+  /** The Census variable of the percentage of households with broadband. */
+  public static final String PERCENTAGE_VARIABLE = "S2802_C03_022E";
+
+  /** Writes records as JSON objects; a missing percentage is written as null. */
+  public static final JsonAdapter<BroadbandRecord> JSON_ADAPTER = new RecordAdapter();
+
+  private static final List<String> HEADER =
+      List.of("NAME", PERCENTAGE_VARIABLE, "state", "county");
+  // the record object and its name's String and array headers; the codes are interned
+  private static final int OVERHEAD_BYTES = 72;
+
+  /**
+   * Thrown when the Census API answers with something other than a broadband table of the
+   * counties asked for, such as its answer for a county it has no data for. Fetching again does
+   * not help, unlike when the API can not be reached or is throttling requests.
+   */
+  public static final class UnexpectedResponseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    UnexpectedResponseException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Parses every county of a Census API response, such as the response for "county:*". County
+   * codes are only unique within a state, so a response for "state:*" can hold the same code
+   * many times; each record carries its own state code.
+   *
+   * @param body the response text.
+   * @return the records of the counties, in the order of the response.
+   * @throws UnexpectedResponseException if the body is not a table with NAME, S2802_C03_022E,
+   *     state and county columns.
+   */
+  public static List<BroadbandRecord> parseAll(String body) throws IOException {
+    List<List<String>> rows;
+    try {
+      rows = JsonResponses.rows().fromJson(body);
+    } catch (JsonDataException | IOException e) {
+      throw new UnexpectedResponseException("Unexpected broadband response: " + e.getMessage());
+    }
+    if (rows == null || rows.isEmpty()) {
+      throw new UnexpectedResponseException("Empty broadband response");
+    }
+    List<String> header = rows.get(0);
+    int name = header.indexOf("NAME");
+    int percentage = header.indexOf(PERCENTAGE_VARIABLE);
+    int state = header.indexOf("state");
+    int county = header.indexOf("county");
+    if (name < 0 || percentage < 0 || state < 0 || county < 0) {
+      throw new UnexpectedResponseException("Unexpected broadband columns: " + header);
+    }
+    List<BroadbandRecord> records = new ArrayList<>(rows.size() - 1);
+    for (List<String> row : rows.subList(1, rows.size())) {
+      if (row.size() != header.size() || row.get(county) == null) {
+        continue;
+      }
+      double value = parsePercentage(row.get(percentage));
+      records.add(
+          new BroadbandRecord(
+              row.get(name), intern(row.get(state)), intern(row.get(county)), value));
+    }
+    return records;
+  }
+
+  /**
+   * Parses the response for a single county.
+   *
+   * @param body the response text.
+   * @return the county's record.
+   * @throws UnexpectedResponseException if the body is not a broadband table with exactly one
+   *     county.
+   */
+  public static BroadbandRecord parse(String body) throws IOException {
+    List<BroadbandRecord> records = parseAll(body);
+    if (records.size() != 1) {
+      throw new UnexpectedResponseException("Expected one county but got " + records.size());
+    }
+    return records.get(0);
+  }
+
+  // a few thousand codes are shared by every record, rather than copied into each
+  private static String intern(String code) {
+    return code == null ? null : code.intern();
+  }
+
+  private static double parsePercentage(String value) {
+    if (value == null) {
+      return Double.NaN;
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Writes the record back as the Census API response for its county, for callers that take the
+   * response text.
+   *
+   * @return a table of the header row and the county's row, with the percentage written the way
+   *     the API writes it: "85" rather than "85.0", and never in exponent form.
+   */
+  public String toCensusJson() {
+    String value =
+        Double.isNaN(percentage)
+            ? null
+            : BigDecimal.valueOf(percentage).stripTrailingZeros().toPlainString();
+    return JsonResponses.rows().toJson(List.of(HEADER, Arrays.asList(name, value, state, county)));
+  }
+
+  /**
+   * Estimates the heap of the record, for bounding a cache of records by memory.
+   *
+   * @return the estimated bytes; its name is ASCII, so one byte per character.
+   */
+  public int estimatedBytes() {
+    return OVERHEAD_BYTES + (name == null ? 0 : name.length());
+  }
+
+  /** Reads and writes records as JSON objects with named fields. */
+  private static final class RecordAdapter extends JsonAdapter<BroadbandRecord> {
+    private static final JsonReader.Options FIELDS =
+        JsonReader.Options.of("name", "state", "county", "percentage");
+
+    @Override
+    public BroadbandRecord fromJson(JsonReader reader) throws IOException {
+      if (reader.peek() == JsonReader.Token.NULL) {
+        return reader.nextNull();
+      }
+      String name = null;
+      String state = null;
+      String county = null;
+      double percentage = Double.NaN;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        int field = reader.selectName(FIELDS);
+        if (field < 0) {
+          reader.skipName();
+          reader.skipValue();
+        } else if (reader.peek() == JsonReader.Token.NULL) {
+          reader.nextNull();
+        } else if (field == 3) {
+          percentage = reader.nextDouble();
+        } else if (field == 0) {
+          name = reader.nextString();
+        } else if (field == 1) {
+          state = reader.nextString();
+        } else {
+          county = reader.nextString();
+        }
+      }
+      reader.endObject();
+      return new BroadbandRecord(name, state, county, percentage);
+    }
+
+    @Override
+    public void toJson(JsonWriter writer, BroadbandRecord record) throws IOException {
+      if (record == null) {
+        writer.nullValue();
+        return;
+      }
+      writer.beginObject();
+      writer.name("name").value(record.name());
+      writer.name("state").value(record.state());
+      writer.name("county").value(record.county());
+      writer.name("percentage");
+      if (Double.isNaN(record.percentage())) {
+        // keep the field, so every record has the same shape
+        boolean serializeNulls = writer.getSerializeNulls();
+        writer.setSerializeNulls(true);
+        writer.nullValue();
+        writer.setSerializeNulls(serializeNulls);
+      } else {
+        writer.value(record.percentage());
+      }
+      writer.endObject();
+    }
+
+    @Override
+    public String toString() {
+      return "JsonAdapter(BroadbandRecord)";
+    }
+  }
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface IBroadbandHelper {
     void initializeStateCodes() throws URISyntaxException, IOException, InterruptedException;
@@ -13,4 +14,63 @@ public interface IBroadbandHelper {
     String getCountyCode(String stateCode, String countyName, HttpClient client) throws IOException, InterruptedException, URISyntaxException, IllegalArgumentException;
     Map<String, Object> processBroadbandRequest(String stateName, String countyName, HttpClient httpClient, BroadbandCache cacher) throws Exception;
     String fetchDataFromApi(String stateCode, String county, HttpClient client) throws URISyntaxException, IOException, InterruptedException;
+
+    /**
+     * Looks up the code of a county without making the caller wait for the API. Helpers that
+     * only have blocking calls inherit this version, which runs getCountyCode on the calling
+     * thread.
+     *
+     * @param stateCode the state code where the county is located.
+     * @param countyName the name of the county.
+     * @param client the HttpClient used to make the API request.
+     * @return the code of the county, or the exception the lookup failed with.
+     */
+    default CompletableFuture<String> getCountyCodeAsync(
+            String stateCode, String countyName, HttpClient client) {
+        try {
+            return CompletableFuture.completedFuture(getCountyCode(stateCode, countyName, client));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Fetches the broadband data of a county without making the caller wait for the API.
+     * Helpers that only have blocking calls inherit this version, which runs fetchDataFromApi on
+     * the calling thread.
+     *
+     * @param stateCode the state code.
+     * @param county the county code, or "*" for every county of the state.
+     * @param client the HttpClient used to make the API request.
+     * @return the API response, or the exception the fetch failed with.
+     */
+    default CompletableFuture<String> fetchDataFromApiAsync(
+            String stateCode, String county, HttpClient client) {
+        try {
+            return CompletableFuture.completedFuture(fetchDataFromApi(stateCode, county, client));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Processes a broadband request without making the caller wait for the API. Helpers that
+     * only have blocking calls inherit this version, which runs processBroadbandRequest on the
+     * calling thread.
+     *
+     * @param stateName the name of the state.
+     * @param countyName the name of the county.
+     * @param httpClient the HttpClient used to make the API requests.
+     * @param cacher the cache of broadband data.
+     * @return the response, or the exception the request failed with.
+     */
+    default CompletableFuture<Map<String, Object>> processBroadbandRequestAsync(
+            String stateName, String countyName, HttpClient httpClient, BroadbandCache cacher) {
+        try {
+            return CompletableFuture.completedFuture(
+                    processBroadbandRequest(stateName, countyName, httpClient, cacher));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package edu.brown.cs.student.main.server.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations that many threads record into without taking a lock, in the style of
+ * HdrHistogram. Durations are kept in microseconds, in buckets that split every power of two into
+ * SUB_BUCKETS equal parts, so a reported percentile is at most about 3% above the true one while
+ * the whole range up to hours fits in a couple of thousand counters. Recording is one increment of
+ * an atomic counter plus two striped adders, so it costs the same however many requests run at
+ * once.
+ *
+ * <p>Percentiles are computed from a copy of the counters that is not atomic as a whole, so a
+ * report taken while requests are recorded may be off by the requests in flight.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // values below SUB_BUCKETS get a bucket each; every higher power of two gets SUB_BUCKETS
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalMicros = new LongAdder();
+  private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records one duration.
+   *
+   * @param nanos the duration in nanoseconds; negative durations count as zero.
+   */
+  public void recordNanos(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    counts.incrementAndGet(bucketOf(micros));
+    count.increment();
+    totalMicros.add(micros);
+    maxMicros.accumulate(micros);
+  }
+
+  /**
+   * Returns the number of recorded durations.
+   *
+   * @return the count.
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the duration below which the given share of the recorded durations fall, rounded up
+   * to the highest value of its bucket.
+   *
+   * @param percentile the share, from 0 to 100.
+   * @return the duration in microseconds, or 0 if nothing was recorded.
+   */
+  public long percentileMicros(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      snapshot[bucket] = counts.get(bucket);
+      total += snapshot[bucket];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += snapshot[bucket];
+      if (seen >= rank) {
+        // the top of a bucket may be past anything recorded; the max is exact
+        return Math.min(highestValueOf(bucket), maxMicros.get());
+      }
+    }
+    return maxMicros.get();
+  }
+
+  /**
+   * Summarizes the histogram in milliseconds, for the metrics endpoint.
+   *
+   * @return the count, mean, max and the 50th, 90th, 99th and 99.9th percentiles.
+   */
+  public Map<String, Object> summary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    long recorded = getCount();
+    summary.put("count", recorded);
+    summary.put("mean_ms", recorded == 0 ? 0.0 : millis(totalMicros.sum()) / recorded);
+    summary.put("p50_ms", millis(percentileMicros(50)));
+    summary.put("p90_ms", millis(percentileMicros(90)));
+    summary.put("p99_ms", millis(percentileMicros(99)));
+    summary.put("p999_ms", millis(percentileMicros(99.9)));
+    summary.put("max_ms", millis(maxMicros.get()));
+    return summary;
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
+  }
+
+  /**
+   * Finds the bucket of a value: the value's highest set bit picks the power of two, and the
+   * SUB_BUCKET_BITS bits below it pick the part of it.
+   */
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int highestBit = 63 - Long.numberOfLeadingZeros(micros);
+    int shift = highestBit - SUB_BUCKET_BITS;
+    long subBucket = (micros >>> shift) - SUB_BUCKETS;
+    return (shift + 1) * SUB_BUCKETS + (int) subBucket;
+  }
+
+  /** Returns the highest value that falls in a bucket. */
+  static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,229 @@
+package edu.brown.cs.student.main.server.Metrics;
+
+import com.google.common.cache.CacheStats;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counts and times what the server does, for the metrics endpoint: requests and errors per route
+ * with their latencies, the CSV loads with their parse times and row counts, the statistics of
+ * the registered caches, and the counts of the registered upstream limiters. Everything is
+ * recorded with striped adders and the lock-free LatencyHistogram, so recording does not make
+ * concurrent requests wait on each other.
+ *
+ * <p>Requests to paths that were not registered as routes are counted together under
+ * UNMATCHED_ROUTE, so a client probing random paths can not grow the metrics without bound.
+ */
+public final class ServerMetrics {
+  /** The route that requests to unregistered paths are counted under. */
+  public static final String UNMATCHED_ROUTE = "unmatched";
+
+  private final long startNanos = System.nanoTime();
+  private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+  private final LatencyHistogram parseTimes = new LatencyHistogram();
+  private final LongAdder loadFailures = new LongAdder();
+  private final Map<String, LoadRecord> lastLoads = new ConcurrentHashMap<>();
+  private final Map<String, Supplier<CacheStats>> caches = new ConcurrentHashMap<>();
+  private final Map<String, Supplier<Map<String, Long>>> cacheCounters = new ConcurrentHashMap<>();
+  private final Map<String, Supplier<Map<String, Long>>> upstreams = new ConcurrentHashMap<>();
+
+  /** The requests of one route. */
+  private static final class RouteStats {
+    final LongAdder requests = new LongAdder();
+    final LongAdder clientErrors = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+  }
+
+  /** The last successful load of a dataset. */
+  private record LoadRecord(String filePath, int rows, long parseNanos) {}
+
+  /** Lazily creates the instance, safely published by class initialization. */
+  private static final class InstanceHolder {
+    private static final ServerMetrics INSTANCE = new ServerMetrics();
+  }
+
+  /**
+   * Constructs an empty set of metrics. The server and its handlers share the one returned by
+   * getInstance; separate instances are for tests.
+   */
+  public ServerMetrics() {
+    routes.put(UNMATCHED_ROUTE, new RouteStats());
+  }
+
+  /**
+   * Provides access to the metrics shared by the whole server.
+   *
+   * @return the shared metrics.
+   */
+  public static ServerMetrics getInstance() {
+    return InstanceHolder.INSTANCE;
+  }
+
+  /**
+   * Starts counting the requests of a route. Call it once per route when the route is set up.
+   *
+   * @param path the path of the route, as requested.
+   */
+  public void registerRoute(String path) {
+    routes.putIfAbsent(path, new RouteStats());
+  }
+
+  /**
+   * Reports the statistics of a cache on the metrics endpoint. Registering another cache under
+   * the same name replaces the first.
+   *
+   * @param name the name to report the statistics under.
+   * @param stats reads the cache's current statistics.
+   */
+  public void registerCache(String name, Supplier<CacheStats> stats) {
+    caches.put(name, stats);
+    cacheCounters.remove(name);
+  }
+
+  /**
+   * Reports the statistics of a cache on the metrics endpoint, together with counts the cache
+   * keeps itself beyond Guava's statistics.
+   *
+   * @param name the name to report the statistics under.
+   * @param stats reads the cache's current statistics.
+   * @param counters reads the cache's own counts, by name.
+   */
+  public void registerCache(
+      String name, Supplier<CacheStats> stats, Supplier<Map<String, Long>> counters) {
+    caches.put(name, stats);
+    cacheCounters.put(name, counters);
+  }
+
+  /**
+   * Reports the counts of an upstream API's limiter on the metrics endpoint, such as its queue
+   * depth and rejections. Registering another under the same name replaces the first.
+   *
+   * @param name the name to report the counts under.
+   * @param counters reads the limiter's current counts, by name.
+   */
+  public void registerUpstream(String name, Supplier<Map<String, Long>> counters) {
+    upstreams.put(name, counters);
+  }
+
+  /**
+   * Records one finished request.
+   *
+   * @param path the requested path.
+   * @param status the HTTP status of the response.
+   * @param nanos how long the request took.
+   */
+  public void recordRequest(String path, int status, long nanos) {
+    RouteStats stats = path == null ? null : routes.get(path);
+    if (stats == null) {
+      stats = routes.get(UNMATCHED_ROUTE);
+    }
+    stats.requests.increment();
+    if (status >= 500) {
+      stats.serverErrors.increment();
+    } else if (status >= 400) {
+      stats.clientErrors.increment();
+    }
+    stats.latency.recordNanos(nanos);
+  }
+
+  /**
+   * Records one successful CSV load.
+   *
+   * @param dataset the name the file was loaded as.
+   * @param filePath the loaded file.
+   * @param rows the number of rows parsed from it.
+   * @param parseNanos how long parsing the file took.
+   */
+  public void recordLoad(String dataset, String filePath, int rows, long parseNanos) {
+    parseTimes.recordNanos(parseNanos);
+    lastLoads.put(dataset, new LoadRecord(filePath, rows, parseNanos));
+  }
+
+  /** Records a CSV load that failed. */
+  public void recordLoadFailure() {
+    loadFailures.increment();
+  }
+
+  /**
+   * Returns the names of the routes being counted.
+   *
+   * @return the registered paths and UNMATCHED_ROUTE.
+   */
+  public Set<String> getRoutes() {
+    return routes.keySet();
+  }
+
+  /**
+   * Summarizes all metrics, for the metrics endpoint.
+   *
+   * @return the metrics as nested maps, with keys in a stable order.
+   */
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = new LinkedHashMap<>();
+    snapshot.put("uptime_seconds", (System.nanoTime() - startNanos) / 1_000_000_000L);
+
+    Map<String, Object> routeMetrics = new TreeMap<>();
+    routes.forEach(
+        (path, stats) -> {
+          Map<String, Object> route = new LinkedHashMap<>();
+          route.put("requests", stats.requests.sum());
+          route.put("client_errors", stats.clientErrors.sum());
+          route.put("server_errors", stats.serverErrors.sum());
+          route.put("latency", stats.latency.summary());
+          routeMetrics.put(path, route);
+        });
+    snapshot.put("routes", routeMetrics);
+
+    Map<String, Object> loads = new LinkedHashMap<>();
+    loads.put("loads", parseTimes.getCount());
+    loads.put("failures", loadFailures.sum());
+    loads.put("parse_time", parseTimes.summary());
+    Map<String, Object> datasets = new TreeMap<>();
+    lastLoads.forEach(
+        (dataset, load) -> {
+          Map<String, Object> last = new LinkedHashMap<>();
+          last.put("filepath", load.filePath());
+          last.put("rows", load.rows());
+          last.put("parse_ms", load.parseNanos() / 1_000_000.0);
+          datasets.put(dataset, last);
+        });
+    loads.put("last_load", datasets);
+    snapshot.put("csv", loads);
+
+    Map<String, Object> cacheMetrics = new TreeMap<>();
+    caches.forEach(
+        (name, stats) -> {
+          Map<String, Object> summary = summarize(stats.get());
+          Supplier<Map<String, Long>> counters = cacheCounters.get(name);
+          if (counters != null) {
+            summary.putAll(counters.get());
+          }
+          cacheMetrics.put(name, summary);
+        });
+    snapshot.put("caches", cacheMetrics);
+
+    Map<String, Object> upstreamMetrics = new TreeMap<>();
+    upstreams.forEach((name, counters) -> upstreamMetrics.put(name, counters.get()));
+    snapshot.put("upstreams", upstreamMetrics);
+    return snapshot;
+  }
+
+  private static Map<String, Object> summarize(CacheStats stats) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("requests", stats.requestCount());
+    summary.put("hits", stats.hitCount());
+    summary.put("misses", stats.missCount());
+    summary.put("hit_rate", stats.hitRate());
+    summary.put("loads", stats.loadCount());
+    summary.put("load_failures", stats.loadExceptionCount());
+    summary.put("average_load_ms", stats.averageLoadPenalty() / 1_000_000.0);
+    summary.put("evictions", stats.evictionCount());
+    return summary;
+  }
+}
@@ -1,30 +1,216 @@
 package edu.brown.cs.student.main.server;
 
-import static spark.Spark.after;
+import static spark.Spark.afterAfter;
+import static spark.Spark.before;
 
+import edu.brown.cs.student.main.parser.ParallelScan;
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Caching.BroadbandDiskStore;
+import edu.brown.cs.student.main.server.Caching.BroadbandWarmup;
+import edu.brown.cs.student.main.server.Caching.HotKeys;
+import edu.brown.cs.student.main.server.Endpoints.broadband.AdaptiveLimiter;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandBatchHandler;
 import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHandler;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHelper;
 import edu.brown.cs.student.main.server.Endpoints.LoadCSVHandler;
+import edu.brown.cs.student.main.server.Endpoints.MetricsHandler;
+import edu.brown.cs.student.main.server.Endpoints.ReadinessHandler;
 import edu.brown.cs.student.main.server.Endpoints.SearchCSVHandler;
 import edu.brown.cs.student.main.server.Endpoints.ViewCSVHandler;
+import edu.brown.cs.student.main.server.Metrics.ServerMetrics;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import spark.Route;
 import spark.Spark;
 
 public class Server {
+  private static final String START_ATTRIBUTE = "metrics.startNanos";
+  // the most requested counties saved for the next start's warm-up
+  private static final int HOT_KEYS_SAVED = 1000;
+
   public static void main(String[] args) {
-    int port = 3232;
+    ServerConfig config = ServerConfig.fromArgs(args);
+    int port = config.getInt("port", 3232);
     Spark.port(port);
 
-    after(
+    // set before the route runs, since streaming routes commit the response while handling it
+    before(
         (request, response) -> {
+          request.attribute(START_ATTRIBUTE, System.nanoTime());
           response.header("Access-Control-Allow-Origin", "*");
           response.header("Access-Control-Allow-Methods", "GET");
         });
+    // runs after every request, even one whose route threw, once its status is final
+    ServerMetrics metrics = ServerMetrics.getInstance();
+    afterAfter(
+        (request, response) -> {
+          Long start = request.attribute(START_ATTRIBUTE);
+          if (start != null) {
+            metrics.recordRequest(
+                request.pathInfo(), response.raw().getStatus(), System.nanoTime() - start);
+          }
+        });
 
-    Spark.get("/loadcsv", new LoadCSVHandler());
-    Spark.get("/viewcsv", new ViewCSVHandler());
-    Spark.get("/searchcsv", new SearchCSVHandler());
-    Spark.get("/broadband", new BroadbandHandler());
+    // total estimated heap of the loaded datasets before the least recently used are evicted
+    CSVHolder.getInstance()
+        .setMemoryBudget(config.getLong("datasets.maxBytes", CSVHolder.DEFAULT_MEMORY_BUDGET));
+    // files at least this large are parsed on several threads of the common ForkJoinPool
+    CSVHolder.getInstance()
+        .setParallelParseThreshold(
+            config.getLong("datasets.parallelParseBytes", CSVHolder.DEFAULT_PARALLEL_PARSE_BYTES));
+    get(metrics, "/loadcsv", new LoadCSVHandler());
+    get(metrics, "/viewcsv", new ViewCSVHandler());
+    // searches over at least this many rows are split across the common ForkJoinPool
+    int searchThreshold = config.getInt("search.parallelThreshold", ParallelScan.DEFAULT_THRESHOLD);
+    get(metrics, "/searchcsv", new SearchCSVHandler(ParallelScan.onCommonPool(searchThreshold)));
+    // county directories are fetched once per state and kept this long
+    // the API is called at broadband.apiBase, so the server can be pointed at a stub
+    BroadbandHelper broadbandHelper =
+        new BroadbandHelper(
+            config.getLong(
+                "broadband.directoryTtlMinutes", BroadbandHelper.DEFAULT_DIRECTORY_TTL_MINUTES),
+            TimeUnit.MINUTES,
+            URI.create(
+                config.get("broadband.apiBase", BroadbandHelper.DEFAULT_API_BASE.toString())));
+    // a positive cooldown turns on prefetching every county of a state on its first miss
+    long prefetchCooldown = config.getLong("broadband.prefetchCooldownMinutes", 0);
+    if (prefetchCooldown > 0) {
+      broadbandHelper.enableStatePrefetch(prefetchCooldown, TimeUnit.MINUTES);
+    }
+    // at most this many Census API requests run at once, fewer while the API is slow or
+    // throttling; the rest wait in a bounded queue and are rejected after the queue timeout
+    AdaptiveLimiter upstreamLimiter =
+        new AdaptiveLimiter(
+            config.getInt("broadband.upstreamInitialLimit", 8),
+            config.getInt("broadband.upstreamMaxLimit", 64),
+            config.getLong("broadband.upstreamLatencyTargetMillis", 2_000),
+            config.getInt("broadband.upstreamMaxQueue", 200),
+            config.getLong("broadband.upstreamQueueTimeoutMillis", 5_000));
+    broadbandHelper.limitUpstream(upstreamLimiter);
+    metrics.registerUpstream("census", upstreamLimiter::counters);
+    try {
+      broadbandHelper.initializeStateCodes();
+    } catch (Exception e) {
+      System.err.println("State codes could not be fetched: " + e);
+    }
+    // responses are refreshed in the background after the soft TTL and dropped after the hard
+    // one, and the least recently used are evicted once their estimated heap passes maxBytes
+    BroadbandCache broadbandCache =
+        BroadbandCache.withMemoryBudget(
+            config.getLong("broadband.softTtlMinutes", BroadbandHandler.DEFAULT_SOFT_TTL_MINUTES),
+            config.getLong("broadband.hardTtlMinutes", BroadbandHandler.DEFAULT_HARD_TTL_MINUTES),
+            TimeUnit.MINUTES,
+            config.getLong("broadband.maxBytes", BroadbandCache.DEFAULT_MAX_BYTES));
+    // responses are also kept in this file, so a restarted server does not refetch them; an
+    // empty path keeps them in memory only
+    String diskCachePath = config.get("broadband.diskCachePath", "cache/broadband.log");
+    if (!diskCachePath.isEmpty()) {
+      attachDiskStore(broadbandCache, Path.of(diskCachePath));
+    }
+    // the most requested counties are saved here when the server stops, and fetched again in
+    // the background when it starts; /ready answers 503 until this share of them is cached
+    BroadbandWarmup warmup =
+        warmUp(
+            broadbandCache,
+            broadbandHelper,
+            config.get("broadband.hotKeysPath", "cache/hot-keys.txt"),
+            config.getInt("broadband.warmupConcurrency", 4));
+    double readyCoverage = config.getInt("broadband.warmupCoveragePercent", 90) / 100.0;
+    // requests wait this long for the Census API before they are answered with a 504
+    long upstreamTimeoutMillis =
+        config.getLong(
+            "broadband.upstreamTimeoutMillis", BroadbandHandler.DEFAULT_UPSTREAM_TIMEOUT_MILLIS);
+    BroadbandHandler broadbandHandler =
+        new BroadbandHandler(broadbandHelper, broadbandCache, upstreamTimeoutMillis);
+    metrics.registerCache("broadband", broadbandCache::stats, broadbandCache::counters);
+    metrics.registerCache(
+        "county_directory",
+        broadbandHelper::countyDirectoryStats,
+        broadbandHelper::prefetchCounters);
+    get(metrics, "/broadband", broadbandHandler);
+    get(
+        metrics,
+        "/broadbandbatch",
+        new BroadbandBatchHandler(broadbandHelper, broadbandCache, upstreamTimeoutMillis));
+    get(metrics, "/metrics", new MetricsHandler(metrics));
+    get(metrics, "/ready", new ReadinessHandler(warmup, readyCoverage));
     Spark.init();
     Spark.awaitInitialization();
     System.out.println("Server is running on http://localhost:" + port);
   }
+
+  /** Opens the disk store, warms the cache from it, and closes it when the server stops. */
+  private static void attachDiskStore(BroadbandCache cache, Path path) {
+    try {
+      BroadbandDiskStore store = BroadbandDiskStore.open(path);
+      int warmed = cache.attachDiskStore(store);
+      System.out.println("Loaded " + warmed + " broadband responses from " + path);
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try {
+                      store.close();
+                    } catch (IOException e) {
+                      System.err.println("Broadband disk cache was not closed: " + e);
+                    }
+                  }));
+    } catch (IOException e) {
+      System.err.println("Broadband disk cache could not be opened: " + e);
+    }
+  }
+
+  /**
+   * Counts the counties requested from the cache and saves the most requested to a file when the
+   * server stops, and starts warming the cache with the counties saved by the last run. An empty
+   * path turns both off, and the returned warm-up has nothing to do.
+   */
+  private static BroadbandWarmup warmUp(
+      BroadbandCache cache, BroadbandHelper helper, String hotKeysPath, int concurrency) {
+    List<HotKeys.Key> keys = List.of();
+    if (!hotKeysPath.isEmpty()) {
+      Path path = Path.of(hotKeysPath);
+      if (Files.exists(path)) {
+        try {
+          keys = HotKeys.read(path);
+        } catch (IOException e) {
+          System.err.println("Broadband warm-up list could not be read: " + e);
+        }
+      }
+      HotKeys hotKeys = new HotKeys();
+      cache.attachHotKeys(hotKeys);
+      Runtime.getRuntime()
+          .addShutdownHook(
+              new Thread(
+                  () -> {
+                    try {
+                      hotKeys.save(path, HOT_KEYS_SAVED);
+                    } catch (IOException e) {
+                      System.err.println("Broadband hot keys were not saved: " + e);
+                    }
+                  }));
+    }
+    HttpClient client = HttpClient.newHttpClient();
+    BroadbandWarmup warmup =
+        new BroadbandWarmup(
+            cache,
+            (stateCode, county) -> helper.fetchDataFromApiAsync(stateCode, county, client),
+            keys,
+            concurrency);
+    warmup
+        .start()
+        .thenRun(() -> System.out.println("Broadband warm-up finished: " + warmup.progress()));
+    return warmup;
+  }
+
+  /** Sets up a GET route whose requests are counted and timed in the metrics. */
+  private static void get(ServerMetrics metrics, String path, Route route) {
+    metrics.registerRoute(path);
+    Spark.get(path, route);
+  }
 }
@@ -0,0 +1,94 @@
+package edu.brown.cs.student.main.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for the server, read from "--key=value" command line arguments. A key that is not given
+ * on the command line is looked up as a system property ("-Dkey=value"), and then falls back to
+ * the default the caller passes in.
+ */
+public final class ServerConfig {
+  private final Map<String, String> values;
+
+  private ServerConfig(Map<String, String> values) {
+    this.values = values;
+  }
+
+  /**
+   * Reads the settings given on the command line.
+   *
+   * @param args the arguments passed to main.
+   * @return the settings.
+   * @throws IllegalArgumentException if an argument is not of the form --key=value.
+   */
+  public static ServerConfig fromArgs(String[] args) {
+    Map<String, String> values = new HashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 3) {
+        throw new IllegalArgumentException("Expected --key=value but got " + arg);
+      }
+      values.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    return new ServerConfig(values);
+  }
+
+  /**
+   * Returns settings with nothing given on the command line, so only system properties and
+   * defaults apply.
+   *
+   * @return the settings.
+   */
+  public static ServerConfig defaults() {
+    return new ServerConfig(Map.of());
+  }
+
+  /**
+   * Looks up a setting.
+   *
+   * @param key the name of the setting.
+   * @param defaultValue the value to use when the setting is not given.
+   * @return the value.
+   */
+  public String get(String key, String defaultValue) {
+    String value = values.get(key);
+    return value != null ? value : System.getProperty(key, defaultValue);
+  }
+
+  /**
+   * Looks up an integer setting.
+   *
+   * @param key the name of the setting.
+   * @param defaultValue the value to use when the setting is not given.
+   * @return the value.
+   * @throws IllegalArgumentException if the setting is not an int.
+   */
+  public int getInt(String key, int defaultValue) {
+    long value = getLong(key, defaultValue);
+    if (value != (int) value) {
+      throw new IllegalArgumentException("Setting " + key + " is out of range: " + value);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Looks up a long setting.
+   *
+   * @param key the name of the setting.
+   * @param defaultValue the value to use when the setting is not given.
+   * @return the value.
+   * @throws IllegalArgumentException if the setting is not an integer.
+   */
+  public long getLong(String key, long defaultValue) {
+    String value = get(key, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Setting " + key + " must be a number but was " + value);
+    }
+  }
+}
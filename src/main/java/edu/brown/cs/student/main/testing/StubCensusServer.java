@@ -0,0 +1,122 @@
+package edu.brown.cs.student.main.testing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP server that answers like the Census API, for load tests that should not depend on
+ * the network or be rate limited by it. It knows one state, "Rhode Island" (44), with five
+ * counties, and answers every broadband query with a row for the requested county. Each answer
+ * is delayed by a fixed latency, standing in for the round trip to the real API; the delays run
+ * on their own threads, so the server answers any number of requests at once.
+ */
+public final class StubCensusServer implements AutoCloseable {
+  /** The counties of the stub state, in the order of their codes 001, 003, ... 009. */
+  public static final String[] COUNTIES = {
+    "Bristol County", "Kent County", "Newport County", "Providence County", "Washington County"
+  };
+
+  private static final Pattern COUNTY = Pattern.compile("for=county:([^&]*)");
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final long latencyMillis;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private StubCensusServer(long latencyMillis) throws IOException {
+    this.latencyMillis = latencyMillis;
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", this::answer);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * Starts a stub server on a free port of localhost.
+   *
+   * @param latencyMillis how long every answer is delayed.
+   * @return the running server.
+   * @throws IOException if the server can not be started.
+   */
+  public static StubCensusServer start(long latencyMillis) throws IOException {
+    return new StubCensusServer(latencyMillis);
+  }
+
+  /**
+   * Returns the address to pass to BroadbandHelper as the API base.
+   *
+   * @return the scheme, host and port of the server.
+   */
+  public URI base() {
+    return URI.create("http://localhost:" + server.getAddress().getPort());
+  }
+
+  /**
+   * Returns the number of requests answered so far.
+   *
+   * @return the count.
+   */
+  public int requestCount() {
+    return requests.get();
+  }
+
+  private void answer(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    try {
+      Thread.sleep(latencyMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    String query = exchange.getRequestURI().getRawQuery();
+    String body = query == null ? "[]" : bodyFor(query);
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static String bodyFor(String query) {
+    if (query.contains("for=state:")) {
+      return "[[\"NAME\",\"state\"],\n[\"Rhode Island\",\"44\"]]";
+    }
+    Matcher county = COUNTY.matcher(query);
+    String requested = county.find() ? county.group(1) : "*";
+    boolean directory = query.startsWith("get=NAME&");
+    StringBuilder body =
+        new StringBuilder(
+            directory
+                ? "[[\"NAME\",\"state\",\"county\"]"
+                : "[[\"NAME\",\"S2802_C03_022E\",\"state\",\"county\"]");
+    for (int i = 0; i < COUNTIES.length; i++) {
+      String code = String.format("%03d", 2 * i + 1);
+      if (!requested.equals("*") && !requested.equals(code)) {
+        continue;
+      }
+      body.append(",\n[\"").append(COUNTIES[i]).append(", Rhode Island\",");
+      if (!directory) {
+        body.append('"').append(80 + i).append(".5\",");
+      }
+      body.append("\"44\",\"").append(code).append("\"]");
+    }
+    return body.append(']').toString();
+  }
+
+  /** Stops the server. */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
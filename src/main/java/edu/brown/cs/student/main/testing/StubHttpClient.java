@@ -0,0 +1,158 @@
+package edu.brown.cs.student.main.testing;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+
+/**
+ * An HttpClient for tests that answers from canned bodies instead of the network. A request gets
+ * the body of the first registered URI fragment its URI contains, and fails with an IOException if
+ * none matches. Requests are counted, so tests can check what was served from a cache.
+ */
+public class StubHttpClient extends HttpClient {
+    private final Map<String, String> bodies = new LinkedHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Answers requests whose URI contains the fragment with the body.
+     *
+     * @param uriFragment a part of the request URI, such as "for=county:*&in=state:44".
+     * @param body the response body.
+     * @return this client.
+     */
+    public StubHttpClient answer(String uriFragment, String body) {
+        bodies.put(uriFragment, body);
+        return this;
+    }
+
+    /** Returns the number of requests sent so far. */
+    public int requestCount() {
+        return requests.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        requests.incrementAndGet();
+        String uri = request.uri().toString();
+        for (Map.Entry<String, String> entry : bodies.entrySet()) {
+            if (uri.contains(entry.getKey())) {
+                return (HttpResponse<T>) new StubResponse(request, entry.getValue());
+            }
+        }
+        throw new IOException("No stubbed response for " + uri);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        try {
+            return CompletableFuture.completedFuture(send(request, handler));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+            HttpRequest request,
+            HttpResponse.BodyHandler<T> handler,
+            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        return sendAsync(request, handler);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return Redirect.NEVER;
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return Optional.empty();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return null;
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return null;
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Version version() {
+        return Version.HTTP_1_1;
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return Optional.empty();
+    }
+
+    /** A 200 response with a string body. */
+    private record StubResponse(HttpRequest request, String body) implements HttpResponse<String> {
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Map.of(), (name, value) -> true);
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package edu.brown.cs.student.main.testing;
+
+import edu.brown.cs.student.main.server.Endpoints.broadband.AdaptiveLimiter;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAdaptiveLimiter {
+
+    @Test
+    public void testSlowUpstreamIsQueuedAndLowersTheLimit() throws Exception {
+        try (StubCensusServer stub = StubCensusServer.start(100)) {
+            HttpClient client =
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            BroadbandHelper helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+            AdaptiveLimiter limiter = new AdaptiveLimiter(4, 16, 20, 2, 10_000);
+            helper.limitUpstream(limiter);
+            int before = stub.requestCount();
+
+            List<CompletableFuture<String>> fetches = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                fetches.add(helper.fetchDataFromApiAsync("44", "003", client));
+            }
+            // four run, two wait in the queue, and the rest are turned away at once
+            assertEquals(4L, limiter.counters().get("in_flight"));
+            assertEquals(2L, limiter.counters().get("queued"));
+            assertEquals(4L, limiter.counters().get("rejections"));
+
+            int rejected = 0;
+            for (CompletableFuture<String> fetch : fetches) {
+                try {
+                    assertTrue(fetch.get(5, TimeUnit.SECONDS).contains("\"003\""));
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof AdaptiveLimiter.RejectedException);
+                    rejected++;
+                }
+            }
+            assertEquals(4, rejected);
+            assertEquals(before + 6, stub.requestCount());
+            // every call took longer than the 20 ms target, but the calls that finished together
+            // lowered the limit once
+            long drops = limiter.counters().get("drops");
+            assertTrue(drops >= 2 && drops < 6, "drops: " + drops);
+            assertTrue(limiter.counters().get("limit") < 4);
+            assertEquals(0L, limiter.counters().get("in_flight"));
+
+            // the blocking fetch waits for the same limit
+            assertTrue(helper.fetchDataFromApi("44", "007", client).contains("\"007\""));
+        }
+    }
+
+    @Test
+    public void testLimitGrowsAdditivelyAndBacksOffOnFailure() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 4, 1_000, 10, 1_000);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ok", limiter.submit(() -> CompletableFuture.completedFuture("ok")).get());
+        }
+        assertEquals(4L, limiter.counters().get("limit"));
+
+        assertThrows(IOException.class, () -> limiter.call(() -> {
+            throw new IOException("The Census API is throttling requests: 429");
+        }));
+        assertEquals(3L, limiter.counters().get("limit"));
+        assertEquals(1L, limiter.counters().get("drops"));
+        // a second failure within the latency target is the same congestion
+        assertThrows(IOException.class, () -> limiter.call(() -> {
+            throw new IOException("The Census API is throttling requests: 429");
+        }));
+        assertEquals(3L, limiter.counters().get("limit"));
+        assertEquals(1L, limiter.counters().get("drops"));
+        // a failure that is not the API's does not lower the limit
+        assertThrows(IllegalArgumentException.class, () -> limiter.call(() -> {
+            throw new IllegalArgumentException("County name not found");
+        }));
+        assertEquals(3L, limiter.counters().get("limit"));
+    }
+
+    @Test
+    public void testQueuedCallTimesOut() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1_000, 10, 50);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        CompletableFuture<String> first = limiter.submit(() -> running);
+        CompletableFuture<String> second =
+                limiter.submit(() -> CompletableFuture.completedFuture("late"));
+
+        ExecutionException error =
+                assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof AdaptiveLimiter.RejectedException);
+        assertEquals(1L, limiter.counters().get("queue_timeouts"));
+        assertEquals(0L, limiter.counters().get("queued"));
+
+        running.complete("done");
+        assertEquals("done", first.get());
+        assertEquals("next", limiter.call(() -> "next"));
+    }
+}
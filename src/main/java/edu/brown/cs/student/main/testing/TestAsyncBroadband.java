@@ -0,0 +1,155 @@
+package edu.brown.cs.student.main.testing;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHelper;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestAsyncBroadband {
+
+    @Test
+    public void testAsyncRequestMatchesBlockingRequest() throws Exception {
+        try (StubCensusServer stub = StubCensusServer.start(0)) {
+            HttpClient client =
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            BroadbandHelper helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+            helper.initializeStateCodes();
+            BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+
+            Map<String, Object> async = helper
+                    .processBroadbandRequestAsync("Rhode Island", "Kent County", client, cache)
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals("success", async.get("result"));
+            BroadbandRecord kent = (BroadbandRecord) async.get("data");
+            assertEquals("44", kent.state());
+            assertEquals("003", kent.county());
+            int requests = stub.requestCount();
+
+            // the directory and the data are cached now, so the blocking path makes no request
+            Map<String, Object> blocking =
+                    helper.processBroadbandRequest("Rhode Island", "Kent County", client, cache);
+            assertEquals(async, blocking);
+            assertEquals(requests, stub.requestCount());
+        }
+    }
+
+    @Test
+    public void testConcurrentAsyncMissesShareOneFetch() throws Exception {
+        BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+        AtomicInteger fetches = new AtomicInteger();
+        CompletableFuture<String> response = new CompletableFuture<>();
+        BroadbandCache.AsyncFetcher fetcher = (stateCode, county) -> {
+            fetches.incrementAndGet();
+            return response;
+        };
+
+        CompletableFuture<String> first = cache.getOrFetchAsync("44", "003", fetcher);
+        CompletableFuture<String> second = cache.getOrFetchAsync("44", "003", fetcher);
+        assertFalse(first.isDone());
+        response.complete("kent");
+
+        assertEquals("kent", first.get());
+        assertEquals("kent", second.get());
+        assertEquals(1, fetches.get());
+        assertEquals("kent", cache.getData("44", "003"));
+    }
+
+    @Test
+    public void testFailedAsyncFetchIsNotCached() throws Exception {
+        BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+        CompletableFuture<String> failed =
+                cache.getOrFetchAsync("44", "003", (stateCode, county) ->
+                        CompletableFuture.failedFuture(new IOException("Census API unavailable")));
+
+        ExecutionException error = assertThrows(ExecutionException.class, failed::get);
+        assertTrue(error.getCause() instanceof IOException);
+        assertNull(cache.getData("44", "003"));
+        assertEquals("kent", cache.getOrFetchAsync("44", "003", (stateCode, county) ->
+                CompletableFuture.completedFuture("kent")).get());
+    }
+
+    @Test
+    public void testFirstMissPrefetchesTheState() throws Exception {
+        try (StubCensusServer stub = StubCensusServer.start(0)) {
+            HttpClient client =
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            BroadbandHelper helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+            helper.initializeStateCodes();
+            helper.enableStatePrefetch(1, TimeUnit.MINUTES);
+            BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+
+            helper.processBroadbandRequest("Rhode Island", "Kent County", client, cache);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (helper.prefetchCounters().get("prefetched_counties") < 5
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1L, helper.prefetchCounters().get("prefetches"));
+            assertEquals(5L, helper.prefetchCounters().get("prefetched_counties"));
+
+            // the state's other counties are hits now, and the state is not prefetched again
+            int requests = stub.requestCount();
+            Map<String, Object> providence = helper.processBroadbandRequest(
+                    "Rhode Island", "Providence County", client, cache);
+            assertEquals("007", ((BroadbandRecord) providence.get("data")).county());
+            cache.invalidateAll();
+            helper.processBroadbandRequest("Rhode Island", "Newport County", client, cache);
+            assertEquals(requests + 1, stub.requestCount());
+            assertEquals(1L, helper.prefetchCounters().get("prefetches"));
+        }
+    }
+
+    @Test
+    public void testWholeStateIsServedFromTheCache() throws Exception {
+        try (StubCensusServer stub = StubCensusServer.start(50)) {
+            HttpClient client =
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            BroadbandHelper helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+            helper.initializeStateCodes();
+            BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+            int before = stub.requestCount();
+
+            // concurrent requests for the whole state share one fetch
+            CompletableFuture<Map<String, Object>> first =
+                    helper.processBroadbandRequestAsync("Rhode Island", "*", client, cache);
+            CompletableFuture<Map<String, Object>> second =
+                    helper.processBroadbandRequestAsync("Rhode Island", "*", client, cache);
+            assertEquals(5, ((List<?>) first.get(5, TimeUnit.SECONDS).get("data")).size());
+            assertEquals(first.get(), second.get(5, TimeUnit.SECONDS));
+            assertEquals(before + 1, stub.requestCount());
+
+            // and later ones are answered from the county records
+            Map<String, Object> cached =
+                    helper.processBroadbandRequest("Rhode Island", "*", client, cache);
+            assertEquals(first.get(), cached);
+            assertEquals(before + 1, stub.requestCount());
+
+            // a county that is no longer cached brings the whole state back
+            cache.invalidateAll();
+            helper.processBroadbandRequest("Rhode Island", "*", client, cache);
+            assertEquals(before + 2, stub.requestCount());
+
+            // every state is cached under each county's own state, and answered again from there
+            Map<String, Object> everyState =
+                    helper.processBroadbandRequest("*", "*", client, cache);
+            assertEquals(5, ((List<?>) everyState.get("data")).size());
+            assertEquals(everyState, helper.processBroadbandRequest("*", "*", client, cache));
+            assertEquals(before + 3, stub.requestCount());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package edu.brown.cs.student.main.testing;
+
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandBatchHandler;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHelper;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBroadbandBatch {
+
+    /** A request with repeated state and county parameters, without a servlet behind it. */
+    private static class BatchRequest extends Request {
+        private final List<String> states = new ArrayList<>();
+        private final List<String> counties = new ArrayList<>();
+
+        BatchRequest county(String state, String county) {
+            states.add(state);
+            counties.add(county);
+            return this;
+        }
+
+        @Override
+        public String[] queryParamsValues(String queryParam) {
+            List<String> values = queryParam.equals("state") ? states : counties;
+            return values.isEmpty() ? null : values.toArray(new String[0]);
+        }
+    }
+
+    /** A response that only remembers its status. */
+    private static class StatusResponse extends Response {
+        private int status = 200;
+
+        @Override
+        public void status(int statusCode) {
+            status = statusCode;
+        }
+
+        @Override
+        public int status() {
+            return status;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> responses(Object json) throws Exception {
+        Map<String, Object> response = JsonResponses.moshi()
+                .<Map<String, Object>>adapter(
+                        Types.newParameterizedType(Map.class, String.class, Object.class))
+                .fromJson((String) json);
+        assertEquals("success", response.get("result"));
+        return (List<Map<String, Object>>) response.get("responses");
+    }
+
+    @Test
+    public void testMissesOfAStateShareOneRequest() throws Exception {
+        try (StubCensusServer stub = StubCensusServer.start(0)) {
+            HttpClient client =
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            BroadbandHelper helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+            helper.initializeStateCodes();
+            BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+            BroadbandBatchHandler handler = new BroadbandBatchHandler(helper, cache, client);
+            int before = stub.requestCount();
+
+            Object json = handler.handle(new BatchRequest()
+                    .county("Rhode Island", "Kent County")
+                    .county("Rhode Island", "No Such County")
+                    .county("Rhode Island", "Providence County")
+                    .county("Rhode Island", "Newport County"), new StatusResponse());
+            List<Map<String, Object>> responses = responses(json);
+            assertEquals(4, responses.size());
+            assertEquals("Kent County", responses.get(0).get("county"));
+            assertEquals("003", ((Map<?, ?>) responses.get(0).get("data")).get("county"));
+            assertEquals("error", responses.get(1).get("result"));
+            assertEquals("007", ((Map<?, ?>) responses.get(2).get("data")).get("county"));
+            // one request for the county directory and one for every county's data
+            assertEquals(before + 2, stub.requestCount());
+
+            // the state's other counties were cached by the same request
+            responses = responses(handler.handle(new BatchRequest()
+                    .county("Rhode Island", "Bristol County")
+                    .county("Rhode Island", "Washington County"), new StatusResponse()));
+            assertEquals("success", responses.get(0).get("result"));
+            assertEquals("success", responses.get(1).get("result"));
+            assertEquals(before + 2, stub.requestCount());
+        }
+    }
+
+    @Test
+    public void testSlowStatesAndWildcardsGetTheirOwnErrors() throws Exception {
+        try (StubCensusServer stub = StubCensusServer.start(500)) {
+            HttpClient client =
+                    HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            BroadbandHelper helper = new BroadbandHelper(1, TimeUnit.DAYS, stub.base());
+            helper.initializeStateCodes();
+            BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+            BroadbandBatchHandler handler = new BroadbandBatchHandler(helper, cache, client, 100);
+
+            StatusResponse response = new StatusResponse();
+            long start = System.nanoTime();
+            List<Map<String, Object>> responses = responses(handler.handle(new BatchRequest()
+                    .county("Rhode Island", "Providence County")
+                    .county("Rhode Island", "*")
+                    .county("*", "Kent County"), response));
+            // the request does not wait for the county directory, which takes 500 ms
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+            assertEquals(200, response.status());
+            assertEquals("error", responses.get(0).get("result"));
+            assertTrue(((String) responses.get(0).get("message")).contains("100 ms"));
+            assertTrue(((String) responses.get(1).get("message")).contains("wildcard"));
+            assertTrue(((String) responses.get(2).get("message")).contains("wildcard"));
+        }
+    }
+
+    @Test
+    public void testUnpairedParametersAreRejected() throws Exception {
+        BroadbandBatchHandler handler = new BroadbandBatchHandler(
+                new BroadbandHelper(), new BroadbandCache(10, 60, TimeUnit.MINUTES, 10));
+        BatchRequest request = new BatchRequest() {
+            @Override
+            public String[] queryParamsValues(String queryParam) {
+                return queryParam.equals("state") ? new String[] {"Rhode Island"} : null;
+            }
+        };
+        StatusResponse response = new StatusResponse();
+        handler.handle(request, response);
+        assertEquals(400, response.status());
+    }
+}
@@ -0,0 +1,71 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandRecord;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class TestBroadbandRecord {
+  private static final String KENT =
+      "[[\"NAME\",\"S2802_C03_022E\",\"state\",\"county\"],"
+          + "[\"Kent County, Rhode Island\",\"84.1\",\"44\",\"003\"]]";
+
+  @Test
+  public void testParseAndWriteBack() throws Exception {
+    BroadbandRecord kent = BroadbandRecord.parse(KENT);
+    assertEquals(new BroadbandRecord("Kent County, Rhode Island", "44", "003", 84.1), kent);
+    assertEquals(KENT, kent.toCensusJson());
+    assertEquals(kent, BroadbandRecord.parse(kent.toCensusJson()));
+    // the API's whole and tiny percentages come back as it wrote them
+    assertTrue(new BroadbandRecord("Kent", "44", "003", 85).toCensusJson().contains("\"85\""));
+    assertTrue(
+        new BroadbandRecord("Kent", "44", "003", 0.00001).toCensusJson().contains("\"0.00001\""));
+
+    List<BroadbandRecord> state = BroadbandRecord.parseAll(
+        "[[\"NAME\",\"S2802_C03_022E\",\"state\",\"county\"],"
+            + "[\"Kent County, Rhode Island\",\"84.1\",\"44\",\"003\"],"
+            + "[\"Newport County, Rhode Island\",null,\"44\",\"005\"]]");
+    assertEquals(2, state.size());
+    assertTrue(Double.isNaN(state.get(1).percentage()));
+
+    // county codes repeat across states, so a response for every state keeps each of them
+    List<BroadbandRecord> states = BroadbandRecord.parseAll(
+        "[[\"NAME\",\"S2802_C03_022E\",\"state\",\"county\"],"
+            + "[\"Autauga County, Alabama\",\"80\",\"01\",\"001\"],"
+            + "[\"Bristol County, Rhode Island\",\"88\",\"44\",\"001\"]]");
+    assertEquals(List.of("01", "44"), List.of(states.get(0).state(), states.get(1).state()));
+    assertThrows(IOException.class, () -> BroadbandRecord.parse("[[\"NAME\"],[\"Kent\"]]"));
+  }
+
+  @Test
+  public void testRecordIsWrittenAsAnObject() {
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("data", new BroadbandRecord("Newport County, Rhode Island", "44", "005", 0.0 / 0));
+    assertEquals(
+        "{\"data\":{\"name\":\"Newport County, Rhode Island\",\"state\":\"44\","
+            + "\"county\":\"005\",\"percentage\":null}}",
+        JsonResponses.toJson(response));
+  }
+
+  @Test
+  public void testCachedRecordsTakeLessRoomThanText() throws Exception {
+    BroadbandCache text = BroadbandCache.withMemoryBudget(1, 1, TimeUnit.MINUTES, 1 << 20);
+    BroadbandCache records = BroadbandCache.withMemoryBudget(1, 1, TimeUnit.MINUTES, 1 << 20);
+    text.putData("44", "003", KENT);
+    records.putRecord("44", "003", BroadbandRecord.parse(KENT));
+
+    assertTrue(records.counters().get("estimated_bytes") < text.counters().get("estimated_bytes"));
+    // the text view of a record is still the Census table
+    assertEquals(BroadbandRecord.parse(KENT), BroadbandRecord.parse(records.getData("44", "003")));
+    assertEquals(BroadbandRecord.parse(KENT), text.getRecord("44", "003"));
+  }
+}
@@ -1,6 +1,13 @@
 package edu.brown.cs.student.main.testing;
 
+import edu.brown.cs.student.main.parser.CsvTable;
 import edu.brown.cs.student.main.server.CSVHolder;
+import edu.brown.cs.student.main.server.Metrics.ServerMetrics;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.testng.annotations.Test;
 import org.testng.Assert;
 
@@ -16,12 +23,12 @@ public class TestCSVHolder {
   }
 
   @Test
-  public void testLoadAndGetCSVFilePath() {
+  public void testLoadAndGetCSVFilePath() throws Exception {
     CSVHolder csvHolder = CSVHolder.getInstance();
-    String testPath = "path/to/test.csv";
+    String testPath = "src/main/java/edu/brown/cs/student/main/data/file.csv";
     csvHolder.loadCSV(testPath);
     Assert.assertEquals(testPath, csvHolder.getCSVFilePath());
-    String newTestPath = "different_path/to/test.csv";
+    String newTestPath = "test.csv";
     csvHolder.loadCSV(newTestPath);
     Assert.assertEquals(newTestPath, csvHolder.getCSVFilePath());
     Assert.assertNotEquals(testPath, csvHolder.getCSVFilePath());
@@ -34,7 +41,25 @@ public class TestCSVHolder {
   }
 
   @Test
-  public void testIsCSVLoaded() {
+  public void testLoadParsesTableOnce() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    csvHolder.loadCSV("src/main/java/edu/brown/cs/student/main/data/file.csv");
+    CsvTable table = csvHolder.getCSVTable();
+    Assert.assertEquals(table.getRows().get(0).get(0), "City/Town");
+    Assert.assertEquals(table.getRows().get(1).get(1), "74,489.00");
+    Assert.assertSame(table, csvHolder.getCSVTable());
+    csvHolder.unloadCSV();
+    assertThrows(IllegalStateException.class, csvHolder::getCSVTable);
+  }
+
+  @Test
+  public void testLoadMissingFile() {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    assertThrows(IOException.class, () -> csvHolder.loadCSV("path/to/missing.csv"));
+  }
+
+  @Test
+  public void testIsCSVLoaded() throws Exception {
     CSVHolder csvHolder = CSVHolder.getInstance();
     String testPath = "src/main/java/edu/brown/cs/student/main/data/file.csv";
     Assert.assertFalse(csvHolder.isCSVLoaded());
@@ -49,6 +74,128 @@ public class TestCSVHolder {
     assertEquals("filepath cannot be null", exception.getMessage());
   }
 
+  @Test
+  public void testBackgroundLoadKeepsServingOldTable() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    csvHolder.loadCSV("src/main/java/edu/brown/cs/student/main/data/file.csv");
+    int oldSize = csvHolder.getCSVTable().size();
+    int newSize = CsvTable.fromFile("test.csv").size();
+    AtomicBoolean sawOtherSize = new AtomicBoolean(false);
+    AtomicBoolean loading = new AtomicBoolean(true);
+    Thread reader =
+        new Thread(
+            () -> {
+              while (loading.get()) {
+                int size = csvHolder.getCSVTable().size();
+                if (size != oldSize && size != newSize) {
+                  sawOtherSize.set(true);
+                }
+              }
+            });
+    reader.start();
+    CompletableFuture<Void> load = csvHolder.loadCSVInBackground("test.csv", true);
+    load.join();
+    loading.set(false);
+    reader.join();
+    Assert.assertFalse(sawOtherSize.get());
+    Assert.assertEquals(csvHolder.getCSVFilePath(), "test.csv");
+    Assert.assertNotNull(csvHolder.getCSVTable().getIndex());
+    csvHolder.unloadCSV();
+  }
+
+  @Test
+  public void testBackgroundLoadFailureKeepsOldTable() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    csvHolder.loadCSV("test.csv");
+    CompletableFuture<Void> load = csvHolder.loadCSVInBackground("path/to/missing.csv", false);
+    CompletionException thrown = assertThrows(CompletionException.class, load::join);
+    Assert.assertTrue(thrown.getCause() instanceof IOException);
+    Assert.assertEquals(csvHolder.getCSVFilePath(), "test.csv");
+    // the next request is told the load failed, and later ones get the old table
+    IllegalStateException reported =
+        assertThrows(IllegalStateException.class, csvHolder::getCSVTable);
+    Assert.assertTrue(reported.getMessage().contains("path/to/missing.csv"));
+    Assert.assertNotNull(csvHolder.getCSVTable());
+    csvHolder.unloadCSV();
+  }
+
+  @Test
+  public void testOlderLoadDoesNotReplaceNewerUnload() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    CompletableFuture<Void> load = csvHolder.loadCSVInBackground("test.csv", false);
+    csvHolder.unloadCSV();
+    load.join();
+    // the load was requested first, so whichever finishes last, nothing stays loaded
+    Assert.assertFalse(csvHolder.isCSVLoaded());
+  }
+
+  @Test
+  public void testNamedDatasetsStayLoaded() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    csvHolder.loadCSV("income", "src/main/java/edu/brown/cs/student/main/data/file.csv", false);
+    csvHolder.loadCSV("test", "test.csv", false);
+    CsvTable income = csvHolder.getCSVTable("income");
+    Assert.assertEquals(income.getRows().get(0).get(0), "City/Town");
+    Assert.assertNotSame(income, csvHolder.getCSVTable("test"));
+    Assert.assertSame(income, csvHolder.getCSVTable("income"));
+    Assert.assertEquals(csvHolder.getDatasetNames().size(), 2);
+    Assert.assertFalse(csvHolder.isCSVLoaded());
+    csvHolder.unloadCSV("income");
+    assertThrows(IllegalStateException.class, () -> csvHolder.getCSVTable("income"));
+    Assert.assertTrue(csvHolder.isCSVLoaded("test"));
+    csvHolder.unloadCSV("test");
+  }
+
+  @Test
+  public void testLeastRecentlyUsedDatasetIsEvicted() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    String path = "src/main/java/edu/brown/cs/student/main/data/file.csv";
+    long tableBytes = CsvTable.fromFile(path).estimatedBytes();
+    try {
+      // room for two tables but not three
+      csvHolder.setMemoryBudget(tableBytes * 5 / 2);
+      csvHolder.loadCSV("first", path, false);
+      csvHolder.loadCSV("second", path, false);
+      csvHolder.getCSVTable("first");
+      csvHolder.loadCSV("third", path, false);
+      Assert.assertTrue(csvHolder.isCSVLoaded("first"));
+      Assert.assertFalse(csvHolder.isCSVLoaded("second"));
+      Assert.assertTrue(csvHolder.isCSVLoaded("third"));
+
+      csvHolder.setMemoryBudget(tableBytes / 2);
+      assertThrows(IllegalStateException.class, () -> csvHolder.loadCSV("big", path, false));
+      // the rejected table is a failed load, not the dataset's last load
+      Map<?, ?> loads = (Map<?, ?>) ServerMetrics.getInstance().snapshot().get("csv");
+      Assert.assertFalse(((Map<?, ?>) loads.get("last_load")).containsKey("big"));
+    } finally {
+      csvHolder.setMemoryBudget(CSVHolder.DEFAULT_MEMORY_BUDGET);
+      csvHolder.unloadCSV("first");
+      csvHolder.unloadCSV("third");
+    }
+  }
+
+  @Test
+  public void testTablesUnderOneKibibyteAreEvictedToo() throws Exception {
+    CSVHolder csvHolder = CSVHolder.getInstance();
+    Assert.assertTrue(CsvTable.fromFile("test.csv").estimatedBytes() < 1024);
+    try {
+      // room for two of the smallest weights
+      csvHolder.setMemoryBudget(2048);
+      csvHolder.loadCSV("first", "test.csv", false);
+      csvHolder.loadCSV("second", "test.csv", false);
+      csvHolder.unloadCSV("second");
+      csvHolder.loadCSV("third", "test.csv", false);
+      csvHolder.loadCSV("fourth", "test.csv", false);
+      Assert.assertFalse(csvHolder.isCSVLoaded("first"));
+      Assert.assertTrue(csvHolder.isCSVLoaded("third"));
+      Assert.assertTrue(csvHolder.isCSVLoaded("fourth"));
+    } finally {
+      csvHolder.setMemoryBudget(CSVHolder.DEFAULT_MEMORY_BUDGET);
+      csvHolder.unloadCSV("third");
+      csvHolder.unloadCSV("fourth");
+    }
+  }
+
   @Test
   public void testIllegalFileAccess(){
 
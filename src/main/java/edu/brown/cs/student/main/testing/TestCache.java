@@ -4,7 +4,16 @@ import com.google.common.cache.CacheStats;
 import edu.brown.cs.student.main.server.Caching.BroadbandCache;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -139,4 +148,132 @@ public class TestCache {
 
         assertEquals(key1, key2);
     }
+
+    @Test
+    public void testGetOrFetchStoresFetchedData() throws Exception {
+        AtomicInteger fetches = new AtomicInteger();
+        BroadbandCache.Fetcher fetcher = (stateCode, county) -> {
+            fetches.incrementAndGet();
+            return "{\"data\":\"" + stateCode + "-" + county + "\"}";
+        };
+
+        assertEquals("{\"data\":\"44-003\"}", cache.getOrFetch("44", "003", fetcher));
+        assertEquals("{\"data\":\"44-003\"}", cache.getOrFetch("44", "003", fetcher));
+        assertEquals("{\"data\":\"44-003\"}", cache.getData("44", "003"));
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.stats().loadSuccessCount());
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneFetch() throws Exception {
+        int requests = 8;
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        BroadbandCache.Fetcher slowFetcher = (stateCode, county) -> {
+            fetches.incrementAndGet();
+            Thread.sleep(200);
+            return "{\"data\":\"sample data\"}";
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getOrFetch("44", "003", slowFetcher);
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("{\"data\":\"sample data\"}", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.stats().loadCount());
+    }
+
+    @Test
+    public void testFailedFetchIsNotCached() throws Exception {
+        assertThrows(IOException.class, () -> cache.getOrFetch("44", "003", (stateCode, county) -> {
+            throw new IOException("Census API unavailable");
+        }));
+        assertThrows(NullPointerException.class, () -> cache.getOrFetch("44", "003", (stateCode, county) -> ""));
+        assertNull(cache.getData("44", "003"));
+        assertEquals("data", cache.getOrFetch("44", "003", (stateCode, county) -> "data"));
+    }
+
+    @Test
+    public void testStaleDataIsServedWhileOneRefreshRuns() throws Exception {
+        BroadbandCache refreshing = new BroadbandCache(100, 10_000, TimeUnit.MILLISECONDS, 10);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        BroadbandCache.Fetcher fetcher = (stateCode, county) -> {
+            int fetch = fetches.incrementAndGet();
+            if (fetch > 1) {
+                release.await();
+            }
+            return "version " + fetch;
+        };
+
+        assertEquals("version 1", refreshing.getOrFetch("44", "003", fetcher));
+        Thread.sleep(200);
+        // past the soft TTL: the old data comes back at once, while a single refresh waits
+        for (int i = 0; i < 5; i++) {
+            assertEquals("version 1", refreshing.getOrFetch("44", "003", fetcher));
+        }
+        assertEquals(1L, refreshing.counters().get("refreshes_running"));
+        for (int i = 0; i < 50 && fetches.get() < 2; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, fetches.get());
+
+        release.countDown();
+        for (int i = 0; i < 50 && refreshing.counters().get("refreshes") == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals("version 2", refreshing.getOrFetch("44", "003", fetcher));
+        assertEquals(5L, refreshing.counters().get("stale_hits"));
+        assertEquals(1L, refreshing.counters().get("refreshes"));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsStaleDataUntilHardTtl() throws Exception {
+        BroadbandCache refreshing = new BroadbandCache(50, 400, TimeUnit.MILLISECONDS, 10);
+        refreshing.getOrFetch("44", "003", (stateCode, county) -> "old data");
+        Thread.sleep(100);
+        BroadbandCache.Fetcher failing = (stateCode, county) -> {
+            throw new IOException("Census API unavailable");
+        };
+        assertEquals("old data", refreshing.getOrFetch("44", "003", failing));
+        for (int i = 0; i < 50 && refreshing.counters().get("refresh_failures") == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, refreshing.counters().get("refresh_failures"));
+
+        Thread.sleep(400);
+        // past the hard TTL the caller waits for the fetch, and sees it fail
+        assertThrows(IOException.class, () -> refreshing.getOrFetch("44", "003", failing));
+    }
+
+    @Test
+    public void testMemoryBudgetEvictsByEstimatedBytes() {
+        BroadbandCache budgeted = BroadbandCache.withMemoryBudget(1, 1, TimeUnit.MINUTES, 8192);
+        String county = "x".repeat(200);
+        for (int i = 0; i < 100; i++) {
+            budgeted.putData("44", String.format("%03d", i), county);
+        }
+        Map<String, Long> counters = budgeted.counters();
+        assertTrue(counters.get("estimated_bytes") <= 8192);
+        assertTrue(counters.get("size_evictions") > 0);
+        assertEquals(100L, counters.get("entries") + counters.get("size_evictions"));
+        assertEquals(county, budgeted.getData("44", "099"));
+
+        // one response for every county of a state takes the room of many single counties
+        budgeted.putData("44", "*", "x".repeat(1500));
+        assertTrue(budgeted.counters().get("entries") < counters.get("entries"));
+        assertThrows(IllegalArgumentException.class,
+            () -> BroadbandCache.withMemoryBudget(1, 1, TimeUnit.MINUTES, 0));
+    }
 }
@@ -0,0 +1,65 @@
+package edu.brown.cs.student.main.testing;
+
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestCountyDirectory {
+    private static final String RHODE_ISLAND =
+            "[[\"NAME\",\"state\",\"county\"],\n"
+                    + "[\"Bristol County, Rhode Island\",\"44\",\"001\"],\n"
+                    + "[\"Kent County, Rhode Island\",\"44\",\"003\"],\n"
+                    + "[\"Providence County, Rhode Island\",\"44\",\"007\"]]";
+
+    @Test
+    public void testDirectoryIsFetchedOncePerState() throws Exception {
+        StubHttpClient client = new StubHttpClient().answer("in=state:44", RHODE_ISLAND);
+        BroadbandHelper helper = new BroadbandHelper();
+
+        assertEquals("003", helper.getCountyCode("44", "Kent County", client));
+        assertEquals("007", helper.getCountyCode("44", "providence county", client));
+        assertEquals("001", helper.getCountyCode("44", "Bristol County", client));
+        assertEquals(1, client.requestCount());
+        assertEquals(2, helper.countyDirectoryStats().hitCount());
+    }
+
+    @Test
+    public void testUnknownCountyAndRegexCharacters() throws Exception {
+        StubHttpClient client = new StubHttpClient().answer("in=state:44", RHODE_ISLAND);
+        BroadbandHelper helper = new BroadbandHelper();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> helper.getCountyCode("44", "Kings County", client));
+        // county names are looked up, not spliced into a pattern
+        assertThrows(IllegalArgumentException.class,
+                () -> helper.getCountyCode("44", ".*", client));
+        assertEquals("*", helper.getCountyCode("44", "*", client));
+        assertEquals(1, client.requestCount());
+    }
+
+    @Test
+    public void testDirectoryIsFetchedAgainAfterTtl() throws Exception {
+        StubHttpClient client = new StubHttpClient().answer("in=state:44", RHODE_ISLAND);
+        BroadbandHelper helper = new BroadbandHelper(50, TimeUnit.MILLISECONDS);
+
+        helper.getCountyCode("44", "Kent County", client);
+        Thread.sleep(100);
+        helper.getCountyCode("44", "Kent County", client);
+        assertEquals(2, client.requestCount());
+    }
+
+    @Test
+    public void testFailedFetchIsRetried() throws Exception {
+        StubHttpClient broken = new StubHttpClient().answer("in=state:44", "<html>error</html>");
+        BroadbandHelper helper = new BroadbandHelper();
+
+        assertThrows(IOException.class, () -> helper.getCountyCode("44", "Kent County", broken));
+        StubHttpClient working = new StubHttpClient().answer("in=state:44", RHODE_ISLAND);
+        assertEquals("003", helper.getCountyCode("44", "Kent County", working));
+    }
+}
@@ -0,0 +1,63 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.brown.cs.student.main.parser.CsvColumn;
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.Search;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestCsvTable {
+
+  @Test
+  public void testRepeatedValuesShareDictionaryEntries() {
+    List<List<String>> rows = new ArrayList<>();
+    rows.add(List.of("County", "State"));
+    for (int i = 0; i < 1000; i++) {
+      rows.add(List.of("County " + (i % 5), i % 2 == 0 ? "Rhode Island" : "New York"));
+    }
+    CsvTable table = CsvTable.fromRows(rows);
+    assertEquals(1001, table.size());
+    assertEquals(6, table.getColumn(0).distinctCount());
+    assertEquals(3, table.getColumn(1).distinctCount());
+    assertEquals(rows, table.getRows());
+  }
+
+  @Test
+  public void testRaggedRowsKeepTheirWidth() {
+    CsvTable table =
+        CsvTable.fromRows(List.of(List.of("a", "b", "c"), List.of("d"), List.of("e", "f", "g")));
+    assertEquals(3, table.columnCount());
+    assertEquals(List.of("d"), table.getRow(1));
+    assertEquals(CsvColumn.ABSENT, table.getColumn(2).code(1));
+    assertNull(table.getColumn(2).get(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> table.getRow(1).get(1));
+    assertEquals(2, table.getSearchableRows(true).size());
+    assertEquals(1, table.getMinimumWidth(false));
+  }
+
+  @Test
+  public void testColumnSearchOverCodes() throws Exception {
+    CsvTable table =
+        CsvTable.fromFile("src/main/java/edu/brown/cs/student/main/data/file.csv");
+    List<List<String>> found = new Search(table, "Bristol", "City/Town", true).searchFor();
+    assertEquals(List.of(List.of("Bristol", "80,727.00", "115,740.00", "42,658.00")), found);
+    List<List<String>> anyColumn = new Search(table, "80,727.00", "", true).searchFor();
+    assertEquals(found, anyColumn);
+    assertTrue(table.estimatedBytes() > 0);
+  }
+
+  @Test
+  public void testParallelLoadMatchesSequentialLoad() throws Exception {
+    String file = "src/main/java/edu/brown/cs/student/main/data/file.csv";
+    CsvTable sequential = CsvTable.fromFile(file);
+    CsvTable parallel = CsvTable.fromFileInParallel(file, true);
+    assertEquals(sequential.getRows(), parallel.getRows());
+    assertEquals(sequential.columnCount(), parallel.columnCount());
+  }
+}
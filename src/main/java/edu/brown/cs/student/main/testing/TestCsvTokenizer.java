@@ -0,0 +1,72 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import edu.brown.cs.student.main.parser.CsvParser;
+import edu.brown.cs.student.main.parser.CsvTokenizer;
+import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestCsvTokenizer {
+
+  @Test
+  public void testPlainRows() throws Exception {
+    CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("a,b,c\nd,e,f\n"));
+    assertEquals(List.of("a", "b", "c"), tokenizer.nextRow());
+    assertEquals(List.of("d", "e", "f"), tokenizer.nextRow());
+    assertNull(tokenizer.nextRow());
+  }
+
+  @Test
+  public void testQuotedFieldsAndEscapedQuotes() throws Exception {
+    CsvTokenizer tokenizer =
+        new CsvTokenizer(new StringReader("Bristol,\"80,727.00\",\"say \"\"hi\"\"\"\n"));
+    assertEquals(List.of("Bristol", "80,727.00", "say \"hi\""), tokenizer.nextRow());
+    assertNull(tokenizer.nextRow());
+  }
+
+  @Test
+  public void testEmbeddedNewlineAndLineEndings() throws Exception {
+    CsvTokenizer tokenizer =
+        new CsvTokenizer(new StringReader("\"two\nlines\",x\r\ny,\r\nlast"));
+    assertEquals(List.of("two\nlines", "x"), tokenizer.nextRow());
+    assertEquals(List.of("y", ""), tokenizer.nextRow());
+    assertEquals(List.of("last"), tokenizer.nextRow());
+    assertNull(tokenizer.nextRow());
+  }
+
+  @Test
+  public void testFieldsSpanningBufferRefills() throws Exception {
+    String longValue = "x".repeat(200_000);
+    String csv = longValue + ",\"" + longValue + "\"\"" + "\"\n";
+    CsvTokenizer tokenizer = new CsvTokenizer(trickle(csv));
+    List<String> row = tokenizer.nextRow();
+    assertEquals(2, row.size());
+    assertEquals(longValue, row.get(0));
+    assertEquals(longValue + "\"", row.get(1));
+    assertNull(tokenizer.nextRow());
+  }
+
+  @Test
+  public void testParserSkipsMalformedRowsWithHeaders() throws Exception {
+    String csv = "name,value\nok,1\nbroken\n\"quoted, name\",2\n";
+    List<List<String>> rows =
+        new CsvParser<>(new StringReader(csv), new StandardObjectCreator(), true).parse();
+    assertEquals(3, rows.size());
+    assertEquals(List.of("quoted, name", "2"), rows.get(2));
+  }
+
+  /** Wraps the text in a reader that returns at most a few thousand chars per read. */
+  private static Reader trickle(String text) {
+    return new StringReader(text) {
+      @Override
+      public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+        return super.read(cbuf, off, Math.min(len, 4093));
+      }
+    };
+  }
+}
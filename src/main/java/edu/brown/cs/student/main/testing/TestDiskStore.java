@@ -0,0 +1,158 @@
+package edu.brown.cs.student.main.testing;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Caching.BroadbandDiskStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestDiskStore {
+    private static final BroadbandCache.Fetcher UNREACHABLE = (stateCode, county) -> {
+        throw new IOException("Census API unavailable");
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsSurviveReopening() throws Exception {
+        Path file = directory.resolve("broadband.log");
+        long now = System.currentTimeMillis();
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            store.append("44-003", "old data", now - 1000);
+            store.append("44-007", "providence", now);
+            store.append("44-003", "new data", now);
+        }
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            assertEquals(2, store.size());
+            assertEquals(new BroadbandDiskStore.Stored("new data", now), store.read("44-003"));
+            assertEquals("providence", store.read("44-007").data());
+            assertNull(store.read("44-001"));
+        }
+    }
+
+    @Test
+    public void testTornTailIsDroppedOnOpen() throws Exception {
+        Path file = directory.resolve("broadband.log");
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            store.append("44-003", "kent", 1);
+            store.append("44-007", "providence", 2);
+        }
+        // as if the server died while writing the second record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            assertEquals(List.of("44-003"), store.keysByAge());
+            assertEquals(store.fileBytes(), Files.size(file));
+            store.append("44-007", "providence", 3);
+        }
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            assertEquals("providence", store.read("44-007").data());
+        }
+    }
+
+    @Test
+    public void testCompactionDropsOldAndReplacedRecords() throws Exception {
+        Path file = directory.resolve("broadband.log");
+        long now = System.currentTimeMillis();
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                store.append("44-003", "kent " + i, now);
+            }
+            store.append("44-001", "bristol", now - TimeUnit.HOURS.toMillis(2));
+            long before = store.fileBytes();
+
+            store.compact(now - TimeUnit.HOURS.toMillis(1));
+            assertEquals(List.of("44-003"), store.keysByAge());
+            assertTrue(store.fileBytes() * 5 < before);
+            assertEquals(store.fileBytes(), Files.size(file));
+            assertEquals("kent 9", store.read("44-003").data());
+        }
+    }
+
+    @Test
+    public void testFailedCompactionKeepsTheOldFile() throws Exception {
+        Path file = directory.resolve("broadband.log");
+        // a directory in the way of the rewritten file
+        Files.createDirectories(directory.resolve("broadband.log.compact").resolve("busy"));
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                store.append("44-003", "kent " + i, i);
+            }
+            long before = store.fileBytes();
+
+            assertThrows(IOException.class, () -> store.compact(0));
+            assertEquals(before, store.fileBytes());
+            assertEquals("kent 9", store.read("44-003").data());
+            store.append("44-007", "providence", 10);
+            assertEquals("providence", store.read("44-007").data());
+        }
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            assertEquals(List.of("44-003", "44-007"), store.keysByAge());
+        }
+    }
+
+    @Test
+    public void testAppendsKeepTheFileBounded() throws Exception {
+        Path file = directory.resolve("broadband.log");
+        String data = "x".repeat(4096);
+        long bound = BroadbandDiskStore.MIN_REWRITE_BYTES + 2 * data.length();
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            // far more than the rewrite threshold, all for the same two keys; the rewrites run
+            // in the background, so every append must still be readable while they do
+            for (int i = 0; i < 1000; i++) {
+                String key = i % 2 == 0 ? "44-003" : "44-007";
+                store.append(key, data + i, i);
+                assertEquals(data + i, store.read(key).data());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (store.fileBytes() >= bound && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(store.fileBytes() < bound);
+            assertEquals(0, store.rewriteFailures());
+            assertEquals(store.fileBytes(), Files.size(file));
+            assertEquals(data + 998, store.read("44-003").data());
+        }
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            assertEquals(data + 999, store.read("44-007").data());
+        }
+    }
+
+    @Test
+    public void testRestartedCacheServesFromDisk() throws Exception {
+        Path file = directory.resolve("broadband.log");
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+            cache.attachDiskStore(store);
+            cache.getOrFetch("44", "003", (stateCode, county) -> "kent");
+            cache.getOrFetch("44", "007", (stateCode, county) -> "providence");
+        }
+
+        // a restart with room for one entry: the other is found on disk on its miss
+        try (BroadbandDiskStore store = BroadbandDiskStore.open(file)) {
+            BroadbandCache restarted = new BroadbandCache(10, 60, TimeUnit.MINUTES, 1);
+            assertEquals(2, restarted.attachDiskStore(store));
+            assertEquals("providence", restarted.getData("44", "007"));
+            assertNull(restarted.getData("44", "003"));
+            assertEquals("kent", restarted.getOrFetch("44", "003", UNREACHABLE));
+            assertEquals(1L, restarted.counters().get("disk_hits"));
+
+            restarted.invalidateAll();
+            assertEquals(0, store.size());
+        }
+    }
+}
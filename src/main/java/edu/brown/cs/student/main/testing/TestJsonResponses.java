@@ -0,0 +1,59 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import edu.brown.cs.student.main.server.Endpoints.JsonResponses;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class TestJsonResponses {
+  @Test
+  public void testRowsRoundTrip() throws Exception {
+    List<List<String>> rows =
+        List.of(
+            List.of("Town", "Income"),
+            List.of("Providence", "\"42,000\""),
+            List.of(),
+            Arrays.asList("null cell", null));
+    String json = JsonResponses.rows().toJson(rows);
+    assertEquals(
+        "[[\"Town\",\"Income\"],[\"Providence\",\"\\\"42,000\\\"\"],[],[\"null cell\",null]]",
+        json);
+    assertEquals(rows, JsonResponses.rows().fromJson(json));
+  }
+
+  @Test
+  public void testRowsMatchMoshiCollectionAdapter() throws Exception {
+    List<List<String>> rows = List.of(List.of("a\nb", "é", "\\"), List.of("x"));
+    JsonAdapter<List<List<String>>> reflective =
+        new Moshi.Builder().build().adapter(JsonResponses.ROWS_TYPE);
+    assertEquals(reflective.toJson(rows), JsonResponses.rows().toJson(rows));
+  }
+
+  @Test
+  public void testSharedMoshiUsesRowsAdapter() {
+    assertSame(
+        JsonResponses.rows(),
+        JsonResponses.moshi()
+            .adapter(
+                Types.newParameterizedType(
+                    List.class, Types.newParameterizedType(List.class, String.class))));
+  }
+
+  @Test
+  public void testMapResponseKeepsEscapedQuotes() {
+    Map<String, Object> responseMap = new LinkedHashMap<>();
+    responseMap.put("result", "error_bad_request");
+    responseMap.put("message", "Column \"Town\" not found");
+    assertEquals(
+        "{\"result\":\"error_bad_request\",\"message\":\"Column \\\"Town\\\" not found\"}",
+        JsonResponses.toJson(responseMap));
+  }
+}
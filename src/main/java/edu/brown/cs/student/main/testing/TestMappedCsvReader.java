@@ -0,0 +1,115 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs.student.main.parser.CsvParser;
+import edu.brown.cs.student.main.parser.MappedCsvReader;
+import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestMappedCsvReader {
+  @TempDir Path tempDir;
+
+  private Path write(String csv) throws IOException {
+    Path file = tempDir.resolve("mapped.csv");
+    Files.writeString(file, csv, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  @Test
+  public void testQuotingAndLineEndings() throws Exception {
+    Path file =
+        write("Bristol,\"80,727.00\",\"say \"\"hi\"\"\"\r\n\"two\nlines\",x\ry,\n\"é\",last");
+    try (MappedCsvReader reader = new MappedCsvReader(file)) {
+      assertEquals(List.of("Bristol", "80,727.00", "say \"hi\""), reader.nextRow());
+      assertEquals(List.of("two\nlines", "x"), reader.nextRow());
+      assertEquals(List.of("y", ""), reader.nextRow());
+      assertEquals(List.of("é", "last"), reader.nextRow());
+      assertNull(reader.nextRow());
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    try (MappedCsvReader reader = new MappedCsvReader(write(""))) {
+      assertNull(reader.nextRow());
+    }
+  }
+
+  @Test
+  public void testFieldsAreDecodedLazily() throws Exception {
+    try (MappedCsvReader reader = new MappedCsvReader(write("\"a,b\",cd\n"))) {
+      MappedCsvReader.MappedRow row = reader.nextRow();
+      assertEquals(2, row.size());
+      assertEquals(5, row.byteLength(0));
+      assertEquals(2, row.byteLength(1));
+      assertEquals("a,b", row.get(0));
+    }
+  }
+
+  @Test
+  public void testRowsCrossingWindowsAreRemapped() throws Exception {
+    String csv = "alpha,\"quoted\nvalue\",gamma\r\nbeta,delta,\"x\"\"y\"\n" + "z".repeat(40) + "\n";
+    try (MappedCsvReader reader = new MappedCsvReader(write(csv), 0, -1, 48)) {
+      assertEquals(List.of("alpha", "quoted\nvalue", "gamma"), reader.nextRow());
+      assertEquals(List.of("beta", "delta", "x\"y"), reader.nextRow());
+      assertEquals(List.of("z".repeat(40)), reader.nextRow());
+      assertNull(reader.nextRow());
+    }
+  }
+
+  @Test
+  public void testRowLargerThanWindow() throws Exception {
+    try (MappedCsvReader reader = new MappedCsvReader(write("x".repeat(100) + "\n"), 0, -1, 32)) {
+      assertThrows(IOException.class, reader::nextRow);
+    }
+  }
+
+  @Test
+  public void testMatchesTokenizer() throws Exception {
+    Random random = new Random(320);
+    StringBuilder csv = new StringBuilder();
+    for (int r = 0; r < 500; r++) {
+      int width = 1 + random.nextInt(6);
+      for (int c = 0; c < width; c++) {
+        if (c > 0) {
+          csv.append(',');
+        }
+        switch (random.nextInt(4)) {
+          case 0 -> csv.append('"').append(random.nextInt(100)).append(",\"\"\n\"");
+          case 1 -> csv.append("plain").append(random.nextInt(100));
+          case 2 -> csv.append("\"ü").append(random.nextInt(100)).append('"');
+          default -> { } // empty field
+        }
+      }
+      csv.append(random.nextBoolean() ? "\n" : "\r\n");
+    }
+    List<List<String>> expected =
+        new CsvParser<>(new StringReader(csv.toString()), new StandardObjectCreator(), false)
+            .parse();
+    Path file = write(csv.toString());
+    assertEquals(expected, new CsvParser<>(file, new StandardObjectCreator(), false).parse());
+    List<List<String>> windowed =
+        new CsvParser<>(new MappedCsvReader(file, 0, -1, 256), new StandardObjectCreator(), false)
+            .parse();
+    assertEquals(expected, windowed);
+  }
+
+  @Test
+  public void testParserSkipsMalformedRowsWithHeaders() throws Exception {
+    Path file = write("name,value\nok,1\nbroken\n\"quoted, name\",2\n");
+    List<List<String>> rows = new CsvParser<>(file, new StandardObjectCreator(), true).parse();
+    assertEquals(3, rows.size());
+    assertEquals(List.of("quoted, name", "2"), rows.get(2));
+  }
+}
@@ -0,0 +1,100 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.brown.cs.student.main.server.Metrics.LatencyHistogram;
+import edu.brown.cs.student.main.server.Metrics.ServerMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class TestMetrics {
+  private static final long NANOS_PER_MICRO = 1000;
+
+  @Test
+  public void testPercentilesWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Random random = new Random(320);
+    List<Long> values = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      long micros = (long) Math.exp(random.nextDouble() * 16);
+      values.add(micros);
+      histogram.recordNanos(micros * NANOS_PER_MICRO);
+    }
+    values.sort(null);
+    for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+      long exact = values.get((int) Math.ceil(percentile / 100 * values.size()) - 1);
+      long reported = histogram.percentileMicros(percentile);
+      assertTrue(reported >= exact, percentile + ": " + reported + " < " + exact);
+      assertTrue(reported <= exact + exact / 16, percentile + ": " + reported + " >> " + exact);
+    }
+    assertEquals(10_000, histogram.getCount());
+    assertEquals(0, new LatencyHistogram().percentileMicros(99));
+  }
+
+  @Test
+  public void testConcurrentRecordingKeepsEveryValue() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 25_000; i++) {
+                  histogram.recordNanos(i * NANOS_PER_MICRO);
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(100_000, histogram.getCount());
+    assertEquals(24_999, histogram.percentileMicros(100));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSnapshotCountsRoutesLoadsAndCaches() {
+    ServerMetrics metrics = new ServerMetrics();
+    metrics.registerRoute("/searchcsv");
+    metrics.recordRequest("/searchcsv", 200, 2_000_000);
+    metrics.recordRequest("/searchcsv", 400, 1_000_000);
+    metrics.recordRequest("/searchcsv", 500, 3_000_000);
+    metrics.recordRequest("/no-such-route", 404, 1_000_000);
+    metrics.recordLoad("default", "data/file.csv", 41, 5_000_000);
+    metrics.recordLoadFailure();
+    Cache<String, String> cache = CacheBuilder.newBuilder().recordStats().build();
+    cache.put("44-003", "data");
+    cache.getIfPresent("44-003");
+    cache.getIfPresent("44-005");
+    metrics.registerCache("broadband", cache::stats);
+
+    Map<String, Object> snapshot = metrics.snapshot();
+    Map<String, Object> routes = (Map<String, Object>) snapshot.get("routes");
+    Map<String, Object> search = (Map<String, Object>) routes.get("/searchcsv");
+    assertEquals(3L, search.get("requests"));
+    assertEquals(1L, search.get("client_errors"));
+    assertEquals(1L, search.get("server_errors"));
+    Map<String, Object> latency = (Map<String, Object>) search.get("latency");
+    assertEquals(3.0, (double) latency.get("max_ms"), 0.1);
+    Map<String, Object> unmatched = (Map<String, Object>) routes.get(ServerMetrics.UNMATCHED_ROUTE);
+    assertEquals(1L, unmatched.get("requests"));
+
+    Map<String, Object> csv = (Map<String, Object>) snapshot.get("csv");
+    assertEquals(1L, csv.get("loads"));
+    assertEquals(1L, csv.get("failures"));
+    Map<String, Object> lastLoads = (Map<String, Object>) csv.get("last_load");
+    assertEquals(41, ((Map<String, Object>) lastLoads.get("default")).get("rows"));
+
+    Map<String, Object> caches = (Map<String, Object>) snapshot.get("caches");
+    Map<String, Object> broadband = (Map<String, Object>) caches.get("broadband");
+    assertEquals(1L, broadband.get("hits"));
+    assertEquals(1L, broadband.get("misses"));
+  }
+}
@@ -0,0 +1,122 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs.student.main.parser.CsvParser;
+import edu.brown.cs.student.main.parser.FactoryFailureException;
+import edu.brown.cs.student.main.parser.ParallelCsvParser;
+import edu.brown.cs.student.main.parser.RowCreators.CreatorFromRow;
+import edu.brown.cs.student.main.parser.RowCreators.StandardObjectCreator;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestParallelCsvParser {
+  @TempDir Path tempDir;
+  private ForkJoinPool pool;
+
+  @BeforeEach
+  public void setup() {
+    pool = new ForkJoinPool(4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  private Path write(String csv) throws IOException {
+    Path file = tempDir.resolve("parallel.csv");
+    Files.writeString(file, csv, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  /** Rows with quoted commas and newlines, escaped quotes, empty rows and all three line ends. */
+  private static String generate(int rows, Random random) {
+    String[] lineEnds = {"\n", "\r\n", "\r"};
+    StringBuilder csv = new StringBuilder("name,value,note\n");
+    for (int r = 0; r < rows; r++) {
+      int width = random.nextInt(10) == 0 ? random.nextInt(5) : 3;
+      for (int c = 0; c < width; c++) {
+        if (c > 0) {
+          csv.append(',');
+        }
+        switch (random.nextInt(5)) {
+          case 0 -> csv.append("\"line\nbreak, ").append(random.nextInt(100)).append('"');
+          case 1 -> csv.append("\"say \"\"").append(random.nextInt(100)).append("\"\"\"");
+          case 2 -> csv.append("\"\r\n\"");
+          default -> csv.append("plain").append(random.nextInt(1000));
+        }
+      }
+      csv.append(lineEnds[random.nextInt(lineEnds.length)]);
+    }
+    return csv.toString();
+  }
+
+  private static List<List<String>> sequential(String csv, boolean hasHeaders) throws Exception {
+    return new CsvParser<>(new StringReader(csv), new StandardObjectCreator(), hasHeaders).parse();
+  }
+
+  @Test
+  public void testMatchesSequentialParseForAnyChunkSize() throws Exception {
+    String csv = generate(300, new Random(320));
+    Path file = write(csv);
+    for (boolean hasHeaders : new boolean[] {false, true}) {
+      List<List<String>> expected = sequential(csv, hasHeaders);
+      for (long chunkBytes : new long[] {5, 64, 1000, 1 << 20}) {
+        List<List<String>> parsed =
+            new ParallelCsvParser<>(
+                    file, new StandardObjectCreator(), hasHeaders, pool, chunkBytes)
+                .parse();
+        assertEquals(expected, parsed, "chunkBytes=" + chunkBytes + " headers=" + hasHeaders);
+      }
+    }
+  }
+
+  @Test
+  public void testChunksInsideOneLongQuotedField() throws Exception {
+    String csv = "a,\"" + "x\n,".repeat(500) + "\"\nb,c\n";
+    List<List<String>> parsed =
+        new ParallelCsvParser<>(write(csv), new StandardObjectCreator(), false, pool, 16).parse();
+    assertEquals(sequential(csv, false), parsed);
+    assertEquals(2, parsed.size());
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    assertEquals(
+        List.of(),
+        new ParallelCsvParser<>(write(""), new StandardObjectCreator(), true, pool, 4).parse());
+  }
+
+  @Test
+  public void testTypedCreatorAndFailures() throws Exception {
+    Path file = write("1\n2\n3\n4\n5\n6\n");
+    CreatorFromRow<Integer> toInt =
+        row -> {
+          try {
+            return Integer.parseInt(row.get(0));
+          } catch (NumberFormatException e) {
+            throw new FactoryFailureException("not a number", row);
+          }
+        };
+    assertEquals(
+        List.of(1, 2, 3, 4, 5, 6),
+        new ParallelCsvParser<>(file, toInt, false, pool, 3).parse());
+
+    Path bad = write("1\n2\nthree\n4\n");
+    assertThrows(
+        FactoryFailureException.class,
+        () -> new ParallelCsvParser<>(bad, toInt, false, pool, 3).parse());
+  }
+}
@@ -0,0 +1,128 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.ParallelScan;
+import edu.brown.cs.student.main.parser.Search;
+import java.rmi.NoSuchObjectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestParallelSearch {
+  private ForkJoinPool pool;
+  private CsvTable table;
+
+  @BeforeEach
+  public void setup() {
+    pool = new ForkJoinPool(4);
+    Random random = new Random(320);
+    List<List<String>> rows = new ArrayList<>();
+    rows.add(List.of("County", "State", "Income"));
+    for (int r = 0; r < 5000; r++) {
+      if (random.nextInt(50) == 0) {
+        rows.add(List.of("short row"));
+        continue;
+      }
+      rows.add(
+          List.of(
+              "County " + random.nextInt(300),
+              random.nextBoolean() ? "New York" : "Rhode Island",
+              random.nextInt(100_000) + ".00"));
+    }
+    table = CsvTable.fromRows(rows);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Test
+  public void testParallelScanMatchesSequentialScan() throws Exception {
+    String[] queries = {"County 1", "York", "00", "Rhode Island", "short"};
+    String[] columns = {"0", "1", "State", ""};
+    for (int threshold : new int[] {1, 7, 1000, 1 << 20}) {
+      ParallelScan parallelScan = new ParallelScan(pool, threshold);
+      for (String query : queries) {
+        for (String column : columns) {
+          for (boolean headers : new boolean[] {true, false}) {
+            Search parallel =
+                new Search(table, query, column, headers).withParallelScan(parallelScan);
+            List<List<String>> expected;
+            try {
+              expected = new Search(table, query, column, headers).searchFor();
+            } catch (Exception e) {
+              Exception thrown = assertThrows(e.getClass(), parallel::searchFor);
+              assertEquals(e.getMessage(), thrown.getMessage());
+              continue;
+            }
+            assertEquals(expected, parallel.searchFor());
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTableWithoutRowsFindsNoMatches() {
+    CsvTable headersOnly = CsvTable.fromRows(List.of(List.of("County", "State", "Income")));
+    for (CsvTable empty : List.of(CsvTable.fromRows(List.of()), headersOnly)) {
+      for (String column : new String[] {"0", "5"}) {
+        assertThrows(
+            NoSuchObjectException.class, new Search(empty, "York", column, true)::searchFor);
+        Search parallel =
+            new Search(empty, "York", column, true).withParallelScan(new ParallelScan(pool, 1));
+        assertThrows(NoSuchObjectException.class, parallel::searchFor);
+        assertThrows(
+            NoSuchObjectException.class,
+            () -> parallel.streamMatches(0, null, (rowId, row) -> true));
+      }
+    }
+  }
+
+  @Test
+  public void testStreamedParallelScanKeepsRowOrder() throws Exception {
+    Search sequential = new Search(table, "County 2", "0", true);
+    List<List<String>> expected = sequential.searchFor();
+    Search parallel =
+        new Search(table, "County 2", "0", true).withParallelScan(new ParallelScan(pool, 64));
+    List<List<String>> streamed = new ArrayList<>();
+    parallel.streamMatches(0, null, (rowId, row) -> streamed.add(row));
+    assertEquals(expected, streamed);
+  }
+
+  @Test
+  public void testStreamedParallelScanStopsAndResumes() throws Exception {
+    Search sequential = new Search(table, "York", "State", true);
+    List<List<String>> expected = sequential.searchFor();
+    Search parallel =
+        new Search(table, "York", "State", true).withParallelScan(new ParallelScan(pool, 16));
+    List<List<String>> paged = new ArrayList<>();
+    int cursor = 0;
+    while (cursor >= 0) {
+      List<List<String>> page = new ArrayList<>();
+      int[] next = {-1};
+      parallel.streamMatches(
+          cursor,
+          null,
+          (rowId, row) -> {
+            if (page.size() == 100) {
+              next[0] = rowId;
+              return false;
+            }
+            page.add(row);
+            return true;
+          });
+      paged.addAll(page);
+      cursor = next[0];
+    }
+    assertEquals(expected, paged);
+  }
+}
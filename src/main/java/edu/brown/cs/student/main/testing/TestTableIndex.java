@@ -0,0 +1,117 @@
+package edu.brown.cs.student.main.testing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.brown.cs.student.main.parser.CsvColumn;
+import edu.brown.cs.student.main.parser.CsvTable;
+import edu.brown.cs.student.main.parser.Indexes.HashColumnIndex;
+import edu.brown.cs.student.main.parser.Indexes.TableIndex;
+import edu.brown.cs.student.main.parser.Indexes.TrigramColumnIndex;
+import edu.brown.cs.student.main.parser.Search;
+import java.rmi.NoSuchObjectException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestTableIndex {
+  private static final List<List<String>> ROWS =
+      List.of(
+          List.of("County", "State", "Income"),
+          List.of("Kings County", "New York", "74,489.00"),
+          List.of("Kings County", "California", "61,000.00"),
+          List.of("Queens County", "New York", "70,000.00"),
+          List.of("short row"),
+          List.of("Bristol County", "Rhode Island", "80,727.00"));
+
+  @Test
+  public void testHashIndexLookup() {
+    CsvTable table = CsvTable.fromRows(ROWS);
+    HashColumnIndex index = new HashColumnIndex(table.getColumn(0), table.size());
+    assertArrayEquals(new int[] {1, 2}, index.lookup("Kings County"));
+    assertArrayEquals(new int[0], index.lookup("Kings"));
+  }
+
+  @Test
+  public void testTrigramCandidatesContainMatches() {
+    CsvColumn states = CsvTable.fromRows(ROWS).getColumn(1);
+    TrigramColumnIndex index = new TrigramColumnIndex(states);
+    int[] candidates = index.candidates("York");
+    assertEquals(1, candidates.length);
+    assertEquals("New York", states.value(candidates[0]));
+    assertArrayEquals(new int[0], index.candidates("Texas"));
+    assertThrows(IllegalArgumentException.class, () -> index.candidates("NY"));
+  }
+
+  @Test
+  public void testIndexedSearchMatchesScan() throws Exception {
+    CsvTable table = CsvTable.indexedFromRows(ROWS);
+    String[] queries = {"County", "Kings County", "New", "York", "00", ",4", "Island", "x"};
+    String[] columns = {"0", "1", "2", "State", ""};
+    for (String query : queries) {
+      for (String column : columns) {
+        for (boolean headers : new boolean[] {true, false}) {
+          for (boolean exact : new boolean[] {true, false}) {
+            assertSameOutcome(table, query, column, headers, exact);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIndexedSearchReportsBadColumns() {
+    CsvTable table = CsvTable.indexedFromRows(ROWS);
+    Search search = new Search(table, "County", "2", false);
+    NoSuchObjectException thrown =
+        assertThrows(NoSuchObjectException.class, () -> search.searchFor(table.getIndex()));
+    assertEquals("Specified column value was too large", thrown.getMessage());
+  }
+
+  @Test
+  public void testStreamedPagesMatchFullSearch() throws Exception {
+    CsvTable table = CsvTable.indexedFromRows(ROWS);
+    for (TableIndex index : new TableIndex[] {null, table.getIndex()}) {
+      Search search = new Search(table, "County", "", true);
+      List<List<String>> paged = new ArrayList<>();
+      int cursor = 0;
+      while (cursor >= 0) {
+        int[] next = {-1};
+        List<List<String>> page = new ArrayList<>();
+        search.streamMatches(
+            cursor,
+            index,
+            (rowId, row) -> {
+              if (page.size() == 2) {
+                next[0] = rowId;
+                return false;
+              }
+              page.add(row);
+              return true;
+            });
+        paged.addAll(page);
+        cursor = next[0];
+      }
+      assertEquals(search.searchFor(), paged);
+    }
+  }
+
+  private static void assertSameOutcome(
+      CsvTable table, String query, String column, boolean headers, boolean exact) {
+    Search search = new Search(table, query, column, headers, exact);
+    Object scanned;
+    Object indexed;
+    try {
+      scanned = search.searchFor();
+    } catch (Exception e) {
+      scanned = e.getClass().getName() + ": " + e.getMessage();
+    }
+    try {
+      indexed = search.searchFor(table.getIndex());
+    } catch (Exception e) {
+      indexed = e.getClass().getName() + ": " + e.getMessage();
+    }
+    assertEquals(scanned, indexed, query + " / " + column + " / " + headers + " / " + exact);
+  }
+}
@@ -0,0 +1,139 @@
+package edu.brown.cs.student.main.testing;
+
+import edu.brown.cs.student.main.server.Caching.BroadbandCache;
+import edu.brown.cs.student.main.server.Caching.BroadbandWarmup;
+import edu.brown.cs.student.main.server.Caching.HotKeys;
+import edu.brown.cs.student.main.server.Endpoints.broadband.BroadbandRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestWarmup {
+
+    @TempDir
+    Path directory;
+
+    private static String county(String stateCode, String county) {
+        return new BroadbandRecord("County " + county, stateCode, county, 80.5).toCensusJson();
+    }
+
+    @Test
+    public void testHotKeysAreSavedMostRequestedFirst() throws Exception {
+        BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+        HotKeys hotKeys = new HotKeys();
+        cache.attachHotKeys(hotKeys);
+        cache.putData("44", "003", county("44", "003"));
+        cache.putData("44", "007", county("44", "007"));
+        cache.putData("44", "*", county("44", "009"));
+        cache.getData("44", "003");
+        cache.getData("44", "007");
+        cache.getData("44", "007");
+        cache.getData("44", "*");
+        // a miss, or a fetch that fails, does not make a county hot
+        cache.getData("44", "005");
+        assertThrows(CompletionException.class, () -> cache.getOrFetchRecordAsync("44", "011",
+                (stateCode, county) -> CompletableFuture.failedFuture(
+                        new IOException("County name not found"))).join());
+
+        Path file = directory.resolve("hot/keys.txt");
+        assertEquals(2, hotKeys.save(file, 10));
+        assertEquals(List.of(new HotKeys.Key("44", "007"), new HotKeys.Key("44", "003")),
+                HotKeys.read(file));
+        assertEquals(1, hotKeys.save(file, 1));
+
+        Files.writeString(file, "# warm these first\n\n44,005\n44 005\n");
+        assertThrows(IOException.class, () -> HotKeys.read(file));
+    }
+
+    @Test
+    public void testWarmupIsBoundedAndReportsCoverage() throws Exception {
+        BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+        cache.putData("44", "001", county("44", "001"));
+        List<CompletableFuture<String>> fetches = new ArrayList<>();
+        List<String> fetched = new ArrayList<>();
+        BroadbandCache.AsyncFetcher fetcher = (stateCode, county) -> {
+            CompletableFuture<String> fetch = new CompletableFuture<>();
+            synchronized (fetches) {
+                fetches.add(fetch);
+                fetched.add(county);
+            }
+            return fetch;
+        };
+        List<HotKeys.Key> keys = List.of(new HotKeys.Key("44", "001"),
+                new HotKeys.Key("44", "003"), new HotKeys.Key("44", "005"),
+                new HotKeys.Key("44", "007"), new HotKeys.Key("44", "009"));
+        // one attempt, so the failed county is not fetched again
+        BroadbandWarmup warmup = new BroadbandWarmup(cache, fetcher, keys, 2, 1, 0);
+
+        CompletableFuture<Void> done = warmup.start();
+        // the cached county is warmed at once, and only two fetches run at a time
+        assertEquals(List.of("003", "005"), fetched);
+        assertEquals(0.2, warmup.coverage(), 1e-9);
+        assertFalse(warmup.isReady(0.6));
+
+        fetches.get(0).complete(county("44", "003"));
+        fetches.get(1).completeExceptionally(new IOException("Census API unavailable"));
+        assertEquals(List.of("003", "005", "007", "009"), fetched);
+        assertTrue(warmup.isReady(0.4));
+        fetches.get(2).complete(county("44", "007"));
+        fetches.get(3).complete(county("44", "009"));
+
+        done.get(5, TimeUnit.SECONDS);
+        assertEquals(0.8, warmup.coverage(), 1e-9);
+        // the county that could not be fetched still counts against readiness
+        assertFalse(warmup.isReady(1));
+        assertTrue(warmup.isReady(0.8));
+        assertEquals(1L, warmup.progress().get("failed"));
+        assertNotNull(cache.getRecord("44", "009"));
+        assertTrue(new BroadbandWarmup(cache, fetcher, List.of(), 1).isReady(1));
+    }
+
+    @Test
+    public void testMissingCountiesAreLeftOutAndFailedOnesRetried() throws Exception {
+        BroadbandCache cache = new BroadbandCache(10, 60, TimeUnit.MINUTES, 10);
+        AtomicInteger calls = new AtomicInteger();
+        BroadbandCache.AsyncFetcher fetcher = (stateCode, county) -> switch (county) {
+            // the API has no data for this one
+            case "005" -> CompletableFuture.completedFuture("[]");
+            // and is unavailable the first time this one is fetched
+            case "007" -> calls.incrementAndGet() == 1
+                    ? CompletableFuture.failedFuture(new IOException("Census API unavailable"))
+                    : CompletableFuture.completedFuture(county(stateCode, county));
+            default -> CompletableFuture.completedFuture(county(stateCode, county));
+        };
+        List<HotKeys.Key> keys = List.of(new HotKeys.Key("44", "003"),
+                new HotKeys.Key("44", "005"), new HotKeys.Key("44", "007"));
+        BroadbandWarmup warmup = new BroadbandWarmup(cache, fetcher, keys, 2, 3, 10);
+
+        warmup.start().get(5, TimeUnit.SECONDS);
+        assertEquals(2, calls.get());
+        assertEquals(1L, warmup.progress().get("missing"));
+        assertEquals(0L, warmup.progress().get("failed"));
+        assertEquals(1.0, warmup.coverage(), 1e-9);
+        assertTrue(warmup.isReady(1));
+
+        // while the API is down, a finished warm-up is not ready
+        BroadbandWarmup down = new BroadbandWarmup(new BroadbandCache(10, 60, TimeUnit.MINUTES, 10),
+                (stateCode, county) ->
+                        CompletableFuture.failedFuture(new IOException("Census API unavailable")),
+                keys, 2, 2, 10);
+        down.start().get(5, TimeUnit.SECONDS);
+        assertEquals(3L, down.progress().get("failed"));
+        assertFalse(down.isReady(0.5));
+    }
+}